@@ -8,6 +8,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -91,4 +92,30 @@ public class AnalyticsDTO {
         private Map<LoanPurpose, BigDecimal> averageAmounts;
         private long totalLoans;
     }
-}
\ No newline at end of file
+
+    /**
+     * As-of aggregates answered from a nightly portfolio snapshot file.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PortfolioSnapshotSummary {
+        private LocalDate requestedDate;
+        private LocalDate snapshotDate;
+        private long totalLoans;
+        private Map<String, Long> loansByStatus;
+        private Map<String, BigDecimal> amountByStatus;
+        private Map<String, Long> loansByPurpose;
+        private long activeLoans;
+        private BigDecimal outstandingBalance;
+        private BigDecimal totalDisbursed;
+        private BigDecimal totalRepaid;
+        private Double averageCreditScore;
+        private long paidInstallments;
+        private BigDecimal paidAmount;
+        private long overdueInstallments;
+        private BigDecimal overdueAmount;
+        private BigDecimal dueNext30Days;
+    }
+}
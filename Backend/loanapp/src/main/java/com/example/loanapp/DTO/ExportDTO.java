@@ -0,0 +1,53 @@
+package com.example.loanapp.DTO;
+
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Repayment;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Flat, read-only rows for the finance exports. Scalar projections keep streamed rows
+ * out of the persistence context, so memory stays flat however large the table is.
+ */
+public class ExportDTO {
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    public interface LoanRow {
+        String getId();
+        String getUserId();
+        String getUserEmail();
+        String getUserName();
+        BigDecimal getAmount();
+        Integer getTermMonths();
+        Loan.LoanPurpose getPurpose();
+        Loan.LoanStatus getStatus();
+        BigDecimal getInterestRate();
+        BigDecimal getMonthlyPayment();
+        BigDecimal getTotalRepaid();
+        Integer getCreditScore();
+        LocalDate getAppliedDate();
+        LocalDate getReviewedDate();
+        LocalDate getDisbursedDate();
+        LocalDate getDueDate();
+        LocalDate getCompletedDate();
+    }
+
+    public interface RepaymentRow {
+        String getId();
+        String getLoanId();
+        Integer getInstallmentNumber();
+        BigDecimal getAmount();
+        BigDecimal getPrincipalAmount();
+        BigDecimal getInterestAmount();
+        BigDecimal getLateFee();
+        LocalDate getDueDate();
+        LocalDate getPaidDate();
+        Repayment.RepaymentStatus getStatus();
+        String getPaymentMethod();
+        String getTransactionId();
+    }
+}
@@ -3,14 +3,17 @@ package com.example.loanapp.DTO;
 import com.example.loanapp.Entity.Loan;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public class LoanDTO {
@@ -73,6 +76,101 @@ public class LoanDTO {
         private List<RepaymentDTO> repayments;
     }
 
+    /**
+     * Row of the admin and "my-loans" list views.
+     * Projected straight from LoanRepository, so no repayment schedule is loaded.
+     */
+    public interface ListItem {
+        String getId();
+        BigDecimal getAmount();
+        Integer getTermMonths();
+        Loan.LoanPurpose getPurpose();
+        Loan.LoanStatus getStatus();
+        BigDecimal getInterestRate();
+        BigDecimal getMonthlyPayment();
+        Integer getCreditScore();
+        LocalDate getAppliedDate();
+        LocalDate getDueDate();
+        String getUserId();
+        String getUserName();
+        BigDecimal getTotalRepaid();
+        BigDecimal getRemainingBalance();
+        LocalDate getNextDueDate();
+        Boolean getVirtualSchedule();
+        LocalDate getScheduleStartDate();
+    }
+
+    /**
+     * Everything LoanDTO.Response depends on that can change, read with one indexed query.
+     * Hashed into the ETag of GET /api/loans/{id}.
+     */
+    public interface VersionStamp {
+        Long getVersion();
+        LocalDateTime getUpdatedAt();
+        LocalDateTime getUserUpdatedAt();
+        LocalDateTime getLatestRepaymentUpdate();
+        Long getRepaymentCount();
+    }
+
+    /**
+     * Keyset page for the admin loan listing.
+     * totalElements is only populated when the caller asks for it.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class CursorPage {
+        private List<Response> content;
+        private int size;
+        private boolean hasNext;
+        private String nextCursor;
+        private Long totalElements;
+    }
+
+    public enum BulkAction {
+        APPROVE, REJECT, DISBURSE
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class BulkActionRequest {
+        @NotEmpty
+        private List<String> loanIds;
+
+        @NotNull
+        private BulkAction action;
+
+        private String reason;
+        private String notes;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class BulkItemResult {
+        private String loanId;
+        private boolean success;
+        private String status;
+        private String message;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class BulkActionResponse {
+        private BulkAction action;
+        private int requested;
+        private int succeeded;
+        private int failed;
+        private long elapsedMs;
+        private List<BulkItemResult> results;
+    }
+
     /**
      * Nested Repayment DTO for the schedule view
      */
@@ -85,12 +183,31 @@ public class LoanDTO {
         private String loanId;
         private Integer installmentNumber;
         private BigDecimal amount;
+        private BigDecimal principalAmount;
+        private BigDecimal interestAmount;
+        private BigDecimal balanceAfter;
         private LocalDate dueDate;
         private String status; // PENDING, PAID, OVERDUE
         private LocalDate paidDate;
         private String paymentMethod;
     }
 
+    /**
+     * Polled by the client after a 202 from the pay endpoints.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class PaymentStatus {
+        private String repaymentId;
+        private String status;
+        private String mpesaPushStatus;
+        private String checkoutRequestId;
+        private String message;
+        private LocalDate paidDate;
+    }
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -102,5 +219,46 @@ public class LoanDTO {
         private Integer pendingDue;
         private BigDecimal monthlyPayment;
         private BigDecimal availableCredit;
+        private LocalDate nextDueDate;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Quote {
+        private BigDecimal amount;
+        private Integer termMonths;
+        private Integer creditScore;
+        private BigDecimal interestRate;
+        private BigDecimal monthlyPayment;
+        private BigDecimal totalPayable;
+        private BigDecimal totalInterest;
+    }
+
+    /**
+     * Officer search filters, bound from query parameters. Unset fields are ignored;
+     * borrower is a case-insensitive prefix of the borrower's name or email.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class SearchCriteria {
+        private Loan.LoanStatus status;
+        private Loan.LoanPurpose purpose;
+        private BigDecimal minAmount;
+        private BigDecimal maxAmount;
+        private Integer minCreditScore;
+        private Integer maxCreditScore;
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+        private LocalDate appliedFrom;
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+        private LocalDate appliedTo;
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+        private LocalDate dueFrom;
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+        private LocalDate dueTo;
+        private String borrower;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,66 @@
+package com.example.loanapp.DTO;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Daraja STK push callback body: {"Body": {"stkCallback": {...}}}.
+ */
+public class MpesaDTO {
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Callback {
+        @JsonProperty("Body") private CallbackBody body;
+
+        public StkCallback stk() {
+            return body != null ? body.getStkCallback() : null;
+        }
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class CallbackBody {
+        @JsonProperty("stkCallback") private StkCallback stkCallback;
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class StkCallback {
+        @JsonProperty("MerchantRequestID") private String merchantRequestId;
+        @JsonProperty("CheckoutRequestID") private String checkoutRequestId;
+        @JsonProperty("ResultCode") private Integer resultCode;
+        @JsonProperty("ResultDesc") private String resultDesc;
+        @JsonProperty("CallbackMetadata") private CallbackMetadata callbackMetadata;
+
+        /**
+         * Value of a CallbackMetadata item such as "MpesaReceiptNumber" or "Amount".
+         */
+        public String item(String name) {
+            if (callbackMetadata == null || callbackMetadata.getItems() == null) {
+                return null;
+            }
+            return callbackMetadata.getItems().stream()
+                    .filter(i -> name.equals(i.getName()) && i.getValue() != null)
+                    .map(i -> i.getValue().toString())
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class CallbackMetadata {
+        @JsonProperty("Item") private List<MetadataItem> items;
+    }
+
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class MetadataItem {
+        @JsonProperty("Name") private String name;
+        @JsonProperty("Value") private Object value;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.loanapp.Entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a chunked batch job for one run date. Written in the same transaction as
+ * each chunk, so a restarted job resumes after the last committed key.
+ */
+@Entity
+@Table(name = "job_checkpoints")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobCheckpoint {
+
+    @Id
+    @Column(length = 60)
+    private String jobName;
+
+    @Column(nullable = false)
+    private LocalDate runDate;
+
+    // Last processed keyset position; null before the first chunk
+    private LocalDate lastDueDate;
+
+    private String lastId;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private long processed = 0;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private boolean completed = false;
+
+    // Rate-limited jobs: first send slot not yet handed to any instance; survives restarts
+    private LocalDateTime nextSlotAt;
+
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+
+    /**
+     * Starts over for a new run date.
+     */
+    public void restart(LocalDate date) {
+        runDate = date;
+        lastDueDate = null;
+        lastId = null;
+        processed = 0;
+        completed = false;
+    }
+}
@@ -11,7 +11,20 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "loans")
+@Table(name = "loans", indexes = {
+        // Active-loan limit check: COUNT(*) WHERE user_id = ? AND status IN (...)
+        @Index(name = "idx_loans_user_status", columnList = "user_id, status"),
+        // Keyset pagination: ORDER BY created_at DESC, id DESC with optional status/purpose filter
+        @Index(name = "idx_loans_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_loans_status_created_at_id", columnList = "status, created_at, id"),
+        @Index(name = "idx_loans_purpose_created_at_id", columnList = "purpose, created_at, id"),
+        // Officer search (LoanSpecifications): every filter column leads at least one index
+        @Index(name = "idx_loans_status_applied_date", columnList = "status, applied_date"),
+        @Index(name = "idx_loans_applied_date", columnList = "applied_date"),
+        @Index(name = "idx_loans_due_date", columnList = "due_date"),
+        @Index(name = "idx_loans_amount", columnList = "amount"),
+        @Index(name = "idx_loans_credit_score", columnList = "credit_score")
+})
 @Getter // Replaces manual getters
 @Setter // Replaces manual setters
 @NoArgsConstructor // Replaces manual empty constructor
@@ -22,6 +35,11 @@ public class Loan {
     @GeneratedValue(strategy = GenerationType.UUID)
     private String id;
 
+    // Optimistic lock; the column default backfills rows that predate it
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
@@ -59,6 +77,13 @@ public class Loan {
     private LocalDate dueDate;
     private LocalDate completedDate;
 
+    /**
+     * When true, installments are derived from the loan terms on read and only
+     * paid, partially paid or overdue installments exist as repayment rows.
+     */
+    @Builder.Default
+    private Boolean virtualSchedule = false;
+
     private String reviewedBy;
     private String rejectionReason;
 
@@ -0,0 +1,64 @@
+package com.example.loanapp.Entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Inbox row for one STK push callback, keyed by CheckoutRequestID so Safaricom's retries
+ * collapse into the first delivery. Written by the callback endpoint, applied later by
+ * MpesaCallbackConsumer.
+ */
+@Entity
+@Table(name = "mpesa_callback_inbox", indexes = {
+        // Consumer poll: WHERE status = 'RECEIVED' AND next_attempt_at <= now ORDER BY next_attempt_at
+        @Index(name = "idx_mpesa_inbox_status_next_attempt", columnList = "status, next_attempt_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MpesaCallback {
+
+    @Id
+    @Column(name = "checkout_request_id", length = 100)
+    private String checkoutRequestId;
+
+    @Column(nullable = false)
+    private Integer resultCode;
+
+    private String resultDesc;
+
+    @Column(length = 40)
+    private String receiptNumber;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(length = 500)
+    private String lastError;
+
+    @Column(nullable = false)
+    private LocalDateTime receivedAt;
+
+    // Not claimed again before this; pushed back after each attempt that did not apply
+    private LocalDateTime nextAttemptAt;
+
+    private LocalDateTime processedAt;
+
+    public enum Status {
+        RECEIVED, APPLIED, FAILED
+    }
+
+    public boolean isSuccess() {
+        return resultCode != null && resultCode == 0;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.loanapp.Entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A domain event recorded in the same transaction as the change that caused it.
+ * OutboxDispatcher delivers PENDING rows after commit, so request latency never
+ * includes side effects such as notifications.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+        // Dispatcher poll: WHERE status = 'PENDING' AND next_attempt_at <= now() ORDER BY id
+        @Index(name = "idx_outbox_status_next_attempt", columnList = "status, next_attempt_at, id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 40)
+    private EventType eventType;
+
+    @Column(nullable = false, length = 40)
+    private String aggregateType;
+
+    @Column(nullable = false)
+    private String aggregateId;
+
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime dispatchedAt;
+
+    public enum EventType {
+        LOAN_APPLIED, LOAN_APPROVED, LOAN_REJECTED, LOAN_DISBURSED, REPAYMENT_COMPLETED
+    }
+
+    public enum Status {
+        PENDING, DISPATCHED, FAILED
+    }
+}
@@ -13,7 +13,13 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "repayments")
+@Table(name = "repayments", indexes = {
+        @Index(name = "idx_repayments_loan_due_date", columnList = "loan_id, due_date"),
+        // Reminder buckets: WHERE due_date IN (...) AND status IN (...)
+        @Index(name = "idx_repayments_due_date_status", columnList = "due_date, status"),
+        // STK callbacks resolve their repayment by CheckoutRequestID
+        @Index(name = "idx_repayments_mpesa_checkout_id", columnList = "mpesa_checkout_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -34,6 +40,16 @@ public class Repayment {
     @Column(nullable = false, precision = 12, scale = 2)
     private BigDecimal amount;
 
+    // Amortization split of the installment amount; null for ad-hoc payments
+    @Column(precision = 12, scale = 2)
+    private BigDecimal principalAmount;
+
+    @Column(precision = 12, scale = 2)
+    private BigDecimal interestAmount;
+
+    @Column(precision = 12, scale = 2)
+    private BigDecimal balanceAfter;
+
     @Column(nullable = false)
     private LocalDate dueDate;
 
@@ -60,6 +76,14 @@ public class Repayment {
     @Column(name = "mpesa_checkout_id")
     private String mpesaCheckoutId;
 
+    // Progress of the STK push; null for non-M-Pesa payments
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private MpesaPushStatus mpesaPushStatus;
+
+    // Daraja's error or result description when the push did not go through
+    private String mpesaPushMessage;
+
     @CreationTimestamp
     @Column(updatable = false)
     private LocalDateTime createdAt;
@@ -70,4 +94,12 @@ public class Repayment {
     public enum RepaymentStatus {
         PENDING, PAID, OVERDUE, PARTIALLY_PAID, CANCELLED
     }
+
+    /**
+     * PENDING_PUSH is persisted before Daraja is called; the push result and the
+     * customer's response on the handset move it on.
+     */
+    public enum MpesaPushStatus {
+        PENDING_PUSH, PUSHED, PUSH_FAILED, CONFIRMED, CANCELLED
+    }
 }
\ No newline at end of file
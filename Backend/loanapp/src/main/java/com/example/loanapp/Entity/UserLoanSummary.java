@@ -0,0 +1,51 @@
+package com.example.loanapp.Entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Per-user totals over active (APPROVED, DISBURSED, REPAYING) loans.
+ * Maintained by UserLoanSummaryService on every loan transition so the
+ * dashboard summary is a single primary-key read.
+ */
+@Entity
+@Table(name = "user_loan_summary")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserLoanSummary {
+
+    @Id
+    @Column(name = "user_id")
+    private String userId;
+
+    @Builder.Default
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal totalBorrowed = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal totalRepaid = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal monthlyPayment = BigDecimal.ZERO;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private Integer activeLoans = 0;
+
+    private LocalDate nextDueDate;
+
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -31,6 +33,31 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.CONFLICT, "USER_EXISTS", ex.getMessage(), null);
     }
 
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidRequest(InvalidRequestException ex) {
+        return buildResponse(HttpStatus.BAD_REQUEST, "INVALID_REQUEST", ex.getMessage(), null);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleConcurrentUpdate(OptimisticLockingFailureException ex) {
+        return buildResponse(HttpStatus.CONFLICT, "CONCURRENT_UPDATE",
+                "The loan was changed by another request. Reload and try again.", null);
+    }
+
+    @ExceptionHandler(PaymentGatewayBusyException.class)
+    public ResponseEntity<ErrorResponse> handleGatewayBusy(PaymentGatewayBusyException ex) {
+        ResponseEntity<ErrorResponse> response = buildResponse(HttpStatus.SERVICE_UNAVAILABLE,
+                "PAYMENT_GATEWAY_BUSY", ex.getMessage(), null);
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response.getBody());
+    }
+
+    @ExceptionHandler(PaymentInProgressException.class)
+    public ResponseEntity<ErrorResponse> handlePaymentInProgress(PaymentInProgressException ex) {
+        return buildResponse(HttpStatus.CONFLICT, "PAYMENT_IN_PROGRESS", ex.getMessage(), null);
+    }
+
     @ExceptionHandler(BadCredentialsException.class)
     public ResponseEntity<ErrorResponse> handleBadCredentials(BadCredentialsException ex) {
         return buildResponse(HttpStatus.UNAUTHORIZED, "AUTH_FAILED", "Invalid email or password", null);
@@ -0,0 +1,10 @@
+package com.example.loanapp.Exception;
+
+/**
+ * A request parameter the client can fix (bad quote inputs, a malformed cursor). Maps to 400.
+ */
+public class InvalidRequestException extends RuntimeException {
+    public InvalidRequestException(String message) {
+        super(message);
+    }
+}
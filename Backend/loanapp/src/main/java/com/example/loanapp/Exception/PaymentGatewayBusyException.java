@@ -0,0 +1,18 @@
+package com.example.loanapp.Exception;
+
+/**
+ * The payment gateway's outbound queue is full; the client should retry later.
+ */
+public class PaymentGatewayBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public PaymentGatewayBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
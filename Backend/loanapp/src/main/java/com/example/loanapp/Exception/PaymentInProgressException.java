@@ -0,0 +1,11 @@
+package com.example.loanapp.Exception;
+
+/**
+ * An M-Pesa push for the repayment is already under way; the client should poll its status.
+ */
+public class PaymentInProgressException extends RuntimeException {
+
+    public PaymentInProgressException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.loanapp.Repository;
+
+import com.example.loanapp.Entity.JobCheckpoint;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+
+    /**
+     * Locks the checkpoint for the rest of the chunk transaction, so two instances
+     * running the same job take turns instead of processing the same chunk.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM JobCheckpoint c WHERE c.jobName = :jobName")
+    Optional<JobCheckpoint> findByIdForUpdate(@Param("jobName") String jobName);
+
+    /**
+     * Creates the job's checkpoint unless another instance already has.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO job_checkpoints (job_name, run_date, processed, completed, updated_at) " +
+            "VALUES (:jobName, :runDate, 0, false, now()) ON CONFLICT (job_name) DO NOTHING", nativeQuery = true)
+    int createIfAbsent(@Param("jobName") String jobName, @Param("runDate") LocalDate runDate);
+
+    /**
+     * Locks the job's checkpoint, creating it on first use and resetting it when the
+     * stored run date is not runDate. Must be called inside a transaction.
+     */
+    default JobCheckpoint lockForRun(String jobName, LocalDate runDate) {
+        JobCheckpoint checkpoint = findByIdForUpdate(jobName).orElse(null);
+        if (checkpoint == null) {
+            // Instances starting together both miss the row; only one insert wins
+            createIfAbsent(jobName, runDate);
+            checkpoint = findByIdForUpdate(jobName).orElseThrow();
+        }
+        if (!runDate.equals(checkpoint.getRunDate())) {
+            checkpoint.restart(runDate);
+        }
+        return checkpoint;
+    }
+}
@@ -1,21 +1,29 @@
 package com.example.loanapp.Repository;
 
+import com.example.loanapp.DTO.ExportDTO;
+import com.example.loanapp.DTO.LoanDTO;
 import com.example.loanapp.Entity.Loan;
 import com.example.loanapp.Entity.Loan.LoanStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface LoanRepository extends JpaRepository<Loan, String> {
+public interface LoanRepository extends JpaRepository<Loan, String>, JpaSpecificationExecutor<Loan> {
 
     // --- Standard Retrieval ---
     List<Loan> findByUserId(String userId);
@@ -24,9 +32,69 @@ public interface LoanRepository extends JpaRepository<Loan, String> {
     List<Loan> findByUserIdAndStatus(String userId, LoanStatus status);
     List<Loan> findByAppliedDateBetween(LocalDate start, LocalDate end);
 
+    // --- Lightweight List Projections (no repayment schedule) ---
+    String LIST_ITEM_SELECT = "SELECT l.id AS id, l.amount AS amount, l.termMonths AS termMonths, " +
+            "l.purpose AS purpose, l.status AS status, l.interestRate AS interestRate, " +
+            "l.monthlyPayment AS monthlyPayment, l.creditScore AS creditScore, l.appliedDate AS appliedDate, " +
+            "l.dueDate AS dueDate, u.id AS userId, u.name AS userName, l.totalRepaid AS totalRepaid, " +
+            "(l.amount + l.amount * l.interestRate / 100 - COALESCE(l.totalRepaid, 0)) AS remainingBalance, " +
+            "(SELECT MIN(r.dueDate) FROM Repayment r WHERE r.loan = l AND r.installmentNumber > 0 " +
+            "AND r.status IN ('PENDING', 'OVERDUE', 'PARTIALLY_PAID')) AS nextDueDate, " +
+            "l.virtualSchedule AS virtualSchedule, " +
+            "COALESCE(l.disbursedDate, l.reviewedDate) AS scheduleStartDate " +
+            "FROM Loan l JOIN l.user u";
+
+    @Query(value = LIST_ITEM_SELECT,
+            countQuery = "SELECT COUNT(l) FROM Loan l")
+    Page<LoanDTO.ListItem> findAllListItems(Pageable pageable);
+
+    @Query(value = LIST_ITEM_SELECT + " WHERE u.id = :userId",
+            countQuery = "SELECT COUNT(l) FROM Loan l WHERE l.user.id = :userId")
+    Page<LoanDTO.ListItem> findListItemsByUserId(@Param("userId") String userId, Pageable pageable);
+
+    // --- Conditional GET (ETag) ---
+    @Query("SELECT l.version AS version, l.updatedAt AS updatedAt, u.updatedAt AS userUpdatedAt, " +
+            "(SELECT MAX(r.updatedAt) FROM Repayment r WHERE r.loan = l) AS latestRepaymentUpdate, " +
+            "(SELECT COUNT(r) FROM Repayment r WHERE r.loan = l) AS repaymentCount " +
+            "FROM Loan l JOIN l.user u WHERE l.id = :id")
+    Optional<LoanDTO.VersionStamp> findVersionStamp(@Param("id") String id);
+
+    // --- Finance Export (streamed through a server-side cursor; see ExportService) ---
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT l.id AS id, u.id AS userId, u.email AS userEmail, u.name AS userName, " +
+            "l.amount AS amount, l.termMonths AS termMonths, l.purpose AS purpose, l.status AS status, " +
+            "l.interestRate AS interestRate, l.monthlyPayment AS monthlyPayment, l.totalRepaid AS totalRepaid, " +
+            "l.creditScore AS creditScore, l.appliedDate AS appliedDate, l.reviewedDate AS reviewedDate, " +
+            "l.disbursedDate AS disbursedDate, l.dueDate AS dueDate, l.completedDate AS completedDate " +
+            "FROM Loan l JOIN l.user u ORDER BY l.createdAt, l.id")
+    Stream<ExportDTO.LoanRow> streamExportRows();
+
+    // --- Overdue job: virtual-schedule loans that can have unmaterialized arrears, by id ---
+    @Query("SELECT l FROM Loan l WHERE l.virtualSchedule = true AND l.status IN :statuses " +
+            "AND l.id > :afterId ORDER BY l.id")
+    List<Loan> findVirtualScheduleChunk(@Param("statuses") Collection<LoanStatus> statuses,
+                                        @Param("afterId") String afterId,
+                                        Pageable pageable);
+
+    // --- Reminders: borrowers whose virtual-schedule installments are derived, not stored ---
+    @Query("SELECT DISTINCT l.user.id FROM Loan l WHERE l.virtualSchedule = true AND l.status IN :statuses " +
+            "AND l.user.id > :afterUserId ORDER BY l.user.id")
+    List<String> findVirtualScheduleUserIds(@Param("statuses") Collection<LoanStatus> statuses,
+                                            @Param("afterUserId") String afterUserId,
+                                            Pageable pageable);
+
+    @Query("SELECT l FROM Loan l JOIN FETCH l.user u WHERE l.virtualSchedule = true AND l.status IN :statuses " +
+            "AND u.id IN :userIds")
+    List<Loan> findVirtualScheduleLoansOfUsers(@Param("statuses") Collection<LoanStatus> statuses,
+                                               @Param("userIds") Collection<String> userIds);
+
     // --- Basic Counts ---
     long countByUserId(String userId);
     long countByUserIdAndStatus(String userId, LoanStatus status);
+    long countByUserIdAndStatusIn(String userId, Collection<LoanStatus> statuses);
     long countByStatus(LoanStatus status);
 
     // --- User Aggregations ---
@@ -0,0 +1,87 @@
+package com.example.loanapp.Repository;
+
+import com.example.loanapp.DTO.LoanDTO;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.User;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Builds the officer search predicate from LoanDTO.SearchCriteria.
+ * Only filters that are set become predicates, and each one maps onto an index that
+ * leads with its column (see Loan/@Table and schema.sql), so any combination can be
+ * answered with index scans joined by a bitmap AND instead of a sequential scan.
+ */
+public final class LoanSpecifications {
+
+    private LoanSpecifications() {
+    }
+
+    public static Specification<Loan> matching(LoanDTO.SearchCriteria c) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (c.getStatus() != null) predicates.add(cb.equal(root.get("status"), c.getStatus()));
+            if (c.getPurpose() != null) predicates.add(cb.equal(root.get("purpose"), c.getPurpose()));
+
+            if (c.getMinAmount() != null) predicates.add(cb.greaterThanOrEqualTo(root.get("amount"), c.getMinAmount()));
+            if (c.getMaxAmount() != null) predicates.add(cb.lessThanOrEqualTo(root.get("amount"), c.getMaxAmount()));
+
+            if (c.getMinCreditScore() != null) predicates.add(cb.greaterThanOrEqualTo(root.get("creditScore"), c.getMinCreditScore()));
+            if (c.getMaxCreditScore() != null) predicates.add(cb.lessThanOrEqualTo(root.get("creditScore"), c.getMaxCreditScore()));
+
+            if (c.getAppliedFrom() != null) predicates.add(cb.greaterThanOrEqualTo(root.get("appliedDate"), c.getAppliedFrom()));
+            if (c.getAppliedTo() != null) predicates.add(cb.lessThanOrEqualTo(root.get("appliedDate"), c.getAppliedTo()));
+
+            if (c.getDueFrom() != null) predicates.add(cb.greaterThanOrEqualTo(root.get("dueDate"), c.getDueFrom()));
+            if (c.getDueTo() != null) predicates.add(cb.lessThanOrEqualTo(root.get("dueDate"), c.getDueTo()));
+
+            if (c.getBorrower() != null && !c.getBorrower().isBlank()) {
+                // Prefix match so lower(name|email) text_pattern_ops indexes apply; a leading % would not.
+                // The pattern is inlined as an escaped SQL literal: a generic plan for "LIKE $1" cannot
+                // use the index, since the planner only turns a known constant prefix into a range.
+                String prefix = escapeLike(c.getBorrower().trim().toLowerCase(Locale.ROOT)) + "%";
+                Join<Loan, User> user = root.join("user");
+                predicates.add(cb.or(
+                        cb.like(cb.lower(user.get("email")), cb.literal(prefix), cb.literal('\\')),
+                        cb.like(cb.lower(user.get("name")), cb.literal(prefix), cb.literal('\\'))));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Admin keyset listing filter. As with {@link #matching}, unset filters add no predicate,
+     * so each status/purpose combination gets its own statement and plans against the
+     * matching (status|purpose, created_at, id) index rather than a catch-all
+     * "(:x IS NULL OR ...)" generic plan.
+     */
+    public static Specification<Loan> keysetFilter(Loan.LoanStatus status, Loan.LoanPurpose purpose) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (status != null) predicates.add(cb.equal(root.get("status"), status));
+            if (purpose != null) predicates.add(cb.equal(root.get("purpose"), purpose));
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Rows after the cursor in (createdAt DESC, id DESC) order.
+     */
+    public static Specification<Loan> createdBefore(LocalDateTime createdAt, String id) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("createdAt"), createdAt),
+                cb.and(cb.equal(root.get("createdAt"), createdAt), cb.lessThan(root.get("id"), id)));
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
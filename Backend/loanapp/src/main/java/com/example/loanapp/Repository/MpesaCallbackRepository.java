@@ -0,0 +1,46 @@
+package com.example.loanapp.Repository;
+
+import com.example.loanapp.Entity.MpesaCallback;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MpesaCallbackRepository extends JpaRepository<MpesaCallback, String> {
+
+    /**
+     * Append-only insert; a repeated CheckoutRequestID is ignored. Returns 0 for duplicates.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO mpesa_callback_inbox " +
+            "(checkout_request_id, result_code, result_desc, receipt_number, status, attempts, received_at, next_attempt_at) " +
+            "VALUES (:checkoutRequestId, :resultCode, :resultDesc, :receiptNumber, 'RECEIVED', 0, :receivedAt, :receivedAt) " +
+            "ON CONFLICT (checkout_request_id) DO NOTHING",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("checkoutRequestId") String checkoutRequestId,
+                       @Param("resultCode") int resultCode,
+                       @Param("resultDesc") String resultDesc,
+                       @Param("receiptNumber") String receiptNumber,
+                       @Param("receivedAt") LocalDateTime receivedAt);
+
+    /**
+     * Claims unapplied callbacks that are due for an attempt; rows held by another consumer
+     * are skipped. Rows recorded before next_attempt_at existed are due straight away.
+     */
+    @Query(value = "SELECT * FROM mpesa_callback_inbox WHERE status = 'RECEIVED' " +
+            "AND (next_attempt_at <= :now OR next_attempt_at IS NULL) " +
+            "ORDER BY next_attempt_at NULLS FIRST LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<MpesaCallback> claimBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM MpesaCallback c WHERE c.status = 'APPLIED' AND c.processedAt < :before")
+    int deleteAppliedBefore(@Param("before") LocalDateTime before);
+}
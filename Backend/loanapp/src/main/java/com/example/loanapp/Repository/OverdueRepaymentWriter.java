@@ -0,0 +1,74 @@
+package com.example.loanapp.Repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Marks one keyset chunk of overdue installments and accrues their late fee in a single
+ * statement. The fee is recomputed from the due date rather than incremented, so running
+ * a chunk twice (for example after a crash) gives the same result.
+ * Rows that would not change are skipped to keep daily runs from rewriting the whole book.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OverdueRepaymentWriter {
+
+    private static final String FEE = "LEAST(ROUND(r.amount * ? * (CAST(? AS date) - r.due_date), 2), " +
+            "ROUND(r.amount * ?, 2))";
+
+    // Served by idx_repayments_unpaid_due_date (schema.sql); ad-hoc payments (installment 0) are excluded.
+    // Only loans being repaid accrue, as in the virtual-schedule phase: an approved loan's schedule
+    // is re-anchored at disbursement, and a loan completed by flexible payments owes nothing more.
+    private static final String MARK_CHUNK_SQL =
+            "WITH chunk AS (" +
+            "  SELECT r.id, r.due_date FROM repayments r JOIN loans l ON l.id = r.loan_id" +
+            "  WHERE r.status IN ('PENDING', 'OVERDUE') AND r.installment_number > 0" +
+            "    AND l.status IN ('DISBURSED', 'REPAYING')" +
+            "    AND r.due_date >= ? AND r.due_date < ? AND (r.due_date, r.id) > (?, ?)" +
+            "  ORDER BY r.due_date, r.id LIMIT ?" +
+            "), updated AS (" +
+            "  UPDATE repayments r SET status = 'OVERDUE', late_fee = " + FEE + ", updated_at = now()" +
+            "  FROM chunk c WHERE r.id = c.id AND r.due_date = c.due_date" +
+            // Re-checked against the latest row version if a payment committed after the chunk was read
+            "    AND r.status IN ('PENDING', 'OVERDUE')" +
+            "    AND (r.status <> 'OVERDUE' OR r.late_fee IS DISTINCT FROM " + FEE + ")" +
+            "  RETURNING 1" +
+            ") " +
+            "SELECT (SELECT COUNT(*) FROM chunk) AS scanned, (SELECT COUNT(*) FROM updated) AS updated, " +
+            "due_date, id FROM chunk ORDER BY due_date DESC, id DESC LIMIT 1";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Processes up to chunkSize installments due in [dueFrom, dueBefore) after the given key.
+     * Returns null once there is nothing left.
+     */
+    public Chunk markChunk(LocalDate dueFrom, LocalDate dueBefore, LocalDate afterDueDate, String afterId,
+                           int chunkSize, LocalDate today, BigDecimal dailyFeeRate, BigDecimal maxFeeRate) {
+        Date todayDate = Date.valueOf(today);
+        List<Chunk> rows = jdbcTemplate.query(MARK_CHUNK_SQL,
+                (rs, n) -> new Chunk(rs.getInt("scanned"), rs.getInt("updated"),
+                        rs.getDate("due_date").toLocalDate(), rs.getString("id")),
+                Date.valueOf(dueFrom), Date.valueOf(dueBefore), Date.valueOf(afterDueDate), afterId, chunkSize,
+                dailyFeeRate, todayDate, maxFeeRate,
+                dailyFeeRate, todayDate, maxFeeRate);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Chunk {
+        private int scanned;
+        private int updated;
+        private LocalDate lastDueDate;
+        private String lastId;
+    }
+}
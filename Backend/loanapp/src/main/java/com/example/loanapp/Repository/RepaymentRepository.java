@@ -1,15 +1,25 @@
 package com.example.loanapp.Repository;
 
+import com.example.loanapp.DTO.ExportDTO;
+import com.example.loanapp.Entity.Loan;
 import com.example.loanapp.Entity.Repayment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface RepaymentRepository extends JpaRepository<Repayment, String> {
@@ -21,17 +31,136 @@ public interface RepaymentRepository extends JpaRepository<Repayment, String> {
      */
     Optional<Repayment> findByMpesaCheckoutId(String mpesaCheckoutId);
 
+    /**
+     * Resolves a whole batch of callbacks in one round trip.
+     */
+    List<Repayment> findByMpesaCheckoutIdIn(Collection<String> mpesaCheckoutIds);
+
+    /**
+     * Moves the repayment to PENDING_PUSH unless a push for it is already under way: one not
+     * yet sent, or one sent since staleBefore that the customer may still answer. Concurrent
+     * requests queue on the row lock and re-check, so only one of them starts a push.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Repayment r SET r.mpesaPushStatus = :pending, r.mpesaCheckoutId = NULL, " +
+            "r.mpesaPushMessage = NULL, r.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE r.id = :id AND (r.mpesaPushStatus IS NULL OR r.mpesaPushStatus NOT IN (:pending, :pushed) " +
+            "OR (r.mpesaPushStatus = :pushed AND r.updatedAt < :staleBefore))")
+    int claimPush(@Param("id") String id,
+                  @Param("pending") Repayment.MpesaPushStatus pending,
+                  @Param("pushed") Repayment.MpesaPushStatus pushed,
+                  @Param("staleBefore") LocalDateTime staleBefore);
+
+    /**
+     * Records the outcome of an STK push, unless a callback or the stale-push sweep
+     * already moved the row on.
+     */
+    @Modifying
+    @Query("UPDATE Repayment r SET r.mpesaPushStatus = :status, r.mpesaCheckoutId = :checkoutId, " +
+            "r.mpesaPushMessage = :message, r.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE r.id = :id AND r.mpesaPushStatus = :expected")
+    int recordPushResult(@Param("id") String id,
+                         @Param("expected") Repayment.MpesaPushStatus expected,
+                         @Param("status") Repayment.MpesaPushStatus status,
+                         @Param("checkoutId") String checkoutId,
+                         @Param("message") String message);
+
+    /**
+     * Gives up on pushes whose dispatch never reported back (e.g. the node restarted).
+     */
+    @Modifying
+    @Query("UPDATE Repayment r SET r.mpesaPushStatus = :failed, r.mpesaPushMessage = :message, " +
+            "r.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE r.mpesaPushStatus = :pending AND r.updatedAt < :before")
+    int expirePendingPushes(@Param("pending") Repayment.MpesaPushStatus pending,
+                            @Param("failed") Repayment.MpesaPushStatus failed,
+                            @Param("message") String message,
+                            @Param("before") LocalDateTime before);
+
     // --- Existing Queries ---
     List<Repayment> findByLoanIdAndStatus(String loanId, Repayment.RepaymentStatus status);
 
     List<Repayment> findByLoanIdOrderByDueDateAsc(String loanId);
 
+    Optional<Repayment> findFirstByLoanIdAndInstallmentNumber(String loanId, Integer installmentNumber);
+
+    /**
+     * Loads the schedules of a whole page of loans in one round trip.
+     */
+    @Query("SELECT r FROM Repayment r WHERE r.loan.id IN :loanIds ORDER BY r.dueDate ASC")
+    List<Repayment> findByLoanIdInOrderByDueDateAsc(@Param("loanIds") Collection<String> loanIds);
+
+    /**
+     * Same as above, bounded below so a partitioned table only scans partitions from
+     * dueFrom on. No installment of a loan falls due before the loan's applied date.
+     */
+    @Query("SELECT r FROM Repayment r WHERE r.loan.id IN :loanIds AND r.dueDate >= :dueFrom ORDER BY r.dueDate ASC")
+    List<Repayment> findByLoanIdInOrderByDueDateAsc(@Param("loanIds") Collection<String> loanIds,
+                                                    @Param("dueFrom") LocalDate dueFrom);
+
+    // --- Finance Export (streamed through a server-side cursor; see ExportService) ---
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT r.id AS id, r.loan.id AS loanId, r.installmentNumber AS installmentNumber, " +
+            "r.amount AS amount, r.principalAmount AS principalAmount, r.interestAmount AS interestAmount, " +
+            "r.lateFee AS lateFee, r.dueDate AS dueDate, r.paidDate AS paidDate, r.status AS status, " +
+            "r.paymentMethod AS paymentMethod, r.transactionId AS transactionId " +
+            "FROM Repayment r ORDER BY r.loan.id, r.dueDate")
+    Stream<ExportDTO.RepaymentRow> streamExportRows();
+
+    // --- Rescheduling ---
+    /**
+     * Re-anchors scheduled installments in one statement: installment n becomes due
+     * n months after the anchor date. Ad-hoc payments (installment 0) and installments
+     * before fromInstallment are left alone. Pending changes are flushed first; callers
+     * should not keep loaded Repayment entities of this loan around afterwards.
+     * scheduledFrom (the loan's applied date) lets a partitioned table skip older months;
+     * rows whose new due date crosses a month boundary are moved by Postgres.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE repayments " +
+            "SET due_date = CAST(CAST(:anchor AS date) + make_interval(months => installment_number) AS date), " +
+            "updated_at = now() " +
+            "WHERE loan_id = :loanId AND installment_number >= GREATEST(:fromInstallment, 1) " +
+            "AND due_date >= :scheduledFrom",
+            nativeQuery = true)
+    int rescheduleFrom(@Param("loanId") String loanId,
+                       @Param("anchor") LocalDate anchor,
+                       @Param("fromInstallment") int fromInstallment,
+                       @Param("scheduledFrom") LocalDate scheduledFrom);
+
+    // --- Reminders (served by idx_repayments_due_date_status) ---
+    /**
+     * Next page of borrowers with an unpaid scheduled installment due on one of the dates,
+     * on a loan in one of the given statuses (a loan completed early owes nothing more).
+     */
+    @Query("SELECT DISTINCT l.user.id FROM Repayment r JOIN r.loan l " +
+            "WHERE r.dueDate IN :dueDates AND r.status IN ('PENDING', 'PARTIALLY_PAID') AND r.installmentNumber > 0 " +
+            "AND l.status IN :statuses AND l.user.id > :afterUserId ORDER BY l.user.id")
+    List<String> findReminderUserIds(@Param("dueDates") Collection<LocalDate> dueDates,
+                                     @Param("statuses") Collection<Loan.LoanStatus> statuses,
+                                     @Param("afterUserId") String afterUserId,
+                                     Pageable pageable);
+
+    @Query("SELECT r FROM Repayment r JOIN FETCH r.loan l JOIN FETCH l.user u " +
+            "WHERE r.dueDate IN :dueDates AND r.status IN ('PENDING', 'PARTIALLY_PAID') AND r.installmentNumber > 0 " +
+            "AND l.status IN :statuses AND u.id IN :userIds ORDER BY u.id, r.dueDate")
+    List<Repayment> findReminderBatch(@Param("dueDates") Collection<LocalDate> dueDates,
+                                      @Param("statuses") Collection<Loan.LoanStatus> statuses,
+                                      @Param("userIds") Collection<String> userIds);
+
     // --- Aggregations for Stats ---
     @Query("SELECT SUM(r.amount) FROM Repayment r WHERE r.loan.id = :loanId AND r.status = 'PAID'")
     Optional<BigDecimal> sumPaidAmountByLoanId(@Param("loanId") String loanId);
 
-    @Query("SELECT r FROM Repayment r WHERE r.dueDate < :today AND r.status = 'PENDING'")
-    List<Repayment> findOverdueRepayments(@Param("today") LocalDate today);
+    /**
+     * Pending installments that fell due in [since, today). The lower bound keeps the scan
+     * to the partitions the caller still cares about.
+     */
+    @Query("SELECT r FROM Repayment r WHERE r.dueDate >= :since AND r.dueDate < :today AND r.status = 'PENDING'")
+    List<Repayment> findOverdueRepayments(@Param("since") LocalDate since, @Param("today") LocalDate today);
 
     // Rate Calculation Helpers
     @Query("SELECT COUNT(r) FROM Repayment r WHERE r.loan.user.id = :userId AND r.status = 'PAID' AND r.paidDate <= r.dueDate")
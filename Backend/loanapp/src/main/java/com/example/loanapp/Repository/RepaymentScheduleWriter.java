@@ -0,0 +1,83 @@
+package com.example.loanapp.Repository;
+
+import com.example.loanapp.Entity.Repayment;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes freshly generated repayment schedules straight through JDBC.
+ * IDs are generated up front and rows go out as multi-row INSERT ... VALUES (...), (...)
+ * statements, so an 84-month schedule is a single statement instead of 84 persists.
+ * The rows are not attached to the persistence context.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RepaymentScheduleWriter {
+
+    private static final String INSERT_PREFIX = "INSERT INTO repayments " +
+            "(id, loan_id, installment_number, amount, principal_amount, interest_amount, balance_after, " +
+            "due_date, status, late_fee, created_at, updated_at) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Keeps each statement far below the driver's 32767 bind-parameter limit
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void writeAll(List<Repayment> installments) {
+        if (installments.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (Repayment r : installments) {
+            if (r.getId() == null) {
+                r.setId(UUID.randomUUID().toString());
+            }
+        }
+
+        for (int from = 0; from < installments.size(); from += MAX_ROWS_PER_STATEMENT) {
+            List<Repayment> rows = installments.subList(from, Math.min(from + MAX_ROWS_PER_STATEMENT, installments.size()));
+            jdbcTemplate.update(insertSql(rows.size()), ps -> bindRows(ps, rows, now));
+        }
+    }
+
+    private static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows * (ROW_PLACEHOLDERS.length() + 2));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDERS);
+        }
+        return sql.toString();
+    }
+
+    private static void bindRows(PreparedStatement ps, List<Repayment> rows, Timestamp now) throws SQLException {
+        int p = 1;
+        for (Repayment r : rows) {
+            ps.setString(p++, r.getId());
+            ps.setString(p++, r.getLoan().getId());
+            ps.setInt(p++, r.getInstallmentNumber());
+            ps.setBigDecimal(p++, r.getAmount());
+            ps.setBigDecimal(p++, r.getPrincipalAmount());
+            ps.setBigDecimal(p++, r.getInterestAmount());
+            ps.setBigDecimal(p++, r.getBalanceAfter());
+            ps.setDate(p++, Date.valueOf(r.getDueDate()));
+            ps.setString(p++, r.getStatus().name());
+            ps.setBigDecimal(p++, r.getLateFee());
+            ps.setTimestamp(p++, now);
+            ps.setTimestamp(p++, now);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.loanapp.Repository;
+
+import com.example.loanapp.Entity.UserLoanSummary;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface UserLoanSummaryRepository extends JpaRepository<UserLoanSummary, String> {
+
+    /**
+     * Row lock used to serialize loan-limit checks per user (SELECT ... FOR UPDATE).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UserLoanSummary s WHERE s.userId = :userId")
+    Optional<UserLoanSummary> findByIdForUpdate(@Param("userId") String userId);
+
+    // Active = APPROVED, DISBURSED, REPAYING (same set LoanService uses for the limit check)
+    String ACTIVE_STATUSES = "('APPROVED', 'DISBURSED', 'REPAYING')";
+
+    // Earliest unpaid stored installment; the caller appends the user id expression and ")"
+    String NEXT_STORED_DUE = "(SELECT MIN(r.due_date) FROM repayments r JOIN loans al ON al.id = r.loan_id " +
+            "  WHERE al.status IN " + ACTIVE_STATUSES + " " +
+            "  AND r.status IN ('PENDING', 'OVERDUE', 'PARTIALLY_PAID') AND r.installment_number > 0 " +
+            "  AND al.user_id = ";
+
+    // Earliest not-yet-materialized installment of a virtual schedule
+    String NEXT_VIRTUAL_DUE = "(SELECT MIN(CAST(COALESCE(vl.disbursed_date, vl.reviewed_date) + make_interval(months => n.k) AS date)) " +
+            "  FROM loans vl CROSS JOIN generate_series(1, vl.term_months) AS n(k) " +
+            "  WHERE vl.virtual_schedule = true AND vl.status IN " + ACTIVE_STATUSES + " " +
+            "  AND NOT EXISTS (SELECT 1 FROM repayments vr WHERE vr.loan_id = vl.id AND vr.installment_number = n.k) " +
+            "  AND vl.user_id = ";
+
+    // LEAST ignores NULLs, so users with only one kind of schedule still get a date
+    String NEXT_DUE_FOR_ROW = "LEAST(" + NEXT_STORED_DUE + "u.id), " + NEXT_VIRTUAL_DUE + "u.id))";
+    String NEXT_DUE_FOR_PARAM = "LEAST(" + NEXT_STORED_DUE + ":userId), " + NEXT_VIRTUAL_DUE + ":userId))";
+
+    String REBUILD_SELECT = "SELECT u.id, " +
+            "COALESCE(SUM(l.amount), 0), COALESCE(SUM(l.total_repaid), 0), " +
+            "COALESCE(SUM(l.monthly_payment), 0), COUNT(l.id), " +
+            NEXT_DUE_FOR_ROW + ", " +
+            "now() " +
+            "FROM users u LEFT JOIN loans l ON l.user_id = u.id AND l.status IN " + ACTIVE_STATUSES + " ";
+
+    String REBUILD_UPSERT = "ON CONFLICT (user_id) DO UPDATE SET " +
+            "total_borrowed = EXCLUDED.total_borrowed, total_repaid = EXCLUDED.total_repaid, " +
+            "monthly_payment = EXCLUDED.monthly_payment, active_loans = EXCLUDED.active_loans, " +
+            "next_due_date = EXCLUDED.next_due_date, updated_at = EXCLUDED.updated_at";
+
+    String REBUILD_INSERT = "INSERT INTO user_loan_summary " +
+            "(user_id, total_borrowed, total_repaid, monthly_payment, active_loans, next_due_date, updated_at) ";
+
+    /**
+     * Recomputes one user's row from the loans and repayments tables.
+     */
+    @Modifying
+    @Query(value = REBUILD_INSERT + REBUILD_SELECT + "WHERE u.id = :userId GROUP BY u.id " + REBUILD_UPSERT,
+            nativeQuery = true)
+    int rebuildForUser(@Param("userId") String userId);
+
+    /**
+     * Creates one user's row from the loans and repayments tables unless it already exists.
+     * Unlike rebuildForUser it never overwrites a row that a concurrent transaction inserted
+     * and has since moved on with deltas.
+     */
+    @Modifying
+    @Query(value = REBUILD_INSERT + REBUILD_SELECT + "WHERE u.id = :userId GROUP BY u.id ON CONFLICT (user_id) DO NOTHING",
+            nativeQuery = true)
+    int createIfAbsent(@Param("userId") String userId);
+
+    /**
+     * Backfills every user's row in one set-based statement.
+     */
+    @Modifying
+    @Query(value = REBUILD_INSERT + REBUILD_SELECT + "GROUP BY u.id " + REBUILD_UPSERT,
+            nativeQuery = true)
+    int rebuildAll();
+
+    /**
+     * Applies a commutative delta, so concurrent transitions for the same user never lose updates.
+     */
+    @Modifying
+    @Query("UPDATE UserLoanSummary s SET " +
+            "s.totalBorrowed = s.totalBorrowed + :borrowed, " +
+            "s.totalRepaid = s.totalRepaid + :repaid, " +
+            "s.monthlyPayment = s.monthlyPayment + :monthly, " +
+            "s.activeLoans = s.activeLoans + :active, " +
+            "s.updatedAt = :now " +
+            "WHERE s.userId = :userId")
+    int applyDelta(@Param("userId") String userId,
+                   @Param("borrowed") BigDecimal borrowed,
+                   @Param("repaid") BigDecimal repaid,
+                   @Param("monthly") BigDecimal monthly,
+                   @Param("active") int active,
+                   @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(value = "UPDATE user_loan_summary SET next_due_date = " + NEXT_DUE_FOR_PARAM + " WHERE user_id = :userId",
+            nativeQuery = true)
+    int refreshNextDueDate(@Param("userId") String userId);
+}
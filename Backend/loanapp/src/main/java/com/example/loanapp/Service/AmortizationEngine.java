@@ -0,0 +1,165 @@
+package com.example.loanapp.Service;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Annuity math for loan pricing and repayment schedules.
+ *
+ * Payment = P * r * (1 + r)^n / ((1 + r)^n - 1), with r = annualRate / 1200 rounded to
+ * 10 places and the result rounded HALF_UP to cents. The expensive (1 + r)^n part is
+ * computed once per (rate, term) pair and cached; our rate grid only has a handful of
+ * values, so the cache stays tiny.
+ *
+ * The exact denominator carries up to 10 * n decimal places, so dividing by it on every
+ * call is slow. The factor also caches numerator / denominator to 40 significant digits;
+ * payments multiply by that and only redo the exact division when the product lands within
+ * rounding distance of a half cent.
+ */
+@Component
+public class AmortizationEngine {
+
+    private static final BigDecimal MONTHS_PER_YEAR_PERCENT = BigDecimal.valueOf(1200);
+    private static final int RATE_SCALE = 10;
+
+    // Distance from a half cent below which the double fast path defers to exact math
+    private static final double HALF_CENT_GUARD = 1e-6;
+
+    // Precision of the cached BigDecimal quotient, and the matching half-cent guard:
+    // relative error 1e-40 on any realistic principal stays far below 1e-22
+    private static final MathContext QUOTIENT_PRECISION = new MathContext(40, RoundingMode.HALF_EVEN);
+    private static final BigDecimal HALF_CENT = new BigDecimal("0.005");
+    private static final BigDecimal HALF_CENT_GUARD_EXACT = new BigDecimal("1e-22");
+
+    // Keyed by the rate as passed (scale included) and then the term; no per-call key building
+    private final Map<BigDecimal, Map<Integer, AnnuityFactor>> factors = new ConcurrentHashMap<>();
+
+    /**
+     * Monthly payment rounded to cents. Matches the original BigDecimal formula exactly.
+     */
+    public BigDecimal monthlyPayment(BigDecimal principal, BigDecimal annualRate, int months) {
+        AnnuityFactor f = factor(annualRate, months);
+        if (f.zeroRate) {
+            return principal.divide(BigDecimal.valueOf(months), 2, RoundingMode.HALF_UP);
+        }
+        BigDecimal raw = principal.multiply(f.exactQuotient);
+        BigDecimal rounded = raw.setScale(2, RoundingMode.HALF_UP);
+        if (raw.subtract(rounded).abs().subtract(HALF_CENT).abs().compareTo(HALF_CENT_GUARD_EXACT) < 0) {
+            return principal.multiply(f.numerator).divide(f.denominator, 2, RoundingMode.HALF_UP);
+        }
+        return rounded;
+    }
+
+    /**
+     * Primitive fast path: principal and result in cents.
+     * Uses the cached double factor and only falls back to BigDecimal when the product
+     * lands so close to a half cent that double rounding could differ.
+     */
+    public long monthlyPaymentCents(long principalCents, BigDecimal annualRate, int months) {
+        AnnuityFactor f = factor(annualRate, months);
+        double raw = principalCents * f.quotient;
+        double fraction = raw - Math.floor(raw);
+        if (Math.abs(fraction - 0.5) < HALF_CENT_GUARD) {
+            return monthlyPayment(BigDecimal.valueOf(principalCents, 2), annualRate, months)
+                    .movePointRight(2).longValueExact();
+        }
+        return (long) Math.floor(raw + 0.5);
+    }
+
+    /**
+     * Full schedule with the principal / interest split and remaining balance per period.
+     * Interest is charged on the opening balance; the last period absorbs rounding so the
+     * balance ends at exactly zero.
+     */
+    public List<Installment> schedule(BigDecimal principal, BigDecimal annualRate, int months, LocalDate start) {
+        AnnuityFactor f = factor(annualRate, months);
+        BigDecimal payment = monthlyPayment(principal, annualRate, months);
+        BigDecimal balance = principal.setScale(2, RoundingMode.HALF_UP);
+
+        List<Installment> installments = new ArrayList<>(months);
+        for (int n = 1; n <= months; n++) {
+            BigDecimal interest = balance.multiply(f.monthlyRate).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal principalPart = n == months ? balance : payment.subtract(interest).min(balance);
+            balance = balance.subtract(principalPart);
+
+            installments.add(Installment.builder()
+                    .number(n)
+                    .dueDate(start.plusMonths(n))
+                    .payment(principalPart.add(interest))
+                    .principal(principalPart)
+                    .interest(interest)
+                    .balance(balance)
+                    .build());
+        }
+        return installments;
+    }
+
+    private AnnuityFactor factor(BigDecimal annualRate, int months) {
+        if (months <= 0) {
+            throw new IllegalArgumentException("Term must be at least one month");
+        }
+        Map<Integer, AnnuityFactor> byTerm = factors.get(annualRate);
+        if (byTerm == null) {
+            byTerm = factors.computeIfAbsent(annualRate, r -> new ConcurrentHashMap<>());
+        }
+        AnnuityFactor f = byTerm.get(months);
+        return f != null ? f : byTerm.computeIfAbsent(months, m -> AnnuityFactor.of(annualRate, m));
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Installment {
+        private int number;
+        private LocalDate dueDate;
+        private BigDecimal payment;
+        private BigDecimal principal;
+        private BigDecimal interest;
+        private BigDecimal balance;
+    }
+
+    private static final class AnnuityFactor {
+        private final BigDecimal monthlyRate;
+        private final BigDecimal numerator;    // r * (1 + r)^n, exact
+        private final BigDecimal denominator;  // (1 + r)^n - 1, exact
+        private final BigDecimal exactQuotient; // numerator / denominator to 40 digits
+        private final double quotient;         // numerator / denominator for the cents path
+        private final boolean zeroRate;
+
+        private AnnuityFactor(BigDecimal monthlyRate, BigDecimal numerator, BigDecimal denominator,
+                              BigDecimal exactQuotient, boolean zeroRate) {
+            this.monthlyRate = monthlyRate;
+            this.numerator = numerator;
+            this.denominator = denominator;
+            this.exactQuotient = exactQuotient;
+            this.quotient = exactQuotient.doubleValue();
+            this.zeroRate = zeroRate;
+        }
+
+        static AnnuityFactor of(BigDecimal annualRate, int months) {
+            BigDecimal monthlyRate = annualRate.divide(MONTHS_PER_YEAR_PERCENT, RATE_SCALE, RoundingMode.HALF_UP);
+            if (monthlyRate.signum() == 0) {
+                return new AnnuityFactor(monthlyRate, BigDecimal.ONE, BigDecimal.valueOf(months),
+                        BigDecimal.ONE.divide(BigDecimal.valueOf(months), QUOTIENT_PRECISION), true);
+            }
+            BigDecimal growth = BigDecimal.ONE.add(monthlyRate).pow(months);
+            BigDecimal numerator = monthlyRate.multiply(growth);
+            BigDecimal denominator = growth.subtract(BigDecimal.ONE);
+            return new AnnuityFactor(monthlyRate, numerator, denominator,
+                    numerator.divide(denominator, QUOTIENT_PRECISION), false);
+        }
+    }
+}
@@ -16,23 +16,29 @@ public class AuditService {
 
     public void logNotification(String notificationType, String userId, String entityId, String details) {
         try {
-            AuditLog auditLog = new AuditLog();
-            auditLog.setAction("NOTIFICATION_SENT");
-            auditLog.setEntityType("NOTIFICATION");
-            auditLog.setEntityId(entityId);
-            auditLog.setUserId(userId);
-            auditLog.setDetails(notificationType + ": " + details);
-            auditLog.setTimestamp(LocalDateTime.now());
-            auditLog.setIpAddress("SYSTEM");
-            auditLog.setUserAgent("NotificationService");
-
-            auditLogRepository.save(auditLog);
-
+            recordNotification(notificationType, userId, entityId, details);
         } catch (Exception e) {
             log.error("Failed to log notification audit: {}", e.getMessage());
         }
     }
 
+    /**
+     * Same as logNotification but lets failures propagate, for deliveries that get retried.
+     */
+    public void recordNotification(String notificationType, String userId, String entityId, String details) {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setAction("NOTIFICATION_SENT");
+        auditLog.setEntityType("NOTIFICATION");
+        auditLog.setEntityId(entityId);
+        auditLog.setUserId(userId);
+        auditLog.setDetails(notificationType + ": " + details);
+        auditLog.setTimestamp(LocalDateTime.now());
+        auditLog.setIpAddress("SYSTEM");
+        auditLog.setUserAgent("NotificationService");
+
+        auditLogRepository.save(auditLog);
+    }
+
     public void logLoanAction(String action, String loanId, String userId, String details) {
         try {
             AuditLog auditLog = new AuditLog();
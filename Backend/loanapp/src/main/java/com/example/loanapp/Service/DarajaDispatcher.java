@@ -0,0 +1,161 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Exception.PaymentGatewayBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Outbound HTTP to Daraja with a hard cap on concurrent work.
+ *
+ * At most max-in-flight calls run at once (OkHttp's dispatcher limit) and at most
+ * queue-capacity more wait behind them. A caller reserves a Permit before committing to a
+ * call; when in-flight plus queued is at the limit, reserve() fails fast with
+ * PaymentGatewayBusyException, which the API turns into 503 + Retry-After.
+ */
+@Slf4j
+@Component
+public class DarajaDispatcher {
+
+    @FunctionalInterface
+    public interface ResponseHandler<T> {
+        T handle(Response response) throws IOException;
+    }
+
+    private final OkHttpClient client;
+    private final int capacity;
+    private final long retryAfterSeconds;
+    private final AtomicInteger admitted = new AtomicInteger();
+
+    private final Timer latency;
+    private final Counter rejected;
+
+    public DarajaDispatcher(MeterRegistry meterRegistry,
+                            @Value("${app.mpesa.dispatcher.max-in-flight:16}") int maxInFlight,
+                            @Value("${app.mpesa.dispatcher.queue-capacity:64}") int queueCapacity,
+                            @Value("${app.mpesa.dispatcher.connect-timeout-ms:3000}") long connectTimeoutMs,
+                            @Value("${app.mpesa.dispatcher.read-timeout-ms:10000}") long readTimeoutMs,
+                            @Value("${app.mpesa.dispatcher.call-timeout-ms:15000}") long callTimeoutMs,
+                            @Value("${app.mpesa.dispatcher.retry-after-seconds:5}") long retryAfterSeconds) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxInFlight);
+        // Every call goes to the same host, so the per-host limit is the real one
+        dispatcher.setMaxRequestsPerHost(maxInFlight);
+
+        this.client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxInFlight, 5, TimeUnit.MINUTES))
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .readTimeout(Duration.ofMillis(readTimeoutMs))
+                .writeTimeout(Duration.ofMillis(readTimeoutMs))
+                .callTimeout(Duration.ofMillis(callTimeoutMs))
+                .build();
+        this.capacity = maxInFlight + queueCapacity;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        Gauge.builder("daraja.inflight", dispatcher, Dispatcher::runningCallsCount).register(meterRegistry);
+        Gauge.builder("daraja.queue.depth", dispatcher, Dispatcher::queuedCallsCount).register(meterRegistry);
+        Gauge.builder("daraja.reserved", admitted, AtomicInteger::get).register(meterRegistry);
+        this.latency = Timer.builder("daraja.call.latency")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejected = meterRegistry.counter("daraja.rejected");
+    }
+
+    /**
+     * Shared client for synchronous calls (token fetches); same pool and timeouts.
+     */
+    public OkHttpClient client() {
+        return client;
+    }
+
+    /**
+     * Reserves room for one call, or fails fast when the dispatcher is saturated.
+     */
+    public Permit reserve() {
+        while (true) {
+            int current = admitted.get();
+            if (current >= capacity) {
+                rejected.increment();
+                throw new PaymentGatewayBusyException("M-Pesa is busy, please retry shortly.", retryAfterSeconds);
+            }
+            if (admitted.compareAndSet(current, current + 1)) {
+                return new Permit();
+            }
+        }
+    }
+
+    /**
+     * Enqueues the call under the permit, which is released when the call finishes.
+     */
+    public <T> CompletableFuture<T> enqueue(Permit permit, Request request, ResponseHandler<T> handler) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long start = System.nanoTime();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                T value;
+                try (response) {
+                    value = handler.handle(response);
+                } catch (Exception e) {
+                    permit.release();
+                    result.completeExceptionally(e);
+                    return;
+                }
+                // Released before completing, so whoever sees the result also sees the slot free
+                permit.release();
+                result.complete(value);
+            }
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+                latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                permit.release();
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        client.dispatcher().executorService().shutdown();
+    }
+
+    /**
+     * One reserved slot. Releasing is idempotent, so both the call and an aborted caller
+     * may release it.
+     */
+    public final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                admitted.decrementAndGet();
+            }
+        }
+    }
+}
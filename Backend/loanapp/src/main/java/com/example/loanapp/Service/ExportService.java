@@ -0,0 +1,199 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.ExportDTO;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Streams the loan book and repayment ledger as NDJSON or CSV.
+ * Rows come from a read-only cursor (fetch size 1000) and are written one at a time
+ * through Jackson's streaming generator or a plain writer, so memory use does not grow
+ * with the table.
+ */
+@Slf4j
+@Service
+public class ExportService {
+
+    // Push written rows to the client regularly instead of only when buffers fill
+    private static final int FLUSH_EVERY = 1000;
+
+    private static final List<Column<ExportDTO.LoanRow>> LOAN_COLUMNS = List.of(
+            new Column<>("id", ExportDTO.LoanRow::getId),
+            new Column<>("userId", ExportDTO.LoanRow::getUserId),
+            new Column<>("userEmail", ExportDTO.LoanRow::getUserEmail),
+            new Column<>("userName", ExportDTO.LoanRow::getUserName),
+            new Column<>("amount", ExportDTO.LoanRow::getAmount),
+            new Column<>("termMonths", ExportDTO.LoanRow::getTermMonths),
+            new Column<>("purpose", ExportDTO.LoanRow::getPurpose),
+            new Column<>("status", ExportDTO.LoanRow::getStatus),
+            new Column<>("interestRate", ExportDTO.LoanRow::getInterestRate),
+            new Column<>("monthlyPayment", ExportDTO.LoanRow::getMonthlyPayment),
+            new Column<>("totalRepaid", ExportDTO.LoanRow::getTotalRepaid),
+            new Column<>("creditScore", ExportDTO.LoanRow::getCreditScore),
+            new Column<>("appliedDate", ExportDTO.LoanRow::getAppliedDate),
+            new Column<>("reviewedDate", ExportDTO.LoanRow::getReviewedDate),
+            new Column<>("disbursedDate", ExportDTO.LoanRow::getDisbursedDate),
+            new Column<>("dueDate", ExportDTO.LoanRow::getDueDate),
+            new Column<>("completedDate", ExportDTO.LoanRow::getCompletedDate));
+
+    private static final List<Column<ExportDTO.RepaymentRow>> REPAYMENT_COLUMNS = List.of(
+            new Column<>("id", ExportDTO.RepaymentRow::getId),
+            new Column<>("loanId", ExportDTO.RepaymentRow::getLoanId),
+            new Column<>("installmentNumber", ExportDTO.RepaymentRow::getInstallmentNumber),
+            new Column<>("amount", ExportDTO.RepaymentRow::getAmount),
+            new Column<>("principalAmount", ExportDTO.RepaymentRow::getPrincipalAmount),
+            new Column<>("interestAmount", ExportDTO.RepaymentRow::getInterestAmount),
+            new Column<>("lateFee", ExportDTO.RepaymentRow::getLateFee),
+            new Column<>("dueDate", ExportDTO.RepaymentRow::getDueDate),
+            new Column<>("paidDate", ExportDTO.RepaymentRow::getPaidDate),
+            new Column<>("status", ExportDTO.RepaymentRow::getStatus),
+            new Column<>("paymentMethod", ExportDTO.RepaymentRow::getPaymentMethod),
+            new Column<>("transactionId", ExportDTO.RepaymentRow::getTransactionId));
+
+    private final LoanRepository loanRepository;
+    private final RepaymentRepository repaymentRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public ExportService(LoanRepository loanRepository,
+                         RepaymentRepository repaymentRepository,
+                         ObjectMapper objectMapper,
+                         PlatformTransactionManager transactionManager) {
+        this.loanRepository = loanRepository;
+        this.repaymentRepository = repaymentRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        // The Postgres driver only uses a server-side cursor inside a transaction
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public long exportLoans(ExportDTO.Format format, OutputStream out) {
+        return export("loans", format, out, loanRepository::streamExportRows, LOAN_COLUMNS);
+    }
+
+    public long exportRepayments(ExportDTO.Format format, OutputStream out) {
+        return export("repayments", format, out, repaymentRepository::streamExportRows, REPAYMENT_COLUMNS);
+    }
+
+    private <T> long export(String name, ExportDTO.Format format, OutputStream out,
+                            Supplier<Stream<T>> source, List<Column<T>> columns) {
+        long start = System.nanoTime();
+        Long rows = readOnlyTransaction.execute(tx -> {
+            try (Stream<T> stream = source.get()) {
+                return format == ExportDTO.Format.CSV
+                        ? writeCsv(stream.iterator(), columns, out)
+                        : writeNdjson(stream.iterator(), columns, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        log.info("Exported {} {} rows as {} in {} ms", rows, name, format, (System.nanoTime() - start) / 1_000_000);
+        return rows != null ? rows : 0;
+    }
+
+    private <T> long writeNdjson(Iterator<T> rows, List<Column<T>> columns, OutputStream out) throws IOException {
+        long count = 0;
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            // The servlet container owns the response stream
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.setRootValueSeparator(null);
+            while (rows.hasNext()) {
+                T row = rows.next();
+                json.writeStartObject();
+                for (Column<T> column : columns) {
+                    json.writeFieldName(column.name);
+                    writeJsonValue(json, column.accessor.apply(row));
+                }
+                json.writeEndObject();
+                json.writeRaw('\n');
+                if (++count % FLUSH_EVERY == 0) {
+                    json.flush();
+                }
+            }
+        }
+        return count;
+    }
+
+    private <T> long writeCsv(Iterator<T> rows, List<Column<T>> columns, OutputStream out) throws IOException {
+        long count = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) writer.write(',');
+            writer.write(columns.get(i).name);
+        }
+        writer.write("\r\n");
+
+        while (rows.hasNext()) {
+            T row = rows.next();
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) writer.write(',');
+                writer.write(csvValue(columns.get(i).accessor.apply(row)));
+            }
+            writer.write("\r\n");
+            if (++count % FLUSH_EVERY == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        return count;
+    }
+
+    private static void writeJsonValue(JsonGenerator json, Object value) throws IOException {
+        if (value == null) {
+            json.writeNull();
+        } else if (value instanceof BigDecimal d) {
+            json.writeNumber(d);
+        } else if (value instanceof Integer i) {
+            json.writeNumber(i);
+        } else if (value instanceof Enum<?> e) {
+            json.writeString(e.name());
+        } else {
+            // Strings and ISO-8601 dates
+            json.writeString(value.toString());
+        }
+    }
+
+    private static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String s = value instanceof BigDecimal d ? d.toPlainString()
+                : value instanceof Enum<?> e ? e.name()
+                : value.toString();
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+            return s;
+        }
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    private static final class Column<T> {
+        private final String name;
+        private final Function<T, Object> accessor;
+
+        private Column(String name, Function<T, Object> accessor) {
+            this.name = name;
+            this.accessor = accessor;
+        }
+    }
+}
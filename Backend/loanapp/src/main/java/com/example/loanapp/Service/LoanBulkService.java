@@ -0,0 +1,146 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.LoanDTO;
+import com.example.loanapp.DTO.LoanDTO.BulkAction;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Loan.LoanStatus;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Exception.LoanProcessingException;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.RepaymentScheduleWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Applies one officer action to many loans.
+ * IDs are processed in chunks, each in its own transaction, and the repayment schedules
+ * of a chunk are written in a single JDBC batch. A failing loan is reported in its item
+ * result without rolling back the rest of its chunk.
+ */
+@Slf4j
+@Service
+public class LoanBulkService {
+
+    private final LoanRepository loanRepository;
+    private final LoanService loanService;
+    private final UserLoanSummaryService userLoanSummaryService;
+    private final RepaymentScheduleWriter scheduleWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public LoanBulkService(LoanRepository loanRepository,
+                           LoanService loanService,
+                           UserLoanSummaryService userLoanSummaryService,
+                           RepaymentScheduleWriter scheduleWriter,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.loan.bulk-chunk-size:100}") int chunkSize) {
+        this.loanRepository = loanRepository;
+        this.loanService = loanService;
+        this.userLoanSummaryService = userLoanSummaryService;
+        this.scheduleWriter = scheduleWriter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    public LoanDTO.BulkActionResponse process(LoanDTO.BulkActionRequest request, String adminId) {
+        if (request.getLoanIds() == null || request.getLoanIds().isEmpty() || request.getAction() == null) {
+            throw new LoanProcessingException("Bulk request needs loanIds and an action.");
+        }
+
+        long start = System.nanoTime();
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(request.getLoanIds()));
+        List<LoanDTO.BulkItemResult> results = new ArrayList<>(ids.size());
+
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<String> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+            try {
+                results.addAll(transactionTemplate.execute(tx -> processChunk(chunk, request, adminId)));
+            } catch (Exception e) {
+                // The whole chunk rolled back, so none of its items took effect
+                log.error("Bulk {} chunk starting at {} failed: {}", request.getAction(), chunk.get(0), e.getMessage());
+                chunk.forEach(id -> results.add(failure(id, null, "Chunk rolled back: " + e.getMessage())));
+            }
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        int succeeded = (int) results.stream().filter(LoanDTO.BulkItemResult::isSuccess).count();
+        log.info("Bulk {} by {}: {} loans in {} ms ({} ok, {} failed, {} loans/s)",
+                request.getAction(), adminId, ids.size(), elapsedMs, succeeded, ids.size() - succeeded,
+                elapsedMs > 0 ? ids.size() * 1000L / elapsedMs : ids.size());
+
+        return LoanDTO.BulkActionResponse.builder()
+                .action(request.getAction())
+                .requested(ids.size())
+                .succeeded(succeeded)
+                .failed(ids.size() - succeeded)
+                .elapsedMs(elapsedMs)
+                .results(results)
+                .build();
+    }
+
+    private List<LoanDTO.BulkItemResult> processChunk(List<String> chunk, LoanDTO.BulkActionRequest request, String adminId) {
+        Map<String, Loan> loans = loanRepository.findAllById(chunk).stream()
+                .collect(Collectors.toMap(Loan::getId, Function.identity()));
+
+        List<LoanDTO.BulkItemResult> results = new ArrayList<>(chunk.size());
+        List<Loan> changed = new ArrayList<>();
+        List<LoanStatus> previousStatuses = new ArrayList<>();
+        List<Repayment> schedules = new ArrayList<>();
+
+        for (String id : chunk) {
+            Loan loan = loans.get(id);
+            if (loan == null) {
+                results.add(failure(id, null, "Loan not found"));
+                continue;
+            }
+
+            LoanStatus previous = loan.getStatus();
+            try {
+                apply(request, adminId, loan, schedules);
+                changed.add(loan);
+                previousStatuses.add(previous);
+                results.add(LoanDTO.BulkItemResult.builder()
+                        .loanId(id).success(true).status(loan.getStatus().name()).build());
+            } catch (LoanProcessingException e) {
+                results.add(failure(id, previous.name(), e.getMessage()));
+            }
+        }
+
+        loanRepository.saveAll(changed);
+        scheduleWriter.writeAll(schedules);
+
+        for (int i = 0; i < changed.size(); i++) {
+            Loan loan = changed.get(i);
+            userLoanSummaryService.recordTransition(loan, previousStatuses.get(i), loan.getTotalRepaid());
+        }
+        return results;
+    }
+
+    private void apply(LoanDTO.BulkActionRequest request, String adminId, Loan loan, List<Repayment> schedules) {
+        BulkAction action = request.getAction();
+        switch (action) {
+            case APPROVE -> {
+                loanService.applyApproval(loan, adminId);
+                schedules.addAll(loanService.buildRepaymentSchedule(loan));
+            }
+            case REJECT -> loanService.applyRejection(loan, adminId,
+                    request.getReason() != null ? request.getReason() : "Criteria not met");
+            case DISBURSE -> loanService.applyDisbursement(loan);
+        }
+    }
+
+    private LoanDTO.BulkItemResult failure(String loanId, String status, String message) {
+        return LoanDTO.BulkItemResult.builder()
+                .loanId(loanId).success(false).status(status).message(message).build();
+    }
+}
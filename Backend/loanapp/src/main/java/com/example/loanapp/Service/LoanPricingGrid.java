@@ -0,0 +1,124 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.LoanDTO;
+import com.example.loanapp.Exception.InvalidRequestException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory interest rate table indexed by credit score and term.
+ * Built once at startup from the app.interest-rates.* tiers, so pricing a quote is an
+ * array lookup plus one multiply/divide against a cached annuity factor.
+ */
+@Slf4j
+@Component
+public class LoanPricingGrid {
+
+    private final AmortizationEngine amortizationEngine;
+
+    @Value("${app.credit-score.min:300}")
+    private int minScore;
+
+    @Value("${app.credit-score.max:850}")
+    private int maxScore;
+
+    @Value("${app.loan.max-term-months:84}")
+    private int maxTermMonths;
+
+    @Value("${app.loan.max-amount:100000}")
+    private BigDecimal maxAmount;
+
+    @Value("${app.interest-rates.standard:12.0}")
+    private double standardRate;
+
+    @Value("${app.interest-rates.excellent-score:750}")
+    private int excellentScore;
+
+    @Value("${app.interest-rates.excellent-discount:4.0}")
+    private double excellentDiscount;
+
+    @Value("${app.interest-rates.good-score:650}")
+    private int goodScore;
+
+    @Value("${app.interest-rates.good-discount:2.0}")
+    private double goodDiscount;
+
+    @Value("${app.interest-rates.long-term-months:36}")
+    private int longTermMonths;
+
+    @Value("${app.interest-rates.long-term-premium:2.0}")
+    private double longTermPremium;
+
+    // rates[score - minScore][termMonths - 1]
+    private BigDecimal[][] rates;
+
+    public LoanPricingGrid(AmortizationEngine amortizationEngine) {
+        this.amortizationEngine = amortizationEngine;
+    }
+
+    @PostConstruct
+    void build() {
+        // Only a handful of distinct rates exist, so cells share BigDecimal instances
+        Map<Double, BigDecimal> distinct = new HashMap<>();
+        rates = new BigDecimal[maxScore - minScore + 1][maxTermMonths];
+        for (int score = minScore; score <= maxScore; score++) {
+            for (int months = 1; months <= maxTermMonths; months++) {
+                BigDecimal rate = distinct.computeIfAbsent(tierRate(score, months), BigDecimal::valueOf);
+                rates[score - minScore][months - 1] = rate;
+                // Warms the annuity factor cache for this cell
+                amortizationEngine.monthlyPayment(BigDecimal.ONE, rate, months);
+            }
+        }
+        log.info("Pricing grid built: scores {}-{}, terms 1-{}, {} distinct rates",
+                minScore, maxScore, maxTermMonths, distinct.size());
+    }
+
+    /**
+     * Annual interest rate for a borrower. Scores outside the configured range are
+     * clamped; terms beyond the grid fall back to the tier rules.
+     */
+    public BigDecimal rateFor(int creditScore, int termMonths) {
+        if (termMonths < 1 || termMonths > maxTermMonths) {
+            return BigDecimal.valueOf(tierRate(creditScore, termMonths));
+        }
+        int score = Math.max(minScore, Math.min(maxScore, creditScore));
+        return rates[score - minScore][termMonths - 1];
+    }
+
+    public LoanDTO.Quote quote(BigDecimal amount, int termMonths, int creditScore) {
+        if (amount == null || amount.signum() <= 0 || amount.compareTo(maxAmount) > 0) {
+            throw new InvalidRequestException("Amount must be greater than 0 and at most " + maxAmount.toPlainString());
+        }
+        if (termMonths < 1 || termMonths > maxTermMonths) {
+            throw new InvalidRequestException("Term must be between 1 and " + maxTermMonths + " months");
+        }
+
+        BigDecimal rate = rateFor(creditScore, termMonths);
+        BigDecimal monthlyPayment = amortizationEngine.monthlyPayment(amount, rate, termMonths);
+        BigDecimal totalPayable = monthlyPayment.multiply(BigDecimal.valueOf(termMonths));
+
+        return LoanDTO.Quote.builder()
+                .amount(amount)
+                .termMonths(termMonths)
+                .creditScore(creditScore)
+                .interestRate(rate)
+                .monthlyPayment(monthlyPayment)
+                .totalPayable(totalPayable)
+                .totalInterest(totalPayable.subtract(amount))
+                .build();
+    }
+
+    private double tierRate(int score, int months) {
+        double rate = standardRate;
+        if (score >= excellentScore) rate -= excellentDiscount;
+        else if (score >= goodScore) rate -= goodDiscount;
+        if (months > longTermMonths) rate += longTermPremium;
+        return rate;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.LoanDTO;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.Repository.RepaymentRepository;
+import com.example.loanapp.Repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Builds LoanDTO.Response objects for a batch of loans.
+ * Repayments and borrowers for the whole batch are loaded with one IN (...) query each,
+ * so a page costs two round trips instead of two per row.
+ */
+@Component
+@RequiredArgsConstructor
+public class LoanResponseAssembler {
+
+    private final RepaymentRepository repaymentRepository;
+    private final UserRepository userRepository;
+    private final RepaymentScheduleService repaymentScheduleService;
+
+    public LoanDTO.Response toResponse(Loan loan) {
+        return toResponses(List.of(loan)).get(0);
+    }
+
+    public Page<LoanDTO.Response> toResponsePage(Page<Loan> page) {
+        return new PageImpl<>(toResponses(page.getContent()), page.getPageable(), page.getTotalElements());
+    }
+
+    public List<LoanDTO.Response> toResponses(List<Loan> loans) {
+        if (loans.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> loanIds = loans.stream().map(Loan::getId).collect(Collectors.toList());
+
+        // Reading the id off the lazy proxy does not initialize it
+        Set<String> userIds = loans.stream()
+                .map(l -> l.getUser().getId())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        LocalDate dueFrom = loans.stream()
+                .map(l -> RepaymentScheduleService.earliestDueDate(l.getAppliedDate()))
+                .min(Comparator.naturalOrder())
+                .get();
+
+        Map<String, List<Repayment>> repaymentsByLoan = new HashMap<>();
+        for (Repayment r : repaymentRepository.findByLoanIdInOrderByDueDateAsc(loanIds, dueFrom)) {
+            repaymentsByLoan.computeIfAbsent(r.getLoan().getId(), k -> new ArrayList<>()).add(r);
+        }
+
+        Map<String, User> usersById = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        return loans.stream()
+                .map(l -> assemble(l, usersById.get(l.getUser().getId()),
+                        repaymentScheduleService.installmentsOf(l,
+                                repaymentsByLoan.getOrDefault(l.getId(), Collections.emptyList()))))
+                .collect(Collectors.toList());
+    }
+
+    private LoanDTO.Response assemble(Loan loan, User user, List<Repayment> repayments) {
+        return LoanDTO.Response.builder()
+                .id(loan.getId())
+                .amount(loan.getAmount())
+                .termMonths(loan.getTermMonths())
+                .purpose(loan.getPurpose().name())
+                .status(loan.getStatus().name())
+                .interestRate(loan.getInterestRate())
+                .monthlyPayment(loan.getMonthlyPayment())
+                .creditScore(loan.getCreditScore())
+                .appliedDate(loan.getAppliedDate())
+                .reviewedDate(loan.getReviewedDate())
+                .reviewedBy(loan.getReviewedBy())
+                .userId(loan.getUser().getId())
+                .userName(user != null ? user.getName() : null)
+                .totalRepaid(loan.getTotalRepaid())
+                .dueDate(loan.getDueDate())
+                // Ensure repayments are passed so the Dashboard "Pay Now" logic triggers
+                .repayments(repayments.stream()
+                        .map(this::mapToRepaymentDTO)
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
+    private LoanDTO.RepaymentDTO mapToRepaymentDTO(Repayment repayment) {
+        return LoanDTO.RepaymentDTO.builder()
+                .id(repayment.getId())
+                .loanId(repayment.getLoan().getId())
+                .installmentNumber(repayment.getInstallmentNumber())
+                .amount(repayment.getAmount())
+                .principalAmount(repayment.getPrincipalAmount())
+                .interestAmount(repayment.getInterestAmount())
+                .balanceAfter(repayment.getBalanceAfter())
+                .dueDate(repayment.getDueDate())
+                .status(repayment.getStatus().name())
+                .paidDate(repayment.getPaidDate())
+                .build();
+    }
+}
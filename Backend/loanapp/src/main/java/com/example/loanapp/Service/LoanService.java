@@ -3,48 +3,84 @@ package com.example.loanapp.Service;
 import com.example.loanapp.DTO.LoanDTO;
 import com.example.loanapp.Entity.Loan;
 import com.example.loanapp.Entity.Loan.LoanStatus;
+import com.example.loanapp.Entity.OutboxEvent.EventType;
 import com.example.loanapp.Entity.Repayment;
 import com.example.loanapp.Entity.User;
+import com.example.loanapp.Entity.UserLoanSummary;
+import com.example.loanapp.Exception.InvalidRequestException;
 import com.example.loanapp.Exception.LoanProcessingException;
 import com.example.loanapp.Exception.ResourceNotFoundException;
 import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.LoanSpecifications;
 import com.example.loanapp.Repository.RepaymentRepository;
-import jakarta.transaction.Transactional;
+import com.example.loanapp.Repository.RepaymentScheduleWriter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class LoanService {
 
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_ACTIVE_LOANS = 3;
+    private static final Sort KEYSET_ORDER = Sort.by(Sort.Direction.DESC, "createdAt", "id");
+
     private final LoanRepository loanRepository;
     private final RepaymentRepository repaymentRepository;
     private final UserService userService;
     private final CreditScoreService creditScoreService;
-    private final NotificationService notificationService;
+    private final OutboxService outboxService;
+    private final LoanResponseAssembler loanResponseAssembler;
+    private final UserLoanSummaryService userLoanSummaryService;
+    private final RepaymentScheduleWriter scheduleWriter;
+    private final RepaymentScheduleService repaymentScheduleService;
+    private final AmortizationEngine amortizationEngine;
+    private final LoanPricingGrid loanPricingGrid;
+    private final LoanStateMachine loanStateMachine;
 
     public LoanService(LoanRepository loanRepository,
                        RepaymentRepository repaymentRepository,
                        @Lazy UserService userService,
                        CreditScoreService creditScoreService,
-                       NotificationService notificationService) {
+                       OutboxService outboxService,
+                       LoanResponseAssembler loanResponseAssembler,
+                       UserLoanSummaryService userLoanSummaryService,
+                       RepaymentScheduleWriter scheduleWriter,
+                       RepaymentScheduleService repaymentScheduleService,
+                       AmortizationEngine amortizationEngine,
+                       LoanPricingGrid loanPricingGrid,
+                       LoanStateMachine loanStateMachine) {
         this.loanRepository = loanRepository;
         this.repaymentRepository = repaymentRepository;
         this.userService = userService;
         this.creditScoreService = creditScoreService;
-        this.notificationService = notificationService;
+        this.outboxService = outboxService;
+        this.loanResponseAssembler = loanResponseAssembler;
+        this.userLoanSummaryService = userLoanSummaryService;
+        this.scheduleWriter = scheduleWriter;
+        this.repaymentScheduleService = repaymentScheduleService;
+        this.amortizationEngine = amortizationEngine;
+        this.loanPricingGrid = loanPricingGrid;
+        this.loanStateMachine = loanStateMachine;
     }
 
     // --- 👤 User Endpoints ---
@@ -54,16 +90,9 @@ public class LoanService {
         User user = userService.getUserEntityByEmail(userEmail);
 
         // Check active loan limits
-        List<LoanStatus> activeStatuses = List.of(LoanStatus.APPROVED, LoanStatus.DISBURSED, LoanStatus.REPAYING);
-        long activeCount = loanRepository.findByUserId(user.getId()).stream()
-                .filter(l -> activeStatuses.contains(l.getStatus()))
-                .count();
-
-        if (activeCount >= 3) {
-            throw new LoanProcessingException("Maximum limit of 3 active loans reached.");
-        }
+        checkActiveLoanLimit(user.getId());
 
-        Integer creditScore = user.getCreditScore() != null ? user.getCreditScore() : creditScoreService.calculateCreditScore(user);
+        Integer creditScore = creditScoreOf(user);
         BigDecimal interestRate = calculateInterestRate(creditScore, request.getTermMonths());
         BigDecimal monthlyPayment = calculateMonthlyPayment(request.getAmount(), interestRate, request.getTermMonths());
 
@@ -81,7 +110,8 @@ public class LoanService {
                 .build();
 
         Loan savedLoan = loanRepository.save(loan);
-        notificationService.sendLoanApplicationNotification(user, savedLoan);
+        // Notification is delivered by OutboxDispatcher after commit
+        outboxService.loanEvent(EventType.LOAN_APPLIED, savedLoan);
 
         log.info("New loan application submitted by {}: Loan ID {}", userEmail, savedLoan.getId());
         return convertToResponse(savedLoan);
@@ -89,40 +119,24 @@ public class LoanService {
 
     /**
      * Resolves the 404 in Controller and populates Dashboard Stats.
+     * Served from the user_loan_summary read model.
      */
     public LoanDTO.Summary getUserLoanSummary(String email) {
         User user = userService.getUserEntityByEmail(email);
-        List<Loan> loans = loanRepository.findByUserId(user.getId());
-
-        BigDecimal borrowed = BigDecimal.ZERO;
-        BigDecimal repaid = BigDecimal.ZERO;
-        BigDecimal monthly = BigDecimal.ZERO;
-
-        List<Loan.LoanStatus> activeStatuses = List.of(
-                Loan.LoanStatus.APPROVED,
-                Loan.LoanStatus.DISBURSED,
-                Loan.LoanStatus.REPAYING
-        );
-
-        int activeCount = 0;
-        for (Loan l : loans) {
-            if (activeStatuses.contains(l.getStatus())) {
-                borrowed = borrowed.add(l.getAmount());
-                repaid = repaid.add(l.getTotalRepaid() != null ? l.getTotalRepaid() : BigDecimal.ZERO);
-                monthly = monthly.add(l.getMonthlyPayment() != null ? l.getMonthlyPayment() : BigDecimal.ZERO);
-                activeCount++;
-            }
-        }
+        return getUserLoanSummaryById(user.getId());
+    }
 
-        // Return the actual DTO instead of a Map
-        return LoanDTO.Summary.builder()
-                .totalBorrowed(borrowed)
-                .totalRepaid(repaid)
-                .activeLoans(activeCount)
-                .monthlyPayment(monthly)
+    public LoanDTO.Summary getUserLoanSummaryById(String userId) {
+        UserLoanSummary summary = userLoanSummaryService.getSummary(userId);
 
-                .availableCredit(BigDecimal.valueOf(100000).subtract(borrowed).max(BigDecimal.ZERO))
+        return LoanDTO.Summary.builder()
+                .totalBorrowed(summary.getTotalBorrowed())
+                .totalRepaid(summary.getTotalRepaid())
+                .activeLoans(summary.getActiveLoans())
+                .monthlyPayment(summary.getMonthlyPayment())
+                .availableCredit(BigDecimal.valueOf(100000).subtract(summary.getTotalBorrowed()).max(BigDecimal.ZERO))
                 .pendingDue(0)
+                .nextDueDate(summary.getNextDueDate())
                 .build();
     }
     // --- 🛠️ Admin/Officer Endpoints ---
@@ -131,32 +145,19 @@ public class LoanService {
     public LoanDTO.Response approveLoan(String loanId, String adminId, String notes) {
         Loan loan = getLoanEntityById(loanId);
 
-        if (loan.getStatus() != LoanStatus.PENDING) {
-            throw new LoanProcessingException("Only PENDING loans can be approved.");
-        }
-
-        loan.setStatus(LoanStatus.APPROVED);
-        loan.setReviewedDate(LocalDate.now());
-        loan.setReviewedBy(adminId);
-        loan.setDueDate(LocalDate.now().plusMonths(loan.getTermMonths()));
-
+        applyApproval(loan, adminId);
         generateRepaymentSchedule(loan);
 
-        return convertToResponse(loanRepository.save(loan));
+        Loan saved = loanRepository.save(loan);
+        userLoanSummaryService.recordTransition(saved, LoanStatus.PENDING, saved.getTotalRepaid());
+        return convertToResponse(saved);
     }
 
     @Transactional
     public LoanDTO.Response rejectLoan(String loanId, String adminId, String reason) {
         Loan loan = getLoanEntityById(loanId);
 
-        if (loan.getStatus() != LoanStatus.PENDING) {
-            throw new LoanProcessingException("Only PENDING loans can be rejected.");
-        }
-
-        loan.setStatus(LoanStatus.REJECTED);
-        loan.setRejectionReason(reason);
-        loan.setReviewedBy(adminId);
-        loan.setReviewedDate(LocalDate.now());
+        applyRejection(loan, adminId, reason);
 
         return convertToResponse(loanRepository.save(loan));
     }
@@ -165,40 +166,206 @@ public class LoanService {
     public LoanDTO.Response disburseLoan(String loanId) {
         Loan loan = getLoanEntityById(loanId);
 
-        if (loan.getStatus() != LoanStatus.APPROVED) {
+        applyDisbursement(loan);
+
+        Loan saved = loanRepository.save(loan);
+        userLoanSummaryService.recordTransition(saved, LoanStatus.APPROVED, saved.getTotalRepaid());
+        return convertToResponse(saved);
+    }
+
+    // --- Transition Steps (shared with LoanBulkService; must run inside a transaction) ---
+
+    /**
+     * Validates and applies PENDING -> APPROVED. The caller persists the repayment schedule.
+     */
+    public void applyApproval(Loan loan, String adminId) {
+        if (!loanStateMachine.canTransition(loan.getStatus(), LoanStatus.APPROVED)) {
+            throw new LoanProcessingException("Only PENDING or UNDER_REVIEW loans can be approved.");
+        }
+
+        // Approval is what makes a loan active, so re-check the limit under the same lock
+        checkActiveLoanLimit(loan.getUser().getId());
+
+        loanStateMachine.transition(loan, LoanStatus.APPROVED);
+        loan.setReviewedDate(LocalDate.now());
+        loan.setReviewedBy(adminId);
+        loan.setDueDate(LocalDate.now().plusMonths(loan.getTermMonths()));
+        loan.setVirtualSchedule(repaymentScheduleService.useVirtualSchedules());
+        outboxService.loanEvent(EventType.LOAN_APPROVED, loan);
+    }
+
+    public void applyRejection(Loan loan, String adminId, String reason) {
+        if (!loanStateMachine.canTransition(loan.getStatus(), LoanStatus.REJECTED)) {
+            throw new LoanProcessingException("Only PENDING or UNDER_REVIEW loans can be rejected.");
+        }
+
+        loanStateMachine.transition(loan, LoanStatus.REJECTED);
+        loan.setRejectionReason(reason);
+        loan.setReviewedBy(adminId);
+        loan.setReviewedDate(LocalDate.now());
+        outboxService.loanEvent(EventType.LOAN_REJECTED, loan);
+    }
+
+    public void applyDisbursement(Loan loan) {
+        if (!loanStateMachine.canTransition(loan.getStatus(), LoanStatus.DISBURSED)) {
             throw new LoanProcessingException("Only approved loans can be disbursed.");
         }
 
-        loan.setStatus(LoanStatus.DISBURSED);
+        loanStateMachine.transition(loan, LoanStatus.DISBURSED);
         loan.setDisbursedDate(LocalDate.now());
+        outboxService.loanEvent(EventType.LOAN_DISBURSED, loan);
 
-        // Update repayment dates based on actual disbursement
-        List<Repayment> schedule = repaymentRepository.findByLoanIdOrderByDueDateAsc(loanId);
-        for (int i = 0; i < schedule.size(); i++) {
-            schedule.get(i).setDueDate(LocalDate.now().plusMonths(i + 1));
+        if (RepaymentScheduleService.isVirtual(loan)) {
+            // Derived installments are anchored on disbursedDate already
+            return;
         }
-        repaymentRepository.saveAll(schedule);
 
-        return convertToResponse(loanRepository.save(loan));
+        // Update repayment dates based on actual disbursement, one statement regardless of term
+        repaymentRepository.rescheduleFrom(loan.getId(), loan.getDisbursedDate(), 1,
+                RepaymentScheduleService.earliestDueDate(loan.getAppliedDate()));
     }
 
     // --- Data Retrieval ---
 
+    /**
+     * Strong ETag for GET /api/loans/{id}, computed without loading the loan or its schedule.
+     * Not read-only on purpose, like getLoanById: the dashboard polls these right after its
+     * own writes, so they must see the primary rather than a replica that may lag.
+     */
+    @Transactional
+    public String getLoanETag(String id) {
+        LoanDTO.VersionStamp stamp = loanRepository.findVersionStamp(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Loan not found: " + id));
+        String source = id + "|" + stamp.getVersion() + "|" + stamp.getUpdatedAt() + "|" + stamp.getUserUpdatedAt()
+                + "|" + stamp.getLatestRepaymentUpdate() + "|" + stamp.getRepaymentCount();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @Transactional
     public LoanDTO.Response getLoanById(String id) {
         return convertToResponse(getLoanEntityById(id));
     }
 
+    @Transactional(readOnly = true)
     public Page<LoanDTO.Response> getAllLoans(Pageable pageable) {
-        return loanRepository.findAll(pageable).map(this::convertToResponse);
+        return loanResponseAssembler.toResponsePage(loanRepository.findAll(pageable));
+    }
+
+    /**
+     * Officer search across status, purpose, amount, credit score, dates and borrower.
+     * Unsorted requests default to newest first.
+     */
+    @Transactional(readOnly = true)
+    public Page<LoanDTO.Response> searchLoans(LoanDTO.SearchCriteria criteria, Pageable pageable) {
+        Sort sort = pageable.getSort().isSorted()
+                ? pageable.getSort()
+                : Sort.by(Sort.Direction.DESC, "createdAt", "id");
+        Pageable page = PageRequest.of(pageable.getPageNumber(),
+                Math.min(Math.max(pageable.getPageSize(), 1), MAX_PAGE_SIZE), sort);
+        return loanResponseAssembler.toResponsePage(
+                loanRepository.findAll(LoanSpecifications.matching(criteria), page));
+    }
+
+    @Transactional(readOnly = true)
+    public Page<LoanDTO.ListItem> getAllLoanItems(Pageable pageable) {
+        return repaymentScheduleService.withVirtualNextDueDates(loanRepository.findAllListItems(pageable));
+    }
+
+    @Transactional(readOnly = true)
+    public Page<LoanDTO.ListItem> getUserLoanItems(String userEmail, Pageable pageable) {
+        User user = userService.getUserEntityByEmail(userEmail);
+        return repaymentScheduleService.withVirtualNextDueDates(
+                loanRepository.findListItemsByUserId(user.getId(), pageable));
+    }
+
+    /**
+     * Cursor-based listing keyed on (createdAt, id).
+     * Every page is an index range scan, so deep pages cost the same as the first one.
+     */
+    @Transactional(readOnly = true)
+    public LoanDTO.CursorPage getLoansByCursor(String cursor, int size,
+                                               LoanStatus status, Loan.LoanPurpose purpose,
+                                               boolean includeTotal) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Specification<Loan> filter = LoanSpecifications.keysetFilter(status, purpose);
+        Specification<Loan> page = cursor == null || cursor.isBlank()
+                ? filter
+                : filter.and(afterCursor(cursor));
+
+        // Fetch one extra row to know whether another page exists
+        List<Loan> loans = loanRepository.findBy(page, q -> q.sortBy(KEYSET_ORDER).limit(pageSize + 1).all());
+
+        boolean hasNext = loans.size() > pageSize;
+        if (hasNext) {
+            loans = loans.subList(0, pageSize);
+        }
+
+        Loan last = loans.isEmpty() ? null : loans.get(loans.size() - 1);
+
+        return LoanDTO.CursorPage.builder()
+                .content(loanResponseAssembler.toResponses(loans))
+                .size(loans.size())
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? encodeCursor(last) : null)
+                .totalElements(includeTotal ? loanRepository.count(filter) : null)
+                .build();
+    }
+
+    /**
+     * Prices a loan without creating it. Uses the caller's credit score unless one is given.
+     */
+    public LoanDTO.Quote quoteLoan(String userEmail, BigDecimal amount, Integer termMonths, Integer creditScore) {
+        if (termMonths == null) {
+            throw new InvalidRequestException("Term is required");
+        }
+        int score = creditScore != null ? creditScore : creditScoreOf(userService.getUserEntityByEmail(userEmail));
+        return loanPricingGrid.quote(amount, termMonths, score);
     }
 
+    @Transactional(readOnly = true)
     public Page<LoanDTO.Response> getUserLoans(String userEmail, Pageable pageable) {
         User user = userService.getUserEntityByEmail(userEmail);
-        return loanRepository.findByUserId(user.getId(), pageable).map(this::convertToResponse);
+        return loanResponseAssembler.toResponsePage(loanRepository.findByUserId(user.getId(), pageable));
     }
 
     // --- Internal Helpers ---
 
+    /**
+     * Enforces the active-loan limit with an indexed count while holding the user's
+     * summary row lock, so parallel submissions cannot both pass the check.
+     */
+    private void checkActiveLoanLimit(String userId) {
+        userLoanSummaryService.lockUser(userId);
+        long activeCount = loanRepository.countByUserIdAndStatusIn(userId, UserLoanSummaryService.ACTIVE_STATUSES);
+
+        if (activeCount >= MAX_ACTIVE_LOANS) {
+            throw new LoanProcessingException("Maximum limit of " + MAX_ACTIVE_LOANS + " active loans reached.");
+        }
+    }
+
+    private String encodeCursor(Loan loan) {
+        String key = loan.getCreatedAt() + "|" + loan.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Specification<Loan> afterCursor(String cursor) {
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = key.split("\\|", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return LoanSpecifications.createdBefore(LocalDateTime.parse(parts[0]), parts[1]);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidRequestException("Invalid cursor: " + cursor);
+        }
+    }
+
     private Loan getLoanEntityById(String id) {
         return loanRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Loan not found: " + id));
@@ -208,72 +375,54 @@ public class LoanService {
      * Maps Entity to DTO and includes Repayment details for the Frontend.
      */
     private LoanDTO.Response convertToResponse(Loan loan) {
-        List<Repayment> repayments = repaymentRepository.findByLoanIdOrderByDueDateAsc(loan.getId());
-
-        return LoanDTO.Response.builder()
-                .id(loan.getId())
-                .amount(loan.getAmount())
-                .termMonths(loan.getTermMonths())
-                .purpose(loan.getPurpose().name())
-                .status(loan.getStatus().name())
-                .interestRate(loan.getInterestRate())
-                .monthlyPayment(loan.getMonthlyPayment())
-                .creditScore(loan.getCreditScore())
-                .appliedDate(loan.getAppliedDate())
-                .reviewedDate(loan.getReviewedDate())
-                .reviewedBy(loan.getReviewedBy())
-                .userId(loan.getUser().getId())
-                .userName(loan.getUser().getName())
-                .totalRepaid(loan.getTotalRepaid())
-                .dueDate(loan.getDueDate())
-                // Ensure repayments are passed so the Dashboard "Pay Now" logic triggers
-                .repayments(repayments != null ? repayments.stream()
-                        .map(this::mapToRepaymentDTO)
-                        .collect(Collectors.toList()) : new ArrayList<>())
-                .build();
+        return loanResponseAssembler.toResponse(loan);
     }
 
-    private LoanDTO.RepaymentDTO mapToRepaymentDTO(Repayment repayment) {
-        return LoanDTO.RepaymentDTO.builder()
-                .id(repayment.getId())
-                .loanId(repayment.getLoan().getId())
-                .installmentNumber(repayment.getInstallmentNumber())
-                .amount(repayment.getAmount())
-                .dueDate(repayment.getDueDate())
-                .status(repayment.getStatus().name())
-                .paidDate(repayment.getPaidDate())
-                .build();
+    private Integer creditScoreOf(User user) {
+        return user.getCreditScore() != null ? user.getCreditScore() : creditScoreService.calculateCreditScore(user);
     }
 
     private BigDecimal calculateInterestRate(Integer score, Integer months) {
-        double base = 12.0; // Slightly higher default base
-        if (score >= 750) base -= 4.0;
-        else if (score >= 650) base -= 2.0;
-        if (months > 36) base += 2.0;
-        return BigDecimal.valueOf(base);
+        // Tiers come from app.interest-rates.*; see LoanPricingGrid
+        return loanPricingGrid.rateFor(score, months);
     }
 
     private BigDecimal calculateMonthlyPayment(BigDecimal principal, BigDecimal annualRate, int months) {
-        // Amortization Formula: [P * r * (1 + r)^n] / [(1 + r)^n – 1]
-        BigDecimal monthlyRate = annualRate.divide(BigDecimal.valueOf(1200), 10, RoundingMode.HALF_UP);
-        BigDecimal factor = BigDecimal.ONE.add(monthlyRate).pow(months);
-
-        return principal.multiply(monthlyRate.multiply(factor))
-                .divide(factor.subtract(BigDecimal.ONE), 2, RoundingMode.HALF_UP);
+        // Amortization Formula: [P * r * (1 + r)^n] / [(1 + r)^n – 1], factors cached per (rate, term)
+        return amortizationEngine.monthlyPayment(principal, annualRate, months);
     }
 
     private void generateRepaymentSchedule(Loan loan) {
+        if (RepaymentScheduleService.isVirtual(loan)) {
+            log.info("Loan ID {} uses a virtual schedule; no installments written", loan.getId());
+            return;
+        }
+        scheduleWriter.writeAll(buildRepaymentSchedule(loan));
+        log.info("Generated schedule for Loan ID {}: {} installments", loan.getId(), loan.getTermMonths());
+    }
+
+    /**
+     * Builds the (unsaved) installments for an approved loan.
+     * Empty for virtual schedules, whose installments are derived on read.
+     */
+    public List<Repayment> buildRepaymentSchedule(Loan loan) {
         List<Repayment> schedule = new ArrayList<>();
-        for (int i = 1; i <= loan.getTermMonths(); i++) {
+        if (RepaymentScheduleService.isVirtual(loan)) {
+            return schedule;
+        }
+        for (AmortizationEngine.Installment i : amortizationEngine.schedule(
+                loan.getAmount(), loan.getInterestRate(), loan.getTermMonths(), LocalDate.now())) {
             schedule.add(Repayment.builder()
                     .loan(loan)
-                    .installmentNumber(i)
-                    .amount(loan.getMonthlyPayment())
-                    .dueDate(LocalDate.now().plusMonths(i))
+                    .installmentNumber(i.getNumber())
+                    .amount(i.getPayment())
+                    .principalAmount(i.getPrincipal())
+                    .interestAmount(i.getInterest())
+                    .balanceAfter(i.getBalance())
+                    .dueDate(i.getDueDate())
                     .status(Repayment.RepaymentStatus.PENDING)
                     .build());
         }
-        repaymentRepository.saveAll(schedule);
-        log.info("Generated schedule for Loan ID {}: {} installments", loan.getId(), loan.getTermMonths());
+        return schedule;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,58 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Loan.LoanStatus;
+import com.example.loanapp.Exception.LoanProcessingException;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Allowed loan status transitions in one place.
+ * Concurrent writers are caught by the optimistic @Version on Loan, not here; this only
+ * guards against moves that make no sense from the state the caller read.
+ */
+@Component
+public class LoanStateMachine {
+
+    private static final Map<LoanStatus, Set<LoanStatus>> TRANSITIONS = new EnumMap<>(LoanStatus.class);
+
+    static {
+        TRANSITIONS.put(LoanStatus.PENDING, EnumSet.of(LoanStatus.UNDER_REVIEW, LoanStatus.APPROVED, LoanStatus.REJECTED));
+        TRANSITIONS.put(LoanStatus.UNDER_REVIEW, EnumSet.of(LoanStatus.APPROVED, LoanStatus.REJECTED));
+        // Payments may arrive before the officer records the disbursement
+        TRANSITIONS.put(LoanStatus.APPROVED, EnumSet.of(LoanStatus.DISBURSED, LoanStatus.REPAYING, LoanStatus.COMPLETED));
+        TRANSITIONS.put(LoanStatus.DISBURSED, EnumSet.of(LoanStatus.REPAYING, LoanStatus.COMPLETED, LoanStatus.DEFAULTED));
+        TRANSITIONS.put(LoanStatus.REPAYING, EnumSet.of(LoanStatus.REPAYING, LoanStatus.COMPLETED, LoanStatus.DEFAULTED));
+        TRANSITIONS.put(LoanStatus.DEFAULTED, EnumSet.of(LoanStatus.REPAYING, LoanStatus.COMPLETED));
+        // A late M-Pesa confirmation may still land on a completed loan
+        TRANSITIONS.put(LoanStatus.COMPLETED, EnumSet.of(LoanStatus.COMPLETED));
+        TRANSITIONS.put(LoanStatus.REJECTED, EnumSet.noneOf(LoanStatus.class));
+    }
+
+    public boolean canTransition(LoanStatus from, LoanStatus to) {
+        return TRANSITIONS.getOrDefault(from, Collections.emptySet()).contains(to);
+    }
+
+    /**
+     * Moves the loan to the target status or throws without touching it.
+     */
+    public void transition(Loan loan, LoanStatus to) {
+        LoanStatus from = loan.getStatus();
+        if (!canTransition(from, to)) {
+            throw new LoanProcessingException("Loan cannot move from " + from + " to " + to + ".");
+        }
+        loan.setStatus(to);
+    }
+
+    /**
+     * Whether a payment can be recorded against a loan in this status.
+     */
+    public boolean acceptsPayment(LoanStatus status) {
+        return canTransition(status, LoanStatus.REPAYING) || canTransition(status, LoanStatus.COMPLETED);
+    }
+}
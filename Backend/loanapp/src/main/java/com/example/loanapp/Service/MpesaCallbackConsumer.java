@@ -0,0 +1,161 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.MpesaDTO;
+import com.example.loanapp.Entity.MpesaCallback;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Repository.MpesaCallbackRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Inbox for STK push callbacks. The endpoint only records the callback (a duplicate
+ * CheckoutRequestID is dropped by the primary key); a poller applies batches later.
+ *
+ * A batch of due callbacks is claimed with FOR UPDATE SKIP LOCKED and their repayments are
+ * found with one IN (...) query. Each callback is applied in its own (REQUIRES_NEW)
+ * transaction, so one that fails rolls back alone while its error and next attempt are
+ * written with the batch. A callback that did not apply, including one whose CheckoutRequestID
+ * is not known yet (it can beat the push result being recorded), is retried with exponential
+ * backoff and parked as FAILED once it is give-up-after-minutes old.
+ */
+@Slf4j
+@Service
+public class MpesaCallbackConsumer {
+
+    private static final int MAX_BATCHES_PER_POLL = 20;
+    private static final long MAX_BACKOFF_MS = 60_000;
+
+    private final MpesaCallbackRepository callbackRepository;
+    private final RepaymentRepository repaymentRepository;
+    private final RepaymentService repaymentService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate applyTemplate;
+    private final int batchSize;
+    private final long backoffMs;
+    private final Duration giveUpAfter;
+
+    public MpesaCallbackConsumer(MpesaCallbackRepository callbackRepository,
+                                 RepaymentRepository repaymentRepository,
+                                 RepaymentService repaymentService,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.mpesa.callbacks.batch-size:100}") int batchSize,
+                                 @Value("${app.mpesa.callbacks.backoff-ms:1000}") long backoffMs,
+                                 @Value("${app.mpesa.callbacks.give-up-after-minutes:60}") long giveUpAfterMinutes) {
+        this.callbackRepository = callbackRepository;
+        this.repaymentRepository = repaymentRepository;
+        this.repaymentService = repaymentService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.applyTemplate = new TransactionTemplate(transactionManager);
+        this.applyTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = batchSize;
+        this.backoffMs = backoffMs;
+        this.giveUpAfter = Duration.ofMinutes(giveUpAfterMinutes);
+    }
+
+    /**
+     * Records a callback. Returns false for a repeat delivery of one already recorded.
+     */
+    public boolean accept(MpesaDTO.StkCallback callback) {
+        int inserted = callbackRepository.insertIfAbsent(
+                callback.getCheckoutRequestId(),
+                callback.getResultCode(),
+                truncate(callback.getResultDesc(), 255),
+                truncate(callback.item("MpesaReceiptNumber"), 40),
+                LocalDateTime.now());
+        return inserted > 0;
+    }
+
+    @Scheduled(fixedDelayString = "${app.mpesa.callbacks.poll-interval-ms:500}")
+    public void poll() {
+        for (int i = 0; i < MAX_BATCHES_PER_POLL; i++) {
+            Integer claimed;
+            try {
+                claimed = transactionTemplate.execute(tx -> applyBatch());
+            } catch (Exception e) {
+                log.error("M-Pesa callback batch failed: {}", e.getMessage(), e);
+                return;
+            }
+            // Attempted rows are pushed back, so a full batch means more are due, not the same ones
+            if (claimed == null || claimed < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops applied callbacks after a month; failed ones are kept for inspection.
+     */
+    @Scheduled(cron = "${app.mpesa.callbacks.purge-cron:0 45 3 * * *}")
+    public void purgeApplied() {
+        Integer deleted = transactionTemplate.execute(tx ->
+                callbackRepository.deleteAppliedBefore(LocalDateTime.now().minusDays(30)));
+        log.info("Purged {} applied M-Pesa callbacks", deleted);
+    }
+
+    private int applyBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<MpesaCallback> batch = callbackRepository.claimBatch(now, batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, String> repaymentIds = repaymentRepository.findByMpesaCheckoutIdIn(
+                        batch.stream().map(MpesaCallback::getCheckoutRequestId).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Repayment::getMpesaCheckoutId, Repayment::getId, (a, b) -> a));
+
+        for (MpesaCallback callback : batch) {
+            callback.setAttempts(callback.getAttempts() + 1);
+            String repaymentId = repaymentIds.get(callback.getCheckoutRequestId());
+            if (repaymentId == null) {
+                scheduleRetry(callback, "No repayment found for CheckoutID", now);
+                continue;
+            }
+            try {
+                applyTemplate.executeWithoutResult(tx -> repaymentService.applyMpesaCallback(
+                        repaymentRepository.findById(repaymentId).orElseThrow(), callback));
+                callback.setStatus(MpesaCallback.Status.APPLIED);
+                callback.setProcessedAt(now);
+                callback.setLastError(null);
+            } catch (Exception e) {
+                // The database's own message, not the wrapper's statement dump
+                String error = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                log.warn("M-Pesa callback {} failed to apply: {}", callback.getCheckoutRequestId(), error);
+                scheduleRetry(callback, error, now);
+            }
+        }
+        callbackRepository.saveAll(batch);
+        return batch.size();
+    }
+
+    private void scheduleRetry(MpesaCallback callback, String error, LocalDateTime now) {
+        callback.setLastError(truncate(error, 500));
+        if (callback.getReceivedAt().isBefore(now.minus(giveUpAfter))) {
+            callback.setStatus(MpesaCallback.Status.FAILED);
+            callback.setProcessedAt(now);
+            log.error("M-Pesa callback {} not applied after {} attempts, giving up: {}",
+                    callback.getCheckoutRequestId(), callback.getAttempts(), error);
+            return;
+        }
+        // 1s, 2s, 4s, ... capped at a minute
+        long delay = Math.min(backoffMs << Math.min(callback.getAttempts() - 1, 20), MAX_BACKOFF_MS);
+        callback.setNextAttemptAt(now.plus(Duration.ofMillis(delay)));
+    }
+
+    private static String truncate(String value, int max) {
+        return value != null && value.length() > max ? value.substring(0, max) : value;
+    }
+}
@@ -3,26 +3,34 @@ package com.example.loanapp.Service;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Slf4j
 @Service
 public class MpesaService {
 
-    private final OkHttpClient httpClient = new OkHttpClient();
+    private final OkHttpClient httpClient;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Value("${mpesa.consumer.key}") private String consumerKey;
@@ -31,10 +39,32 @@ public class MpesaService {
     @Value("${mpesa.passkey}") private String passkey;
     @Value("${mpesa.callback.url}") private String callbackUrl;
 
+    // Daraja tokens live for an hour; used when a response omits expires_in
+    private static final long DEFAULT_TOKEN_TTL_SECONDS = 3599;
+
+    private final ExecutorService tokenRefresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "mpesa-token-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+    private final MpesaTokenCache tokenCache;
+
+    private final DarajaDispatcher darajaDispatcher;
+
+    public MpesaService(MeterRegistry meterRegistry,
+                        DarajaDispatcher darajaDispatcher,
+                        @Value("${mpesa.token.refresh-ahead-seconds:300}") long refreshAheadSeconds) {
+        this.darajaDispatcher = darajaDispatcher;
+        this.httpClient = darajaDispatcher.client();
+        this.tokenCache = new MpesaTokenCache(this::fetchAccessToken, tokenRefresher, Clock.systemUTC(),
+                Duration.ofSeconds(refreshAheadSeconds), meterRegistry);
+    }
+
     @Data
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class MpesaTokenResponse {
         @JsonProperty("access_token") private String accessToken;
+        @JsonProperty("expires_in") private String expiresIn;
     }
 
     @Data
@@ -56,7 +86,24 @@ public class MpesaService {
         return clean;
     }
 
+    /**
+     * Cached OAuth token; only goes to Safaricom when nothing usable is cached.
+     */
     public String getAccessToken() throws IOException {
+        return tokenCache.get();
+    }
+
+    @Scheduled(fixedDelayString = "${mpesa.token.check-interval-ms:60000}")
+    public void refreshAccessTokenAhead() {
+        tokenCache.refreshIfDue();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        tokenRefresher.shutdownNow();
+    }
+
+    private MpesaTokenCache.Token fetchAccessToken() throws IOException {
         // Clean credentials to avoid "Invalid Access Token" due to trailing spaces
         String auth = consumerKey.trim() + ":" + consumerSecret.trim();
         String encodedAuth = Base64.getEncoder().encodeToString(auth.getBytes());
@@ -75,66 +122,104 @@ public class MpesaService {
                 throw new IOException("Mpesa Auth Failed");
             }
             MpesaTokenResponse res = objectMapper.readValue(body, MpesaTokenResponse.class);
-            return res.getAccessToken().trim();
+            long ttlSeconds = DEFAULT_TOKEN_TTL_SECONDS;
+            if (res.getExpiresIn() != null) {
+                try {
+                    ttlSeconds = Long.parseLong(res.getExpiresIn().trim());
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring unparseable expires_in: {}", res.getExpiresIn());
+                }
+            }
+            return new MpesaTokenCache.Token(res.getAccessToken().trim(),
+                    System.currentTimeMillis() + ttlSeconds * 1000);
         }
     }
 
-    public String initiateStkPush(String phoneNumber, BigDecimal amount, String repaymentId) {
+    /**
+     * Reserves a slot for one STK push; throws PaymentGatewayBusyException when the
+     * outbound queue is full. Hand the permit to initiateStkPushAsync, or release it.
+     */
+    public DarajaDispatcher.Permit reservePushSlot() {
+        return darajaDispatcher.reserve();
+    }
+
+    /**
+     * Sends an STK push without blocking the caller: the token comes from the cache and
+     * the HTTP call is queued on the bounded Daraja dispatcher. Completes with the
+     * CheckoutRequestID, or exceptionally with Daraja's error message. The permit is
+     * released however the push ends, including failures before the call is queued.
+     */
+    public CompletableFuture<String> initiateStkPushAsync(DarajaDispatcher.Permit permit, String phoneNumber,
+                                                          BigDecimal amount, String repaymentId) {
+        CompletableFuture<String> push;
         try {
-            // 1. Get a fresh token and ensure it's clean
-            String token = getAccessToken();
-
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-            String password = Base64.getEncoder().encodeToString((businessShortCode.trim() + passkey.trim() + timestamp).getBytes());
-            String formattedPhone = formatPhone(phoneNumber);
-            String accountRef = "PAY" + (repaymentId.length() > 8 ? repaymentId.substring(repaymentId.length()-8) : repaymentId);
-
-            // 2. Build Payload
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("BusinessShortCode", businessShortCode.trim());
-            payload.put("Password", password);
-            payload.put("Timestamp", timestamp);
-            payload.put("TransactionType", "CustomerPayBillOnline");
-            payload.put("Amount", amount.intValue() <= 0 ? 1 : amount.intValue());
-            payload.put("PartyA", formattedPhone);
-            payload.put("PartyB", businessShortCode.trim());
-            payload.put("PhoneNumber", formattedPhone);
-            payload.put("CallBackURL", callbackUrl.trim());
-            payload.put("AccountReference", accountRef);
-            payload.put("TransactionDesc", "LoanPayment");
-
-            String jsonBody = objectMapper.writeValueAsString(payload);
-            log.info("STK Push Request for {}: {}", formattedPhone, jsonBody);
-
-            // 3. Execute Request with explicit Content-Type
-            RequestBody body = RequestBody.create(jsonBody, MediaType.parse("application/json; charset=utf-8"));
-            Request request = new Request.Builder()
-                    .url("https://sandbox.safaricom.co.ke/mpesa/stkpush/v1/processrequest")
-                    .post(body)
-                    .addHeader("Authorization", "Bearer " + token)
-                    .addHeader("Content-Type", "application/json")
-                    .build();
-
-            try (Response response = httpClient.newCall(request).execute()) {
-                String rawJson = Objects.requireNonNull(response.body()).string();
-                log.info("Mpesa STK Response: {}", rawJson);
-
-                MpesaStkResponse res = objectMapper.readValue(rawJson, MpesaStkResponse.class);
-
-                if (response.isSuccessful() && "0".equals(res.getResponseCode())) {
-                    log.info("STK Push Success! CheckoutID: {}", res.getCheckoutRequestID());
-                    return res.getCheckoutRequestID();
-                } else {
-                    // Handle various M-Pesa error formats
-                    String errorMsg = res.getErrorMessage() != null ? res.getErrorMessage() :
-                            (res.getResponseDescription() != null ? res.getResponseDescription() : "Unknown Mpesa Error");
-                    log.error("Mpesa rejected: {} (Code: {})", errorMsg, res.getResponseCode());
-                    throw new RuntimeException(errorMsg);
+            push = tokenCache.getAsync().thenCompose(token -> {
+                Request request;
+                try {
+                    request = buildStkRequest(token, phoneNumber, amount, repaymentId);
+                } catch (IOException e) {
+                    return CompletableFuture.failedFuture(e);
                 }
-            }
-        } catch (Exception e) {
-            log.error("STK Push Flow Error: {}", e.getMessage());
-            throw new RuntimeException(e.getMessage());
+                return darajaDispatcher.enqueue(permit, request, this::readStkResponse);
+            });
+        } catch (RuntimeException e) {
+            push = CompletableFuture.failedFuture(e);
+        }
+        // Release is idempotent, so this is safe after the dispatcher released it on completion
+        return push.whenComplete((checkoutId, error) -> permit.release());
+    }
+
+    private Request buildStkRequest(String token, String phoneNumber, BigDecimal amount, String repaymentId)
+            throws IOException {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
+        String password = Base64.getEncoder().encodeToString((businessShortCode.trim() + passkey.trim() + timestamp).getBytes());
+        String formattedPhone = formatPhone(phoneNumber);
+        String accountRef = "PAY" + (repaymentId.length() > 8 ? repaymentId.substring(repaymentId.length()-8) : repaymentId);
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("BusinessShortCode", businessShortCode.trim());
+        payload.put("Password", password);
+        payload.put("Timestamp", timestamp);
+        payload.put("TransactionType", "CustomerPayBillOnline");
+        payload.put("Amount", amount.intValue() <= 0 ? 1 : amount.intValue());
+        payload.put("PartyA", formattedPhone);
+        payload.put("PartyB", businessShortCode.trim());
+        payload.put("PhoneNumber", formattedPhone);
+        payload.put("CallBackURL", callbackUrl.trim());
+        payload.put("AccountReference", accountRef);
+        payload.put("TransactionDesc", "LoanPayment");
+
+        String jsonBody = objectMapper.writeValueAsString(payload);
+        log.info("STK Push Request for {}: {}", formattedPhone, jsonBody);
+
+        RequestBody body = RequestBody.create(jsonBody, MediaType.parse("application/json; charset=utf-8"));
+        return new Request.Builder()
+                .url("https://sandbox.safaricom.co.ke/mpesa/stkpush/v1/processrequest")
+                .post(body)
+                .addHeader("Authorization", "Bearer " + token)
+                .addHeader("Content-Type", "application/json")
+                .build();
+    }
+
+    private String readStkResponse(Response response) throws IOException {
+        String rawJson = Objects.requireNonNull(response.body()).string();
+        log.info("Mpesa STK Response: {}", rawJson);
+
+        if (response.code() == 401) {
+            // Revoked or expired early; the next push fetches a new one
+            tokenCache.invalidate();
+        }
+
+        MpesaStkResponse res = objectMapper.readValue(rawJson, MpesaStkResponse.class);
+
+        if (response.isSuccessful() && "0".equals(res.getResponseCode())) {
+            log.info("STK Push Success! CheckoutID: {}", res.getCheckoutRequestID());
+            return res.getCheckoutRequestID();
         }
+        // Handle various M-Pesa error formats
+        String errorMsg = res.getErrorMessage() != null ? res.getErrorMessage() :
+                (res.getResponseDescription() != null ? res.getResponseDescription() : "Unknown Mpesa Error");
+        log.error("Mpesa rejected: {} (Code: {})", errorMsg, res.getResponseCode());
+        throw new IllegalStateException(errorMsg);
     }
-}
\ No newline at end of file
+}
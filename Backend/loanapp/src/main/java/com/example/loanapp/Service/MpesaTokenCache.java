@@ -0,0 +1,151 @@
+package com.example.loanapp.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Caches the Daraja OAuth token until its expires_in runs out.
+ *
+ * Once a token is within refreshAhead of expiry it is still handed out while a single
+ * background fetch replaces it. Callers only wait on the network when there is no usable
+ * token at all, and concurrent misses share one fetch.
+ */
+@Slf4j
+class MpesaTokenCache {
+
+    @FunctionalInterface
+    interface Fetcher {
+        Token fetch() throws IOException;
+    }
+
+    static final class Token {
+        final String value;
+        final long expiresAtMillis;
+
+        Token(String value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    private final Fetcher fetcher;
+    private final Executor executor;
+    private final Clock clock;
+    private final long refreshAheadMillis;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer refreshTimer;
+
+    private volatile Token current;
+    private CompletableFuture<Token> inFlight; // guarded by this
+
+    MpesaTokenCache(Fetcher fetcher, Executor executor, Clock clock, Duration refreshAhead, MeterRegistry meterRegistry) {
+        this.fetcher = fetcher;
+        this.executor = executor;
+        this.clock = clock;
+        this.refreshAheadMillis = refreshAhead.toMillis();
+        this.hits = meterRegistry.counter("mpesa.token", "result", "hit");
+        this.misses = meterRegistry.counter("mpesa.token", "result", "miss");
+        this.refreshTimer = meterRegistry.timer("mpesa.token.refresh");
+    }
+
+    String get() throws IOException {
+        Token token = current;
+        long now = clock.millis();
+        if (token != null && now < token.expiresAtMillis) {
+            hits.increment();
+            if (now >= token.expiresAtMillis - refreshAheadMillis) {
+                refresh();
+            }
+            return token.value;
+        }
+
+        misses.increment();
+        try {
+            return refresh().join().value;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Non-blocking variant of get(): completes immediately on a hit, otherwise when the
+     * shared fetch finishes.
+     */
+    CompletableFuture<String> getAsync() {
+        Token token = current;
+        long now = clock.millis();
+        if (token != null && now < token.expiresAtMillis) {
+            hits.increment();
+            if (now >= token.expiresAtMillis - refreshAheadMillis) {
+                refresh();
+            }
+            return CompletableFuture.completedFuture(token.value);
+        }
+        misses.increment();
+        return refresh().thenApply(t -> t.value);
+    }
+
+    /**
+     * Starts a background refresh when the cached token is close to expiry.
+     */
+    void refreshIfDue() {
+        Token token = current;
+        if (token != null && clock.millis() >= token.expiresAtMillis - refreshAheadMillis) {
+            refresh();
+        }
+    }
+
+    /**
+     * Drops the cached token, e.g. after Daraja rejected it.
+     */
+    void invalidate() {
+        current = null;
+    }
+
+    private synchronized CompletableFuture<Token> refresh() {
+        if (inFlight != null) {
+            return inFlight;
+        }
+        CompletableFuture<Token> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return refreshTimer.recordCallable(fetcher::fetch);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, executor);
+        inFlight = future;
+        future.whenComplete((token, error) -> {
+            // Publish the token before clearing inFlight so no caller starts a second fetch
+            if (token != null) {
+                current = token;
+            } else {
+                log.warn("M-Pesa token refresh failed: {}", error.getMessage());
+            }
+            synchronized (this) {
+                if (inFlight == future) {
+                    inFlight = null;
+                }
+            }
+        });
+        return future;
+    }
+}
@@ -11,7 +11,9 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -25,81 +27,64 @@ public class NotificationService {
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MMM dd, yyyy");
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("hh:mm a");
 
-    public void sendLoanApplicationNotification(User user, Loan loan) {
-        try {
-            log.info("Loan Application Notification - User: {}, Loan: {}, Amount: {}",
-                    user.getEmail(), loan.getId(), formatCurrency(loan.getAmount()));
-
-            Map<String, Object> templateVariables = new HashMap<>();
-            templateVariables.put("userName", user.getName());
-            templateVariables.put("loanId", loan.getId());
-            templateVariables.put("loanAmount", formatCurrency(loan.getAmount()));
-            templateVariables.put("purpose", loan.getPurpose().toString());
-            templateVariables.put("appliedDate", loan.getAppliedDate().format(DATE_FORMATTER));
+    // Loan lifecycle and repayment confirmations are delivered by OutboxDispatcher; these
+    // let failures propagate so the event is retried instead of silently dropped.
 
-            // For now, just log the notification
-            logNotification("LOAN_APPLICATION_SENT", user.getId(), loan.getId(),
-                    "Loan application confirmation sent to user");
-
-        } catch (Exception e) {
-            log.error("Failed to send loan application notification: {}", e.getMessage());
-        }
+    public void sendLoanApplicationNotification(User user, Loan loan) {
+        log.info("Loan Application Notification - User: {}, Loan: {}, Amount: {}",
+                user.getEmail(), loan.getId(), formatCurrency(loan.getAmount()));
+
+        Map<String, Object> templateVariables = new HashMap<>();
+        templateVariables.put("userName", user.getName());
+        templateVariables.put("loanId", loan.getId());
+        templateVariables.put("loanAmount", formatCurrency(loan.getAmount()));
+        templateVariables.put("purpose", loan.getPurpose().toString());
+        templateVariables.put("appliedDate", loan.getAppliedDate().format(DATE_FORMATTER));
+
+        // For now, just log the notification
+        recordDelivery("LOAN_APPLICATION_SENT", user.getId(), loan.getId(),
+                "Loan application confirmation sent to user");
     }
 
     public void sendLoanApprovalNotification(User user, Loan loan) {
-        try {
-            log.info("Loan Approval Notification - User: {}, Loan: {}, Amount: {}, Rate: {}%",
-                    user.getEmail(), loan.getId(), formatCurrency(loan.getAmount()), loan.getInterestRate());
-
-            Map<String, Object> templateVariables = new HashMap<>();
-            templateVariables.put("userName", user.getName());
-            templateVariables.put("loanId", loan.getId());
-            templateVariables.put("loanAmount", formatCurrency(loan.getAmount()));
-            templateVariables.put("interestRate", loan.getInterestRate() + "%");
-            templateVariables.put("monthlyPayment", formatCurrency(loan.getMonthlyPayment()));
-
-            logNotification("LOAN_APPROVAL_SENT", user.getId(), loan.getId(),
-                    "Loan approval notification sent");
-
-        } catch (Exception e) {
-            log.error("Failed to send loan approval notification: {}", e.getMessage());
-        }
+        log.info("Loan Approval Notification - User: {}, Loan: {}, Amount: {}, Rate: {}%",
+                user.getEmail(), loan.getId(), formatCurrency(loan.getAmount()), loan.getInterestRate());
+
+        Map<String, Object> templateVariables = new HashMap<>();
+        templateVariables.put("userName", user.getName());
+        templateVariables.put("loanId", loan.getId());
+        templateVariables.put("loanAmount", formatCurrency(loan.getAmount()));
+        templateVariables.put("interestRate", loan.getInterestRate() + "%");
+        templateVariables.put("monthlyPayment", formatCurrency(loan.getMonthlyPayment()));
+
+        recordDelivery("LOAN_APPROVAL_SENT", user.getId(), loan.getId(),
+                "Loan approval notification sent");
     }
 
     public void sendLoanRejectionNotification(User user, Loan loan) {
-        try {
-            log.info("Loan Rejection Notification - User: {}, Loan: {}, Reason: {}",
-                    user.getEmail(), loan.getId(), loan.getRejectionReason());
+        log.info("Loan Rejection Notification - User: {}, Loan: {}, Reason: {}",
+                user.getEmail(), loan.getId(), loan.getRejectionReason());
 
-            Map<String, Object> templateVariables = new HashMap<>();
-            templateVariables.put("userName", user.getName());
-            templateVariables.put("loanId", loan.getId());
-            templateVariables.put("rejectionReason", loan.getRejectionReason());
+        Map<String, Object> templateVariables = new HashMap<>();
+        templateVariables.put("userName", user.getName());
+        templateVariables.put("loanId", loan.getId());
+        templateVariables.put("rejectionReason", loan.getRejectionReason());
 
-            logNotification("LOAN_REJECTION_SENT", user.getId(), loan.getId(),
-                    "Loan rejection notification sent");
-
-        } catch (Exception e) {
-            log.error("Failed to send loan rejection notification: {}", e.getMessage());
-        }
+        recordDelivery("LOAN_REJECTION_SENT", user.getId(), loan.getId(),
+                "Loan rejection notification sent");
     }
 
     public void sendLoanDisbursementNotification(User user, Loan loan) {
-        try {
-            log.info("Loan Disbursement Notification - User: {}, Loan: {}, Disbursed: {}",
-                    user.getEmail(), loan.getId(), loan.getDisbursedDate());
-
-            Map<String, Object> templateVariables = new HashMap<>();
-            templateVariables.put("userName", user.getName());
-            templateVariables.put("loanId", loan.getId());
-            templateVariables.put("disbursementDate", loan.getDisbursedDate().format(DATE_FORMATTER));
+        log.info("Loan Disbursement Notification - User: {}, Loan: {}, Disbursed: {}",
+                user.getEmail(), loan.getId(), loan.getDisbursedDate());
 
-            logNotification("LOAN_DISBURSEMENT_SENT", user.getId(), loan.getId(),
-                    "Loan disbursement notification sent");
+        Map<String, Object> templateVariables = new HashMap<>();
+        templateVariables.put("userName", user.getName());
+        templateVariables.put("loanId", loan.getId());
+        templateVariables.put("disbursementDate", loan.getDisbursedDate().format(DATE_FORMATTER));
 
-        } catch (Exception e) {
-            log.error("Failed to send loan disbursement notification: {}", e.getMessage());
-        }
+        recordDelivery("LOAN_DISBURSEMENT_SENT", user.getId(), loan.getId(),
+                "Loan disbursement notification sent");
     }
 
     public void sendRepaymentReminder(User user, Repayment repayment) {
@@ -122,26 +107,57 @@ public class NotificationService {
         }
     }
 
-    public void sendRepaymentConfirmation(User user, Repayment repayment) {
+    /**
+     * One reminder covering every installment a borrower has coming up, across loans.
+     * Returns false when the message could not be sent.
+     */
+    public boolean sendRepaymentReminderDigest(User user, List<Repayment> repayments) {
         try {
-            log.info("Repayment Confirmation - User: {}, Loan: {}, Amount: {}, Date: {}",
-                    user.getEmail(), repayment.getLoan().getId(),
-                    formatCurrency(repayment.getAmount()), repayment.getPaidDate());
+            BigDecimal total = repayments.stream()
+                    .map(Repayment::getAmount)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            log.info("Repayment Reminder Digest - User: {}, Installments: {}, Total Due: {}",
+                    user.getEmail(), repayments.size(), formatCurrency(total));
+
+            List<Map<String, Object>> items = new ArrayList<>();
+            for (Repayment repayment : repayments) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("loanId", repayment.getLoan().getId());
+                item.put("amountDue", formatCurrency(repayment.getAmount()));
+                item.put("dueDate", repayment.getDueDate().format(DATE_FORMATTER));
+                items.add(item);
+            }
 
             Map<String, Object> templateVariables = new HashMap<>();
             templateVariables.put("userName", user.getName());
-            templateVariables.put("loanId", repayment.getLoan().getId());
-            templateVariables.put("amountPaid", formatCurrency(repayment.getAmount()));
-            templateVariables.put("paymentDate", repayment.getPaidDate().format(DATE_FORMATTER));
+            templateVariables.put("installments", items);
+            templateVariables.put("totalDue", formatCurrency(total));
 
-            logNotification("REPAYMENT_CONFIRMATION_SENT", user.getId(), repayment.getLoan().getId(),
-                    "Repayment confirmation sent");
+            logNotification("REPAYMENT_REMINDER_SENT", user.getId(), null,
+                    "Repayment reminder sent for " + repayments.size() + " installment(s)");
+            return true;
 
         } catch (Exception e) {
-            log.error("Failed to send repayment confirmation: {}", e.getMessage());
+            log.error("Failed to send repayment reminder digest: {}", e.getMessage());
+            return false;
         }
     }
 
+    public void sendRepaymentConfirmation(User user, Repayment repayment) {
+        log.info("Repayment Confirmation - User: {}, Loan: {}, Amount: {}, Date: {}",
+                user.getEmail(), repayment.getLoan().getId(),
+                formatCurrency(repayment.getAmount()), repayment.getPaidDate());
+
+        Map<String, Object> templateVariables = new HashMap<>();
+        templateVariables.put("userName", user.getName());
+        templateVariables.put("loanId", repayment.getLoan().getId());
+        templateVariables.put("amountPaid", formatCurrency(repayment.getAmount()));
+        templateVariables.put("paymentDate", repayment.getPaidDate().format(DATE_FORMATTER));
+
+        recordDelivery("REPAYMENT_CONFIRMATION_SENT", user.getId(), repayment.getLoan().getId(),
+                "Repayment confirmation sent");
+    }
+
     public void sendOverdueNotification(User user, Repayment repayment) {
         try {
             long daysOverdue = java.time.temporal.ChronoUnit.DAYS.between(
@@ -266,6 +282,12 @@ public class NotificationService {
         }
     }
 
+    private void recordDelivery(String notificationType, String userId, String entityId, String details) {
+        if (auditService != null) {
+            auditService.recordNotification(notificationType, userId, entityId, details);
+        }
+    }
+
     private String formatCurrency(BigDecimal amount) {
         if (amount == null) return "$0.00";
         return String.format("$%,.2f", amount);
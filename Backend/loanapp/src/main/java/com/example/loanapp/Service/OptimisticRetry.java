@@ -0,0 +1,65 @@
+package com.example.loanapp.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs commuting updates (payments adding to a loan's totals) in a fresh transaction and
+ * re-runs them when another writer bumped the loan's @Version first. Each attempt reloads
+ * its entities, so the retried work sees the winner's state.
+ * Refuses to run inside an existing transaction: the attempt would join it, and once the
+ * first attempt failed that transaction is rollback-only, so no retry could succeed.
+ */
+@Slf4j
+@Component
+public class OptimisticRetry {
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long backoffMs;
+
+    public OptimisticRetry(PlatformTransactionManager transactionManager,
+                           @Value("${app.loan.optimistic-retry.max-attempts:3}") int maxAttempts,
+                           @Value("${app.loan.optimistic-retry.backoff-ms:20}") long backoffMs) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMs = backoffMs;
+    }
+
+    public <T> T execute(String operation, Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException(operation + " must start its own transaction to be retried");
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(tx -> work.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    log.warn("{} lost the optimistic lock {} times, giving up", operation, attempt);
+                    throw e;
+                }
+                log.info("{} hit a concurrent update (attempt {}/{}), retrying", operation, attempt, maxAttempts);
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        // Jittered so two losers don't collide again on the same row
+        long sleep = backoffMs * attempt + ThreadLocalRandom.current().nextLong(backoffMs + 1);
+        try {
+            Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying after a concurrent update", e);
+        }
+    }
+}
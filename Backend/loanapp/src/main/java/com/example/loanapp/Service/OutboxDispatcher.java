@@ -0,0 +1,154 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.OutboxEvent;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Exception.ResourceNotFoundException;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.OutboxEventRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Polls the outbox and delivers events after their transaction committed.
+ * A batch is claimed with FOR UPDATE SKIP LOCKED and its outcomes are written in that
+ * transaction, while each event is delivered in its own (REQUIRES_NEW) transaction: a
+ * failing delivery rolls back alone and cannot take the batch, or the deliveries that
+ * already went out, down with it. Failed deliveries are retried with exponential backoff
+ * and parked as FAILED once the attempt limit is reached.
+ */
+@Slf4j
+@Component
+public class OutboxDispatcher {
+
+    private static final int MAX_BATCHES_PER_POLL = 20;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final LoanRepository loanRepository;
+    private final RepaymentRepository repaymentRepository;
+    private final NotificationService notificationService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate deliveryTemplate;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long baseBackoffSeconds;
+
+    public OutboxDispatcher(OutboxEventRepository outboxEventRepository,
+                            LoanRepository loanRepository,
+                            RepaymentRepository repaymentRepository,
+                            NotificationService notificationService,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.outbox.batch-size:50}") int batchSize,
+                            @Value("${app.outbox.max-attempts:8}") int maxAttempts,
+                            @Value("${app.outbox.backoff-seconds:5}") long baseBackoffSeconds) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.loanRepository = loanRepository;
+        this.repaymentRepository = repaymentRepository;
+        this.notificationService = notificationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.deliveryTemplate = new TransactionTemplate(transactionManager);
+        this.deliveryTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffSeconds = baseBackoffSeconds;
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:2000}")
+    public void poll() {
+        for (int i = 0; i < MAX_BATCHES_PER_POLL; i++) {
+            Integer claimed = transactionTemplate.execute(tx -> dispatchBatch());
+            if (claimed == null || claimed < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops delivered events after a week; failed ones are kept for inspection.
+     */
+    @Scheduled(cron = "${app.outbox.purge-cron:0 30 3 * * *}")
+    public void purgeDispatched() {
+        Integer deleted = transactionTemplate.execute(tx ->
+                outboxEventRepository.deleteDispatchedBefore(LocalDateTime.now().minusDays(7)));
+        log.info("Purged {} dispatched outbox events", deleted);
+    }
+
+    private int dispatchBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> batch = outboxEventRepository.claimBatch(now, batchSize);
+
+        for (OutboxEvent event : batch) {
+            try {
+                deliveryTemplate.executeWithoutResult(tx -> deliver(event));
+                event.setStatus(OutboxEvent.Status.DISPATCHED);
+                event.setDispatchedAt(now);
+                event.setLastError(null);
+            } catch (Exception e) {
+                scheduleRetry(event, e, now);
+            }
+            event.setAttempts(event.getAttempts() + 1);
+        }
+
+        if (!batch.isEmpty()) {
+            outboxEventRepository.saveAll(batch);
+            log.debug("Dispatched outbox batch of {}", batch.size());
+        }
+        return batch.size();
+    }
+
+    private void deliver(OutboxEvent event) {
+        switch (event.getEventType()) {
+            case LOAN_APPLIED -> {
+                Loan loan = loan(event);
+                notificationService.sendLoanApplicationNotification(loan.getUser(), loan);
+            }
+            case LOAN_APPROVED -> {
+                Loan loan = loan(event);
+                notificationService.sendLoanApprovalNotification(loan.getUser(), loan);
+            }
+            case LOAN_REJECTED -> {
+                Loan loan = loan(event);
+                notificationService.sendLoanRejectionNotification(loan.getUser(), loan);
+            }
+            case LOAN_DISBURSED -> {
+                Loan loan = loan(event);
+                notificationService.sendLoanDisbursementNotification(loan.getUser(), loan);
+            }
+            case REPAYMENT_COMPLETED -> {
+                Repayment repayment = repaymentRepository.findById(event.getAggregateId())
+                        .orElseThrow(() -> new ResourceNotFoundException("Repayment not found: " + event.getAggregateId()));
+                notificationService.sendRepaymentConfirmation(repayment.getLoan().getUser(), repayment);
+            }
+        }
+    }
+
+    private Loan loan(OutboxEvent event) {
+        return loanRepository.findById(event.getAggregateId())
+                .orElseThrow(() -> new ResourceNotFoundException("Loan not found: " + event.getAggregateId()));
+    }
+
+    private void scheduleRetry(OutboxEvent event, Exception e, LocalDateTime now) {
+        int attempt = event.getAttempts() + 1;
+        event.setLastError(e.getMessage());
+        if (attempt >= maxAttempts) {
+            event.setStatus(OutboxEvent.Status.FAILED);
+            log.error("Outbox event {} ({}) failed {} times, giving up: {}",
+                    event.getId(), event.getEventType(), attempt, e.getMessage());
+            return;
+        }
+        // 5s, 10s, 20s, ... capped at an hour
+        long delay = Math.min(baseBackoffSeconds << Math.min(attempt - 1, 20), 3600);
+        event.setNextAttemptAt(now.plusSeconds(delay));
+        log.warn("Outbox event {} ({}) failed, retry {} in {}s: {}",
+                event.getId(), event.getEventType(), attempt, delay, e.getMessage());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.OutboxEvent;
+import com.example.loanapp.Entity.OutboxEvent.EventType;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records domain events in the outbox. Must be called inside the transaction that
+ * makes the change, so the event exists if and only if the change committed.
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    public void loanEvent(EventType type, Loan loan) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("loanId", loan.getId());
+        payload.put("userId", loan.getUser().getId());
+        payload.put("status", loan.getStatus().name());
+        payload.put("amount", loan.getAmount());
+        publish(type, "LOAN", loan.getId(), payload);
+    }
+
+    public void repaymentEvent(EventType type, Repayment repayment) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("repaymentId", repayment.getId());
+        payload.put("loanId", repayment.getLoan().getId());
+        payload.put("amount", repayment.getAmount());
+        payload.put("paymentMethod", repayment.getPaymentMethod());
+        publish(type, "REPAYMENT", repayment.getId(), payload);
+    }
+
+    private void publish(EventType type, String aggregateType, String aggregateId, Map<String, Object> payload) {
+        outboxEventRepository.save(OutboxEvent.builder()
+                .eventType(type)
+                .aggregateType(aggregateType)
+                .aggregateId(aggregateId)
+                .payload(toJson(payload))
+                .nextAttemptAt(LocalDateTime.now())
+                .build());
+    }
+
+    private String toJson(Map<String, Object> payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize outbox payload", e);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Entity.JobCheckpoint;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Loan.LoanStatus;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Repository.JobCheckpointRepository;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.OverdueRepaymentWriter;
+import com.example.loanapp.Repository.RepaymentRepository;
+import com.example.loanapp.Repository.RepaymentScheduleWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Daily arrears job: marks unpaid installments past their due date (plus grace) as OVERDUE
+ * and accrues a late fee of daily-percent per day overdue, capped at max-percent of the
+ * installment.
+ *
+ * Work runs in keyset chunks, one transaction each, with the position stored in
+ * job_checkpoints in the same transaction; a crashed or redeployed run picks up after the
+ * last committed chunk. Virtual-schedule loans first get their overdue installments
+ * materialized so the set-based pass can see them.
+ */
+@Slf4j
+@Service
+public class OverdueRepaymentJob {
+
+    static final String MATERIALIZE_JOB = "overdue-materialize";
+    static final String ACCRUAL_JOB = "overdue-accrual";
+
+    private static final Set<LoanStatus> REPAYING_STATUSES = EnumSet.of(LoanStatus.DISBURSED, LoanStatus.REPAYING);
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+    // Each virtual loan is amortized in memory, so loan chunks stay smaller than row chunks
+    private static final int MAX_LOANS_PER_CHUNK = 500;
+
+    private final JobCheckpointRepository checkpointRepository;
+    private final LoanRepository loanRepository;
+    private final RepaymentRepository repaymentRepository;
+    private final OverdueRepaymentWriter overdueRepaymentWriter;
+    private final RepaymentScheduleWriter repaymentScheduleWriter;
+    private final RepaymentScheduleService repaymentScheduleService;
+    private final UserLoanSummaryService userLoanSummaryService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int graceDays;
+    private final int lookbackDays;
+    private final BigDecimal dailyFeeRate;
+    private final BigDecimal maxFeeRate;
+
+    public OverdueRepaymentJob(JobCheckpointRepository checkpointRepository,
+                               LoanRepository loanRepository,
+                               RepaymentRepository repaymentRepository,
+                               OverdueRepaymentWriter overdueRepaymentWriter,
+                               RepaymentScheduleWriter repaymentScheduleWriter,
+                               RepaymentScheduleService repaymentScheduleService,
+                               UserLoanSummaryService userLoanSummaryService,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.repayment.overdue.chunk-size:5000}") int chunkSize,
+                               @Value("${app.repayment.overdue.grace-days:0}") int graceDays,
+                               @Value("${app.repayment.overdue.lookback-days:365}") int lookbackDays,
+                               @Value("${app.repayment.late-fee.daily-percent:0.1}") BigDecimal dailyPercent,
+                               @Value("${app.repayment.late-fee.max-percent:10}") BigDecimal maxPercent) {
+        this.checkpointRepository = checkpointRepository;
+        this.loanRepository = loanRepository;
+        this.repaymentRepository = repaymentRepository;
+        this.overdueRepaymentWriter = overdueRepaymentWriter;
+        this.repaymentScheduleWriter = repaymentScheduleWriter;
+        this.repaymentScheduleService = repaymentScheduleService;
+        this.userLoanSummaryService = userLoanSummaryService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.graceDays = graceDays;
+        this.lookbackDays = lookbackDays;
+        this.dailyFeeRate = dailyPercent.divide(HUNDRED, MathContext.DECIMAL64);
+        this.maxFeeRate = maxPercent.divide(HUNDRED, MathContext.DECIMAL64);
+    }
+
+    @Scheduled(cron = "${app.repayment.overdue.cron:0 0 2 * * *}")
+    public void runNightly() {
+        try {
+            run(LocalDate.now());
+        } catch (Exception e) {
+            log.error("Overdue repayment job failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Runs (or resumes) both phases for the given day. A finished run is not repeated.
+     */
+    public void run(LocalDate today) {
+        long start = System.nanoTime();
+        LocalDate dueBefore = today.minusDays(graceDays);
+        long materialized = runChunks(MATERIALIZE_JOB, today, cp -> materializeChunk(cp, dueBefore));
+        long accrued = runChunks(ACCRUAL_JOB, today, cp -> accrueChunk(cp, today, dueBefore));
+        log.info("Overdue job for {}: {} virtual installments materialized, {} installments updated in {} ms",
+                today, materialized, accrued, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private long runChunks(String jobName, LocalDate today, ChunkStep step) {
+        while (true) {
+            Boolean more = transactionTemplate.execute(tx -> {
+                JobCheckpoint checkpoint = checkpointRepository.lockForRun(jobName, today);
+                if (checkpoint.isCompleted()) {
+                    return false;
+                }
+                if (!step.process(checkpoint)) {
+                    checkpoint.setCompleted(true);
+                }
+                checkpointRepository.save(checkpoint);
+                return !checkpoint.isCompleted();
+            });
+            if (!Boolean.TRUE.equals(more)) {
+                return checkpointRepository.findById(jobName).map(JobCheckpoint::getProcessed).orElse(0L);
+            }
+        }
+    }
+
+    /**
+     * Stores the overdue installments of one chunk of virtual-schedule loans.
+     */
+    private boolean materializeChunk(JobCheckpoint checkpoint, LocalDate dueBefore) {
+        int limit = Math.min(chunkSize, MAX_LOANS_PER_CHUNK);
+        String afterId = checkpoint.getLastId() != null ? checkpoint.getLastId() : "";
+        List<Loan> loans = loanRepository.findVirtualScheduleChunk(REPAYING_STATUSES, afterId, PageRequest.of(0, limit));
+        if (loans.isEmpty()) {
+            return false;
+        }
+        checkpoint.setLastId(loans.get(loans.size() - 1).getId());
+
+        Set<String> loanIdsWithArrears = unmaterializedArrears(loans, dueBefore).stream()
+                .map(r -> r.getLoan().getId())
+                .collect(Collectors.toSet());
+        if (!loanIdsWithArrears.isEmpty()) {
+            List<Loan> withArrears = loans.stream()
+                    .filter(l -> loanIdsWithArrears.contains(l.getId()))
+                    .collect(Collectors.toList());
+
+            // Same per-user lock resolveForPayment takes, in a fixed order to avoid deadlocks
+            withArrears.stream()
+                    .map(l -> l.getUser().getId())
+                    .collect(Collectors.toCollection(TreeSet::new))
+                    .forEach(userLoanSummaryService::lockUser);
+
+            // Re-read under the lock; a payment may have materialized some of them meanwhile
+            List<Repayment> rows = unmaterializedArrears(withArrears, dueBefore);
+            rows.forEach(r -> r.setId(null));
+            repaymentScheduleWriter.writeAll(rows);
+            checkpoint.setProcessed(checkpoint.getProcessed() + rows.size());
+        }
+        return loans.size() == limit;
+    }
+
+    private List<Repayment> unmaterializedArrears(List<Loan> loans, LocalDate dueBefore) {
+        LocalDate dueFrom = loans.stream()
+                .map(l -> RepaymentScheduleService.earliestDueDate(l.getAppliedDate()))
+                .min(Comparator.naturalOrder())
+                .get();
+        Map<String, List<Repayment>> storedByLoan = repaymentRepository.findByLoanIdInOrderByDueDateAsc(
+                        loans.stream().map(Loan::getId).collect(Collectors.toList()), dueFrom).stream()
+                .collect(Collectors.groupingBy(r -> r.getLoan().getId()));
+
+        List<Repayment> arrears = new ArrayList<>();
+        for (Loan loan : loans) {
+            for (Repayment r : repaymentScheduleService.installmentsOf(loan, storedByLoan.getOrDefault(loan.getId(), List.of()))) {
+                if (RepaymentScheduleService.isVirtualId(r.getId()) && r.getDueDate().isBefore(dueBefore)) {
+                    arrears.add(r);
+                }
+            }
+        }
+        return arrears;
+    }
+
+    /**
+     * Marks and accrues one chunk of stored installments.
+     */
+    private boolean accrueChunk(JobCheckpoint checkpoint, LocalDate today, LocalDate dueBefore) {
+        LocalDate dueFrom = dueBefore.minusDays(lookbackDays);
+        LocalDate afterDueDate = checkpoint.getLastDueDate() != null ? checkpoint.getLastDueDate() : dueFrom.minusDays(1);
+        String afterId = checkpoint.getLastId() != null ? checkpoint.getLastId() : "";
+
+        OverdueRepaymentWriter.Chunk chunk = overdueRepaymentWriter.markChunk(dueFrom, dueBefore, afterDueDate, afterId,
+                chunkSize, today, dailyFeeRate, maxFeeRate);
+        if (chunk == null) {
+            return false;
+        }
+        checkpoint.setLastDueDate(chunk.getLastDueDate());
+        checkpoint.setLastId(chunk.getLastId());
+        checkpoint.setProcessed(checkpoint.getProcessed() + chunk.getUpdated());
+        return chunk.getScanned() == chunkSize;
+    }
+
+    @FunctionalInterface
+    private interface ChunkStep {
+        /**
+         * Processes the chunk after the checkpoint and advances it; false when nothing was left.
+         */
+        boolean process(JobCheckpoint checkpoint);
+    }
+}
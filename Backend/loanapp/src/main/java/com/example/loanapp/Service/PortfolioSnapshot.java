@@ -0,0 +1,462 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.ExportDTO;
+import com.example.loanapp.Entity.Repayment;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Column-oriented copy of the loan book and repayment ledger on one day.
+ *
+ * File layout (gzipped): magic, version, as-of epoch day, then the loan columns and the
+ * repayment columns. Status and purpose are dictionary-encoded to one byte per row,
+ * money is stored in cents and dates as epoch days, all written as zigzag varints;
+ * date columns are delta-encoded against the previous row with a presence bitmap for
+ * nulls. Rows follow the export order (loans by creation, repayments by loan), which
+ * keeps the date deltas small.
+ */
+public final class PortfolioSnapshot {
+
+    private static final int MAGIC = 0x4C534E50; // "LSNP"
+    private static final int VERSION = 1;
+
+    // Sentinel for null dates and credit scores in the decoded arrays
+    public static final int NULL = Integer.MIN_VALUE;
+
+    private final LocalDate asOf;
+    private final Loans loans;
+    private final Repayments repayments;
+
+    private PortfolioSnapshot(LocalDate asOf, Loans loans, Repayments repayments) {
+        this.asOf = asOf;
+        this.loans = loans;
+        this.repayments = repayments;
+    }
+
+    public LocalDate getAsOf() {
+        return asOf;
+    }
+
+    public Loans getLoans() {
+        return loans;
+    }
+
+    public Repayments getRepayments() {
+        return repayments;
+    }
+
+    /**
+     * Loan columns. status[i] and purpose[i] index into statusDict / purposeDict.
+     */
+    public static final class Loans {
+        public final int rows;
+        public final String[] statusDict;
+        public final byte[] status;
+        public final String[] purposeDict;
+        public final byte[] purpose;
+        public final long[] amountCents;
+        public final int[] termMonths;
+        public final int[] rateBps;
+        public final long[] repaidCents;
+        public final int[] creditScore;
+        public final int[] appliedDay;
+        public final int[] disbursedDay;
+        public final int[] dueDay;
+
+        private Loans(int rows, String[] statusDict, byte[] status, String[] purposeDict, byte[] purpose,
+                      long[] amountCents, int[] termMonths, int[] rateBps, long[] repaidCents, int[] creditScore,
+                      int[] appliedDay, int[] disbursedDay, int[] dueDay) {
+            this.rows = rows;
+            this.statusDict = statusDict;
+            this.status = status;
+            this.purposeDict = purposeDict;
+            this.purpose = purpose;
+            this.amountCents = amountCents;
+            this.termMonths = termMonths;
+            this.rateBps = rateBps;
+            this.repaidCents = repaidCents;
+            this.creditScore = creditScore;
+            this.appliedDay = appliedDay;
+            this.disbursedDay = disbursedDay;
+            this.dueDay = dueDay;
+        }
+    }
+
+    /**
+     * Repayment columns. status[i] indexes into statusDict.
+     */
+    public static final class Repayments {
+        public final int rows;
+        public final String[] statusDict;
+        public final byte[] status;
+        public final int[] installmentNumber;
+        public final long[] amountCents;
+        public final long[] lateFeeCents;
+        public final int[] dueDay;
+        public final int[] paidDay;
+
+        private Repayments(int rows, String[] statusDict, byte[] status, int[] installmentNumber,
+                           long[] amountCents, long[] lateFeeCents, int[] dueDay, int[] paidDay) {
+            this.rows = rows;
+            this.statusDict = statusDict;
+            this.status = status;
+            this.installmentNumber = installmentNumber;
+            this.amountCents = amountCents;
+            this.lateFeeCents = lateFeeCents;
+            this.dueDay = dueDay;
+            this.paidDay = paidDay;
+        }
+    }
+
+    // --- Building ---
+
+    public static Builder builder(LocalDate asOf) {
+        return new Builder(asOf);
+    }
+
+    /**
+     * Accumulates rows into primitive column buffers; one row costs a few dozen bytes.
+     */
+    public static final class Builder {
+        private final LocalDate asOf;
+
+        private final Dictionary loanStatus = new Dictionary();
+        private final Dictionary loanPurpose = new Dictionary();
+        private final ByteBuffer loanStatusCol = new ByteBuffer();
+        private final ByteBuffer loanPurposeCol = new ByteBuffer();
+        private final LongBuffer loanAmount = new LongBuffer();
+        private final IntBuffer loanTerm = new IntBuffer();
+        private final IntBuffer loanRate = new IntBuffer();
+        private final LongBuffer loanRepaid = new LongBuffer();
+        private final IntBuffer loanScore = new IntBuffer();
+        private final IntBuffer loanApplied = new IntBuffer();
+        private final IntBuffer loanDisbursed = new IntBuffer();
+        private final IntBuffer loanDue = new IntBuffer();
+
+        private final Dictionary repaymentStatus = new Dictionary();
+        private final ByteBuffer repaymentStatusCol = new ByteBuffer();
+        private final IntBuffer repaymentInstallment = new IntBuffer();
+        private final LongBuffer repaymentAmount = new LongBuffer();
+        private final LongBuffer repaymentLateFee = new LongBuffer();
+        private final IntBuffer repaymentDue = new IntBuffer();
+        private final IntBuffer repaymentPaid = new IntBuffer();
+
+        private Builder(LocalDate asOf) {
+            this.asOf = asOf;
+        }
+
+        public Builder addLoan(ExportDTO.LoanRow row) {
+            loanStatusCol.add(loanStatus.code(row.getStatus() != null ? row.getStatus().name() : null));
+            loanPurposeCol.add(loanPurpose.code(row.getPurpose() != null ? row.getPurpose().name() : null));
+            loanAmount.add(cents(row.getAmount()));
+            loanTerm.add(row.getTermMonths() != null ? row.getTermMonths() : 0);
+            loanRate.add((int) cents(row.getInterestRate()));
+            loanRepaid.add(cents(row.getTotalRepaid()));
+            loanScore.add(row.getCreditScore() != null ? row.getCreditScore() : NULL);
+            loanApplied.add(day(row.getAppliedDate()));
+            loanDisbursed.add(day(row.getDisbursedDate()));
+            loanDue.add(day(row.getDueDate()));
+            return this;
+        }
+
+        public Builder addRepayment(ExportDTO.RepaymentRow row) {
+            return addRepayment(row.getStatus(), row.getInstallmentNumber(), row.getAmount(), row.getLateFee(),
+                    row.getDueDate(), row.getPaidDate());
+        }
+
+        /**
+         * Adds an installment that is not a stored row, such as a derived virtual-schedule one.
+         */
+        public Builder addRepayment(Repayment installment) {
+            return addRepayment(installment.getStatus(), installment.getInstallmentNumber(), installment.getAmount(),
+                    installment.getLateFee(), installment.getDueDate(), installment.getPaidDate());
+        }
+
+        private Builder addRepayment(Repayment.RepaymentStatus status, Integer installmentNumber, BigDecimal amount,
+                                     BigDecimal lateFee, LocalDate dueDate, LocalDate paidDate) {
+            repaymentStatusCol.add(repaymentStatus.code(status != null ? status.name() : null));
+            repaymentInstallment.add(installmentNumber != null ? installmentNumber : 0);
+            repaymentAmount.add(cents(amount));
+            repaymentLateFee.add(cents(lateFee));
+            repaymentDue.add(day(dueDate));
+            repaymentPaid.add(day(paidDate));
+            return this;
+        }
+
+        public PortfolioSnapshot build() {
+            Loans loans = new Loans(loanAmount.size, loanStatus.values(), loanStatusCol.toArray(),
+                    loanPurpose.values(), loanPurposeCol.toArray(), loanAmount.toArray(), loanTerm.toArray(),
+                    loanRate.toArray(), loanRepaid.toArray(), loanScore.toArray(), loanApplied.toArray(),
+                    loanDisbursed.toArray(), loanDue.toArray());
+            Repayments repayments = new Repayments(repaymentAmount.size, repaymentStatus.values(),
+                    repaymentStatusCol.toArray(), repaymentInstallment.toArray(), repaymentAmount.toArray(),
+                    repaymentLateFee.toArray(), repaymentDue.toArray(), repaymentPaid.toArray());
+            return new PortfolioSnapshot(asOf, loans, repayments);
+        }
+    }
+
+    // --- Encoding ---
+
+    public void writeTo(OutputStream target) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(target, 64 * 1024);
+        DataOutputStream out = new DataOutputStream(gzip);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeVarLong(out, asOf.toEpochDay());
+
+        writeVarLong(out, loans.rows);
+        writeDictionary(out, loans.statusDict, loans.status);
+        writeDictionary(out, loans.purposeDict, loans.purpose);
+        writeLongs(out, loans.amountCents);
+        writeInts(out, loans.termMonths);
+        writeInts(out, loans.rateBps);
+        writeLongs(out, loans.repaidCents);
+        writeDeltas(out, loans.creditScore);
+        writeDeltas(out, loans.appliedDay);
+        writeDeltas(out, loans.disbursedDay);
+        writeDeltas(out, loans.dueDay);
+
+        writeVarLong(out, repayments.rows);
+        writeDictionary(out, repayments.statusDict, repayments.status);
+        writeInts(out, repayments.installmentNumber);
+        writeLongs(out, repayments.amountCents);
+        writeLongs(out, repayments.lateFeeCents);
+        writeDeltas(out, repayments.dueDay);
+        writeDeltas(out, repayments.paidDay);
+
+        out.flush();
+        gzip.finish();
+    }
+
+    public static PortfolioSnapshot readFrom(InputStream source) throws IOException {
+        DataInputStream in = new DataInputStream(new GZIPInputStream(source, 64 * 1024));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a portfolio snapshot");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        LocalDate asOf = LocalDate.ofEpochDay(readVarLong(in));
+
+        int loanRows = (int) readVarLong(in);
+        String[] loanStatusDict = readDictionaryValues(in);
+        byte[] loanStatus = readBytes(in, loanRows);
+        String[] purposeDict = readDictionaryValues(in);
+        byte[] purpose = readBytes(in, loanRows);
+        Loans loans = new Loans(loanRows, loanStatusDict, loanStatus, purposeDict, purpose,
+                readLongs(in, loanRows), readInts(in, loanRows), readInts(in, loanRows), readLongs(in, loanRows),
+                readDeltas(in, loanRows), readDeltas(in, loanRows), readDeltas(in, loanRows), readDeltas(in, loanRows));
+
+        int repaymentRows = (int) readVarLong(in);
+        String[] repaymentStatusDict = readDictionaryValues(in);
+        byte[] repaymentStatus = readBytes(in, repaymentRows);
+        Repayments repayments = new Repayments(repaymentRows, repaymentStatusDict, repaymentStatus,
+                readInts(in, repaymentRows), readLongs(in, repaymentRows), readLongs(in, repaymentRows),
+                readDeltas(in, repaymentRows), readDeltas(in, repaymentRows));
+
+        return new PortfolioSnapshot(asOf, loans, repayments);
+    }
+
+    private static void writeDictionary(DataOutputStream out, String[] dict, byte[] codes) throws IOException {
+        writeVarLong(out, dict.length);
+        for (String value : dict) {
+            out.writeUTF(value);
+        }
+        // Few distinct values in long runs; gzip takes care of the repetition
+        out.write(codes);
+    }
+
+    private static String[] readDictionaryValues(DataInputStream in) throws IOException {
+        String[] dict = new String[(int) readVarLong(in)];
+        for (int i = 0; i < dict.length; i++) {
+            dict[i] = in.readUTF();
+        }
+        return dict;
+    }
+
+    private static byte[] readBytes(DataInputStream in, int rows) throws IOException {
+        byte[] bytes = new byte[rows];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        for (long v : values) {
+            writeVarLong(out, zigzag(v));
+        }
+    }
+
+    private static long[] readLongs(DataInputStream in, int rows) throws IOException {
+        long[] values = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            values[i] = unzigzag(readVarLong(in));
+        }
+        return values;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int v : values) {
+            writeVarLong(out, zigzag(v));
+        }
+    }
+
+    private static int[] readInts(DataInputStream in, int rows) throws IOException {
+        int[] values = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            values[i] = (int) unzigzag(readVarLong(in));
+        }
+        return values;
+    }
+
+    /**
+     * Presence bitmap, then each present value as a zigzag delta from the previous present one.
+     */
+    private static void writeDeltas(DataOutputStream out, int[] values) throws IOException {
+        byte[] present = new byte[(values.length + 7) / 8];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != NULL) {
+                present[i >>> 3] |= (byte) (1 << (i & 7));
+            }
+        }
+        out.write(present);
+
+        long previous = 0;
+        for (int v : values) {
+            if (v != NULL) {
+                writeVarLong(out, zigzag(v - previous));
+                previous = v;
+            }
+        }
+    }
+
+    private static int[] readDeltas(DataInputStream in, int rows) throws IOException {
+        byte[] present = new byte[(rows + 7) / 8];
+        in.readFully(present);
+
+        int[] values = new int[rows];
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            if ((present[i >>> 3] & (1 << (i & 7))) == 0) {
+                values[i] = NULL;
+            } else {
+                previous += unzigzag(readVarLong(in));
+                values[i] = (int) previous;
+            }
+        }
+        return values;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static long cents(BigDecimal value) {
+        return value == null ? 0 : value.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static int day(LocalDate date) {
+        return date == null ? NULL : (int) date.toEpochDay();
+    }
+
+    // --- Growable primitive buffers ---
+
+    private static final class Dictionary {
+        private final Map<String, Byte> codes = new LinkedHashMap<>();
+
+        byte code(String value) {
+            String key = value != null ? value : "";
+            Byte code = codes.get(key);
+            if (code == null) {
+                if (codes.size() > Byte.MAX_VALUE) {
+                    throw new IllegalStateException("Too many distinct values for a dictionary column");
+                }
+                code = (byte) codes.size();
+                codes.put(key, code);
+            }
+            return code;
+        }
+
+        String[] values() {
+            return codes.keySet().toArray(new String[0]);
+        }
+    }
+
+    private static final class ByteBuffer {
+        private byte[] data = new byte[1024];
+        private int size;
+
+        void add(byte v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    private static final class IntBuffer {
+        private int[] data = new int[1024];
+        private int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+
+    private static final class LongBuffer {
+        private long[] data = new long[1024];
+        private int size;
+
+        void add(long v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.AnalyticsDTO;
+import com.example.loanapp.DTO.ExportDTO;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Loan.LoanStatus;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Exception.ResourceNotFoundException;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Writes one compressed columnar snapshot of the portfolio per day and answers as-of
+ * questions from those files, without touching Postgres.
+ * Virtual-schedule loans being repaid have their unstored installments derived into the
+ * snapshot, including arrears the overdue job has not materialized yet; those carry no
+ * late fee until it does.
+ */
+@Slf4j
+@Service
+public class PortfolioSnapshotService {
+
+    private static final String FILE_PREFIX = "portfolio-";
+    private static final String FILE_SUFFIX = ".snap";
+
+    private static final Set<String> ACTIVE_STATUSES = Set.of("APPROVED", "DISBURSED", "REPAYING");
+    private static final Set<String> UNPAID_STATUSES = Set.of("PENDING", "OVERDUE", "PARTIALLY_PAID");
+    // Same loans the overdue job and reminders derive installments for
+    private static final Set<LoanStatus> REPAYING_STATUSES = EnumSet.of(LoanStatus.DISBURSED, LoanStatus.REPAYING);
+    // Each virtual loan is amortized in memory, as in the overdue job
+    private static final int VIRTUAL_LOANS_PER_CHUNK = 500;
+
+    private final LoanRepository loanRepository;
+    private final RepaymentRepository repaymentRepository;
+    private final RepaymentScheduleService repaymentScheduleService;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Path directory;
+    private final int retentionDays;
+
+    // Most recently read snapshot; as-of queries tend to hit the same day repeatedly
+    private volatile PortfolioSnapshot lastRead;
+
+    public PortfolioSnapshotService(LoanRepository loanRepository,
+                                    RepaymentRepository repaymentRepository,
+                                    RepaymentScheduleService repaymentScheduleService,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${app.snapshot.dir:snapshots}") String directory,
+                                    @Value("${app.snapshot.retention-days:400}") int retentionDays) {
+        this.loanRepository = loanRepository;
+        this.repaymentRepository = repaymentRepository;
+        this.repaymentScheduleService = repaymentScheduleService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.directory = Paths.get(directory);
+        this.retentionDays = retentionDays;
+    }
+
+    @Scheduled(cron = "${app.snapshot.cron:0 15 0 * * *}")
+    public void takeNightlySnapshot() {
+        try {
+            // Runs just after midnight, so the book it captures is the close of the day that just ended
+            takeSnapshot(LocalDate.now().minusDays(1));
+            purgeExpired();
+        } catch (Exception e) {
+            log.error("Nightly portfolio snapshot failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Captures the current loan book under the given date, replacing that day's file.
+     */
+    public LocalDate takeSnapshot(LocalDate asOf) {
+        long start = System.nanoTime();
+        PortfolioSnapshot.Builder builder = PortfolioSnapshot.builder(asOf);
+        readOnlyTransaction.executeWithoutResult(tx -> {
+            try (Stream<ExportDTO.LoanRow> loans = loanRepository.streamExportRows()) {
+                loans.forEach(builder::addLoan);
+            }
+            try (Stream<ExportDTO.RepaymentRow> repayments = repaymentRepository.streamExportRows()) {
+                repayments.forEach(builder::addRepayment);
+            }
+        });
+        long virtualLoans = addDerivedInstallments(builder);
+        PortfolioSnapshot snapshot = builder.build();
+
+        try {
+            Files.createDirectories(directory);
+            Path target = fileFor(asOf);
+            Path tmp = directory.resolve(target.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                snapshot.writeTo(out);
+            }
+            // Readers never see a half-written file
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastRead = null;
+            log.info("Portfolio snapshot {}: {} loans, {} repayments, {} virtual-schedule loans, {} bytes in {} ms", asOf,
+                    snapshot.getLoans().rows, snapshot.getRepayments().rows, virtualLoans, Files.size(target),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write portfolio snapshot for " + asOf, e);
+        }
+        return asOf;
+    }
+
+    /**
+     * Adds the unstored installments of virtual-schedule loans and returns how many loans it read.
+     * Each chunk gets its own read-only transaction so the entities do not pile up in one context.
+     */
+    private long addDerivedInstallments(PortfolioSnapshot.Builder builder) {
+        long read = 0;
+        String afterId = "";
+        while (true) {
+            String from = afterId;
+            List<Loan> loans = readOnlyTransaction.execute(tx -> {
+                List<Loan> chunk = loanRepository.findVirtualScheduleChunk(REPAYING_STATUSES, from,
+                        PageRequest.of(0, VIRTUAL_LOANS_PER_CHUNK));
+                if (!chunk.isEmpty()) {
+                    derivedInstallments(chunk).forEach(builder::addRepayment);
+                }
+                return chunk;
+            });
+            if (loans == null || loans.isEmpty()) {
+                return read;
+            }
+            read += loans.size();
+            afterId = loans.get(loans.size() - 1).getId();
+            if (loans.size() < VIRTUAL_LOANS_PER_CHUNK) {
+                return read;
+            }
+        }
+    }
+
+    private List<Repayment> derivedInstallments(List<Loan> loans) {
+        LocalDate dueFrom = loans.stream()
+                .map(l -> RepaymentScheduleService.earliestDueDate(l.getAppliedDate()))
+                .min(Comparator.naturalOrder())
+                .get();
+        Map<String, List<Repayment>> storedByLoan = repaymentRepository.findByLoanIdInOrderByDueDateAsc(
+                        loans.stream().map(Loan::getId).collect(Collectors.toList()), dueFrom).stream()
+                .collect(Collectors.groupingBy(r -> r.getLoan().getId()));
+
+        List<Repayment> derived = new ArrayList<>();
+        for (Loan loan : loans) {
+            for (Repayment r : repaymentScheduleService.installmentsOf(loan, storedByLoan.getOrDefault(loan.getId(), List.of()))) {
+                if (RepaymentScheduleService.isVirtualId(r.getId())) {
+                    derived.add(r);
+                }
+            }
+        }
+        return derived;
+    }
+
+    public List<LocalDate> listSnapshots() {
+        if (!Files.isDirectory(directory)) {
+            return Collections.emptyList();
+        }
+        List<LocalDate> dates = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(f -> {
+                LocalDate date = dateOf(f);
+                if (date != null) dates.add(date);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Collections.sort(dates);
+        return dates;
+    }
+
+    /**
+     * Aggregates from the latest snapshot taken on or before the given date.
+     */
+    public AnalyticsDTO.PortfolioSnapshotSummary summarizeAsOf(LocalDate date) {
+        LocalDate snapshotDate = listSnapshots().stream()
+                .filter(d -> !d.isAfter(date))
+                .reduce((a, b) -> b)
+                .orElseThrow(() -> new ResourceNotFoundException("No portfolio snapshot on or before " + date));
+        return summarize(date, load(snapshotDate));
+    }
+
+    PortfolioSnapshot load(LocalDate date) {
+        PortfolioSnapshot cached = lastRead;
+        if (cached != null && cached.getAsOf().equals(date)) {
+            return cached;
+        }
+        try (InputStream in = Files.newInputStream(fileFor(date))) {
+            PortfolioSnapshot snapshot = PortfolioSnapshot.readFrom(in);
+            lastRead = snapshot;
+            return snapshot;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read portfolio snapshot for " + date, e);
+        }
+    }
+
+    private AnalyticsDTO.PortfolioSnapshotSummary summarize(LocalDate requested, PortfolioSnapshot snapshot) {
+        PortfolioSnapshot.Loans loans = snapshot.getLoans();
+        int asOfDay = (int) snapshot.getAsOf().toEpochDay();
+
+        long[] countByStatus = new long[loans.statusDict.length];
+        long[] amountByStatus = new long[loans.statusDict.length];
+        long[] countByPurpose = new long[loans.purposeDict.length];
+        boolean[] activeStatus = new boolean[loans.statusDict.length];
+        for (int s = 0; s < loans.statusDict.length; s++) {
+            activeStatus[s] = ACTIVE_STATUSES.contains(loans.statusDict[s]);
+        }
+
+        long active = 0, outstanding = 0, disbursed = 0, repaid = 0, scoreSum = 0, scored = 0;
+        for (int i = 0; i < loans.rows; i++) {
+            int s = loans.status[i];
+            countByStatus[s]++;
+            amountByStatus[s] += loans.amountCents[i];
+            countByPurpose[loans.purpose[i]]++;
+            repaid += loans.repaidCents[i];
+            if (loans.disbursedDay[i] != PortfolioSnapshot.NULL) {
+                disbursed += loans.amountCents[i];
+            }
+            if (activeStatus[s]) {
+                active++;
+                // Same simple-interest total payable the rest of the app uses
+                long payable = loans.amountCents[i] + loans.amountCents[i] * loans.rateBps[i] / 10_000;
+                outstanding += Math.max(0, payable - loans.repaidCents[i]);
+            }
+            if (loans.creditScore[i] != PortfolioSnapshot.NULL) {
+                scoreSum += loans.creditScore[i];
+                scored++;
+            }
+        }
+
+        PortfolioSnapshot.Repayments repayments = snapshot.getRepayments();
+        boolean[] paid = new boolean[repayments.statusDict.length];
+        boolean[] unpaid = new boolean[repayments.statusDict.length];
+        for (int s = 0; s < repayments.statusDict.length; s++) {
+            paid[s] = "PAID".equals(repayments.statusDict[s]);
+            unpaid[s] = UNPAID_STATUSES.contains(repayments.statusDict[s]);
+        }
+
+        long paidCount = 0, paidAmount = 0, overdueCount = 0, overdueAmount = 0, dueSoon = 0;
+        for (int i = 0; i < repayments.rows; i++) {
+            int s = repayments.status[i];
+            if (paid[s]) {
+                paidCount++;
+                paidAmount += repayments.amountCents[i];
+            } else if (unpaid[s] && repayments.dueDay[i] != PortfolioSnapshot.NULL) {
+                int due = repayments.dueDay[i];
+                if (due < asOfDay) {
+                    overdueCount++;
+                    overdueAmount += repayments.amountCents[i] + repayments.lateFeeCents[i];
+                } else if (due <= asOfDay + 30) {
+                    dueSoon += repayments.amountCents[i];
+                }
+            }
+        }
+
+        return AnalyticsDTO.PortfolioSnapshotSummary.builder()
+                .requestedDate(requested)
+                .snapshotDate(snapshot.getAsOf())
+                .totalLoans(loans.rows)
+                .loansByStatus(countsByKey(loans.statusDict, countByStatus))
+                .amountByStatus(amountsByKey(loans.statusDict, amountByStatus))
+                .loansByPurpose(countsByKey(loans.purposeDict, countByPurpose))
+                .activeLoans(active)
+                .outstandingBalance(money(outstanding))
+                .totalDisbursed(money(disbursed))
+                .totalRepaid(money(repaid))
+                .averageCreditScore(scored > 0 ? (double) scoreSum / scored : null)
+                .paidInstallments(paidCount)
+                .paidAmount(money(paidAmount))
+                .overdueInstallments(overdueCount)
+                .overdueAmount(money(overdueAmount))
+                .dueNext30Days(money(dueSoon))
+                .build();
+    }
+
+    private void purgeExpired() throws IOException {
+        LocalDate cutoff = LocalDate.now().minusDays(retentionDays);
+        for (LocalDate date : listSnapshots()) {
+            if (date.isBefore(cutoff)) {
+                Files.deleteIfExists(fileFor(date));
+                log.info("Deleted expired portfolio snapshot {}", date);
+            }
+        }
+    }
+
+    private Path fileFor(LocalDate date) {
+        return directory.resolve(FILE_PREFIX + date + FILE_SUFFIX);
+    }
+
+    private static LocalDate dateOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, Long> countsByKey(String[] dict, long[] counts) {
+        Map<String, Long> result = new TreeMap<>();
+        for (int i = 0; i < dict.length; i++) result.put(dict[i], counts[i]);
+        return result;
+    }
+
+    private static Map<String, BigDecimal> amountsByKey(String[] dict, long[] cents) {
+        Map<String, BigDecimal> result = new TreeMap<>();
+        for (int i = 0; i < dict.length; i++) result.put(dict[i], money(cents[i]));
+        return result;
+    }
+
+    private static BigDecimal money(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
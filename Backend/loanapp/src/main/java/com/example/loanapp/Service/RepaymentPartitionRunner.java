@@ -0,0 +1,25 @@
+package com.example.loanapp.Service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Converts repayments to a partitioned table when the app is started with
+ * --partition-repayments, and tops up future partitions on every start.
+ */
+@Component
+@RequiredArgsConstructor
+public class RepaymentPartitionRunner implements ApplicationRunner {
+
+    private final RepaymentPartitionService repaymentPartitionService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (args.containsOption("partition-repayments")) {
+            repaymentPartitionService.migrate();
+        }
+        repaymentPartitionService.ensureFuturePartitions();
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.loanapp.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Monthly range partitioning of repayments by due_date.
+ *
+ * The one-off conversion of an existing plain table is started with --partition-repayments
+ * (see RepaymentPartitionRunner) and runs in a single transaction holding an exclusive lock,
+ * so schedule it for a maintenance window. Every index on the old table is recreated from its
+ * definition, and the primary key becomes (id, due_date). Rows outside every monthly range
+ * land in repayments_default, and a daily job keeps partitions created far enough ahead to
+ * cover the longest loan term. Queries only prune partitions when they constrain due_date,
+ * which is why the repository's hot lookups carry a due-date bound.
+ */
+@Slf4j
+@Service
+public class RepaymentPartitionService {
+
+    private static final String TABLE = "repayments";
+    private static final String LEGACY_TABLE = "repayments_unpartitioned";
+    private static final String DEFAULT_PARTITION = "repayments_default";
+
+    // Slack on top of the longest term: disbursement after approval shifts the whole schedule
+    private static final int TERM_MARGIN_MONTHS = 6;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+
+    public RepaymentPartitionService(JdbcTemplate jdbcTemplate,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${app.repayment.partitions.months-ahead:90}") int monthsAhead,
+                                     @Value("${app.loan.max-term-months:84}") int maxTermMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // A shorter horizon sends the tail of long schedules to the default partition
+        this.monthsAhead = Math.max(monthsAhead, maxTermMonths + TERM_MARGIN_MONTHS);
+    }
+
+    public boolean isPartitioned() {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass(?) AND relkind = 'p')",
+                Boolean.class, TABLE);
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+    /**
+     * Rebuilds repayments as a partitioned table and copies every row across.
+     * Does nothing when the table is already partitioned.
+     */
+    public void migrate() {
+        if (isPartitioned()) {
+            log.info("Table {} is already partitioned", TABLE);
+            return;
+        }
+        List<IndexDefinition> indexes = indexes();
+        for (IndexDefinition index : indexes) {
+            if (index.unique() && !index.constraint()) {
+                // A partitioned table only allows unique indexes that include due_date
+                throw new IllegalStateException("Cannot partition " + TABLE + " with unique index " + index.name());
+            }
+        }
+        long start = System.nanoTime();
+        Long copied = transactionTemplate.execute(tx -> {
+            jdbcTemplate.execute("LOCK TABLE " + TABLE + " IN ACCESS EXCLUSIVE MODE");
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_TABLE);
+            // Index names are schema-wide; free them all up for the new table
+            for (IndexDefinition index : indexes) {
+                jdbcTemplate.execute("ALTER INDEX " + index.name() + " RENAME TO " + legacyName(index.name()));
+            }
+
+            jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + LEGACY_TABLE + " INCLUDING DEFAULTS) "
+                    + "PARTITION BY RANGE (due_date)");
+            // Unique constraints on a partitioned table must include the partition key
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD PRIMARY KEY (id, due_date)");
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT fk_repayments_loan "
+                    + "FOREIGN KEY (loan_id) REFERENCES loans (id)");
+            // Same name, columns and predicate as before; partitions created below inherit them
+            for (IndexDefinition index : indexes) {
+                if (!index.constraint()) {
+                    jdbcTemplate.execute(index.definition().replaceFirst(
+                            " ON (ONLY )?(\\S+\\.)?" + TABLE + " USING ", " ON " + TABLE + " USING "));
+                }
+            }
+
+            LocalDate oldest = jdbcTemplate.queryForObject("SELECT MIN(due_date) FROM " + LEGACY_TABLE, LocalDate.class);
+            YearMonth from = oldest != null ? YearMonth.from(oldest) : YearMonth.now();
+            createPartitions(from, YearMonth.now().plusMonths(monthsAhead));
+            jdbcTemplate.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+
+            jdbcTemplate.update("INSERT INTO " + TABLE + " SELECT * FROM " + LEGACY_TABLE);
+            Long before = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + LEGACY_TABLE, Long.class);
+            Long after = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + TABLE, Long.class);
+            if (!before.equals(after)) {
+                throw new IllegalStateException("Repayment copy mismatch: " + before + " rows before, " + after + " after");
+            }
+            jdbcTemplate.execute("DROP TABLE " + LEGACY_TABLE);
+            return after;
+        });
+        jdbcTemplate.execute("ANALYZE " + TABLE);
+        log.info("Partitioned {}: {} rows copied in {} ms", TABLE, copied, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Keeps the current month and the next months-ahead months covered, so new schedules
+     * never fall through to the default partition. Rows that already did are moved into the
+     * month's partition when it is created.
+     */
+    @Scheduled(cron = "${app.repayment.partitions.cron:0 30 1 * * *}")
+    public void ensureFuturePartitions() {
+        try {
+            if (isPartitioned()) {
+                createPartitions(YearMonth.now(), YearMonth.now().plusMonths(monthsAhead));
+            }
+        } catch (DataAccessException e) {
+            log.error("Could not create future repayment partitions: {}", e.getMessage(), e);
+        }
+    }
+
+    private void createPartitions(YearMonth from, YearMonth to) {
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            createPartition(month);
+        }
+    }
+
+    private void createPartition(YearMonth month) {
+        String name = String.format("%s_y%04dm%02d", TABLE, month.getYear(), month.getMonthValue());
+        LocalDate lower = month.atDay(1);
+        LocalDate upper = month.plusMonths(1).atDay(1);
+        String bounds = " FOR VALUES FROM ('" + lower + "') TO ('" + upper + "')";
+        if (exists(name)) {
+            return;
+        }
+        if (!exists(DEFAULT_PARTITION) || !Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + " WHERE due_date >= ? AND due_date < ?)",
+                Boolean.class, lower, upper))) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + TABLE + bounds);
+            return;
+        }
+        // Postgres refuses a new partition while the default one holds rows in its range,
+        // so move those rows into the new table first and attach it afterwards
+        Integer moved = transactionTemplate.execute(tx -> {
+            jdbcTemplate.execute("LOCK TABLE " + DEFAULT_PARTITION + " IN ACCESS EXCLUSIVE MODE");
+            jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE " + TABLE + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            int rows = jdbcTemplate.update("INSERT INTO " + name + " SELECT * FROM " + DEFAULT_PARTITION
+                    + " WHERE due_date >= ? AND due_date < ?", lower, upper);
+            jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE due_date >= ? AND due_date < ?", lower, upper);
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + name + bounds);
+            return rows;
+        });
+        log.info("Created partition {} with {} rows moved out of {}", name, moved, DEFAULT_PARTITION);
+    }
+
+    private boolean exists(String table) {
+        return jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table);
+    }
+
+    private List<IndexDefinition> indexes() {
+        return jdbcTemplate.query("SELECT i.indexname, i.indexdef, x.indisunique, "
+                        + "EXISTS (SELECT 1 FROM pg_constraint c WHERE c.conindid = x.indexrelid) "
+                        + "FROM pg_indexes i "
+                        + "JOIN pg_index x ON x.indexrelid = to_regclass(quote_ident(i.schemaname) || '.' || quote_ident(i.indexname)) "
+                        + "WHERE i.schemaname = current_schema() AND i.tablename = ?",
+                (rs, n) -> new IndexDefinition(rs.getString(1), rs.getString(2), rs.getBoolean(3), rs.getBoolean(4)),
+                TABLE);
+    }
+
+    private static String legacyName(String index) {
+        // Identifiers are capped at 63 bytes
+        return (index.length() > 56 ? index.substring(0, 56) : index) + "_legacy";
+    }
+
+    private record IndexDefinition(String name, String definition, boolean unique, boolean constraint) {
+    }
+}
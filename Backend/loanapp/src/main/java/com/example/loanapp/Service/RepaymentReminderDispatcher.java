@@ -0,0 +1,308 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Entity.JobCheckpoint;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Loan.LoanStatus;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.Repository.JobCheckpointRepository;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Daily repayment reminders for installments due in each of app.repayment.reminders.days-before
+ * days. Borrowers are walked in user-id chunks; each borrower gets one message covering all
+ * of their installments in those buckets, sent from a small worker pool paced to
+ * per-second messages.
+ *
+ * A chunk is claimed by advancing the checkpoint before it is sent, so a crash skips at most
+ * one chunk rather than reminding anyone twice, and several instances split the work. The
+ * claim also reserves the chunk's send window on the checkpoint, so the rate holds across
+ * instances rather than per instance. Virtual-schedule installments are derived the same way
+ * the overdue job derives them, since they are not stored until paid or overdue.
+ */
+@Slf4j
+@Service
+public class RepaymentReminderDispatcher {
+
+    static final String JOB_NAME = "repayment-reminders";
+
+    // Loans still being repaid, as in the overdue job; applies to stored and derived installments alike
+    private static final Set<LoanStatus> REPAYING_STATUSES = EnumSet.of(LoanStatus.DISBURSED, LoanStatus.REPAYING);
+    private static final Set<Repayment.RepaymentStatus> REMINDABLE =
+            EnumSet.of(Repayment.RepaymentStatus.PENDING, Repayment.RepaymentStatus.PARTIALLY_PAID);
+
+    private final RepaymentRepository repaymentRepository;
+    private final LoanRepository loanRepository;
+    private final RepaymentScheduleService repaymentScheduleService;
+    private final JobCheckpointRepository checkpointRepository;
+    private final NotificationService notificationService;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolTaskExecutor workers;
+    private final Pacer pacer;
+    private final List<Integer> daysBefore;
+    private final int usersPerChunk;
+
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter installments;
+    private final Timer runTimer;
+    private final AtomicLong usersThisRun = new AtomicLong();
+
+    public RepaymentReminderDispatcher(RepaymentRepository repaymentRepository,
+                                       LoanRepository loanRepository,
+                                       RepaymentScheduleService repaymentScheduleService,
+                                       JobCheckpointRepository checkpointRepository,
+                                       NotificationService notificationService,
+                                       PlatformTransactionManager transactionManager,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${app.repayment.reminders.days-before:7,3,1}") List<Integer> daysBefore,
+                                       @Value("${app.repayment.reminders.users-per-chunk:200}") int usersPerChunk,
+                                       @Value("${app.repayment.reminders.workers:4}") int workerCount,
+                                       @Value("${app.repayment.reminders.per-second:20}") double perSecond) {
+        this.repaymentRepository = repaymentRepository;
+        this.loanRepository = loanRepository;
+        this.repaymentScheduleService = repaymentScheduleService;
+        this.checkpointRepository = checkpointRepository;
+        this.notificationService = notificationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.daysBefore = daysBefore;
+        this.usersPerChunk = usersPerChunk;
+        this.pacer = new Pacer(perSecond);
+
+        this.workers = new ThreadPoolTaskExecutor();
+        this.workers.setCorePoolSize(workerCount);
+        this.workers.setMaxPoolSize(workerCount);
+        this.workers.setQueueCapacity(usersPerChunk);
+        // A full queue slows the producer down instead of dropping reminders
+        this.workers.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        this.workers.setThreadNamePrefix("reminder-");
+        this.workers.initialize();
+
+        this.sent = meterRegistry.counter("repayment.reminders", "result", "sent");
+        this.failed = meterRegistry.counter("repayment.reminders", "result", "failed");
+        this.installments = meterRegistry.counter("repayment.reminders.installments");
+        this.runTimer = meterRegistry.timer("repayment.reminders.run");
+        meterRegistry.gauge("repayment.reminders.run.users", usersThisRun);
+    }
+
+    @Scheduled(cron = "${app.repayment.reminders.cron:0 0 8 * * *}")
+    public void runDaily() {
+        try {
+            run(LocalDate.now());
+        } catch (Exception e) {
+            log.error("Repayment reminder run failed: {}", e.getMessage(), e);
+        }
+    }
+
+    public void run(LocalDate today) {
+        List<LocalDate> dueDates = daysBefore.stream().map(today::plusDays).toList();
+        long start = System.nanoTime();
+        usersThisRun.set(0);
+
+        Chunk chunk;
+        while ((chunk = claimChunk(today, dueDates)) != null) {
+            dispatch(groupByUser(chunk.rows), chunk.sendFrom);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        runTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Repayment reminders for {} (due {}): {} borrowers in {} ms",
+                today, dueDates, usersThisRun.get(), elapsed / 1_000_000);
+    }
+
+    /**
+     * Reads the next chunk of borrowers' upcoming installments and moves the checkpoint
+     * past them in the same transaction, reserving the chunk's send window as well.
+     * Returns null once the run is complete.
+     */
+    private Chunk claimChunk(LocalDate today, List<LocalDate> dueDates) {
+        return transactionTemplate.execute(tx -> {
+            JobCheckpoint checkpoint = checkpointRepository.lockForRun(JOB_NAME, today);
+            if (checkpoint.isCompleted()) {
+                return null;
+            }
+            String afterUserId = checkpoint.getLastId() != null ? checkpoint.getLastId() : "";
+            List<String> userIds = nextUserIds(dueDates, afterUserId);
+            if (userIds.isEmpty()) {
+                checkpoint.setCompleted(true);
+                checkpointRepository.save(checkpoint);
+                return null;
+            }
+            List<Repayment> rows = new ArrayList<>(repaymentRepository.findReminderBatch(dueDates, REPAYING_STATUSES, userIds));
+            rows.addAll(derivedInstallments(dueDates, userIds));
+            rows.sort(Comparator.comparing((Repayment r) -> r.getLoan().getUser().getId())
+                    .thenComparing(Repayment::getDueDate));
+
+            // Windows are handed out under the checkpoint lock, so instances never overlap
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime sendFrom = checkpoint.getNextSlotAt() != null && checkpoint.getNextSlotAt().isAfter(now)
+                    ? checkpoint.getNextSlotAt() : now;
+            long recipients = rows.stream().map(r -> r.getLoan().getUser().getId()).distinct().count();
+            checkpoint.setNextSlotAt(sendFrom.plusNanos(pacer.windowNanos(recipients)));
+            checkpoint.setLastId(userIds.get(userIds.size() - 1));
+            checkpoint.setProcessed(checkpoint.getProcessed() + userIds.size());
+            checkpointRepository.save(checkpoint);
+            return new Chunk(rows, sendFrom);
+        });
+    }
+
+    /**
+     * The next usersPerChunk borrowers, in id order, with a stored installment in the buckets
+     * or a virtual-schedule loan that may have one.
+     */
+    private List<String> nextUserIds(List<LocalDate> dueDates, String afterUserId) {
+        PageRequest page = PageRequest.of(0, usersPerChunk);
+        // User ids are UUIDs, which sort the same in Java as under any database collation
+        TreeSet<String> merged = new TreeSet<>(
+                repaymentRepository.findReminderUserIds(dueDates, REPAYING_STATUSES, afterUserId, page));
+        merged.addAll(loanRepository.findVirtualScheduleUserIds(REPAYING_STATUSES, afterUserId, page));
+        return merged.stream().limit(usersPerChunk).collect(Collectors.toList());
+    }
+
+    /**
+     * Unstored installments of the borrowers' virtual-schedule loans that fall in the buckets.
+     * Materialized ones are stored rows and already come from findReminderBatch.
+     */
+    private List<Repayment> derivedInstallments(List<LocalDate> dueDates, List<String> userIds) {
+        List<Loan> loans = loanRepository.findVirtualScheduleLoansOfUsers(REPAYING_STATUSES, userIds);
+        if (loans.isEmpty()) {
+            return List.of();
+        }
+        LocalDate dueFrom = loans.stream()
+                .map(l -> RepaymentScheduleService.earliestDueDate(l.getAppliedDate()))
+                .min(Comparator.naturalOrder())
+                .get();
+        Map<String, List<Repayment>> storedByLoan = repaymentRepository.findByLoanIdInOrderByDueDateAsc(
+                        loans.stream().map(Loan::getId).collect(Collectors.toList()), dueFrom).stream()
+                .collect(Collectors.groupingBy(r -> r.getLoan().getId()));
+
+        Set<LocalDate> buckets = Set.copyOf(dueDates);
+        List<Repayment> derived = new ArrayList<>();
+        for (Loan loan : loans) {
+            for (Repayment r : repaymentScheduleService.installmentsOf(loan, storedByLoan.getOrDefault(loan.getId(), List.of()))) {
+                if (RepaymentScheduleService.isVirtualId(r.getId()) && buckets.contains(r.getDueDate())
+                        && REMINDABLE.contains(r.getStatus())) {
+                    derived.add(r);
+                }
+            }
+        }
+        return derived;
+    }
+
+    private static Map<String, List<Repayment>> groupByUser(List<Repayment> batch) {
+        // Keyed by id: Lombok's User.hashCode would touch lazy collections
+        Map<String, List<Repayment>> byUserId = new LinkedHashMap<>();
+        for (Repayment r : batch) {
+            byUserId.computeIfAbsent(r.getLoan().getUser().getId(), k -> new ArrayList<>()).add(r);
+        }
+        return byUserId;
+    }
+
+    /**
+     * Sends one chunk and waits for it, so the next chunk is only read once this one is out.
+     */
+    private void dispatch(Map<String, List<Repayment>> byUser, LocalDateTime sendFrom) {
+        long delay = Math.max(0, Duration.between(LocalDateTime.now(), sendFrom).toNanos());
+        pacer.startAt(System.nanoTime() + delay);
+        List<CompletableFuture<Void>> pending = new ArrayList<>(byUser.size());
+        byUser.forEach((userId, rows) -> pending.add(CompletableFuture.runAsync(() -> {
+            User user = rows.get(0).getLoan().getUser();
+            pacer.acquire();
+            if (notificationService.sendRepaymentReminderDigest(user, rows)) {
+                sent.increment();
+                installments.increment(rows.size());
+            } else {
+                failed.increment();
+            }
+            usersThisRun.incrementAndGet();
+        }, workers)));
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private static final class Chunk {
+        private final List<Repayment> rows;
+        private final LocalDateTime sendFrom;
+
+        private Chunk(List<Repayment> rows, LocalDateTime sendFrom) {
+            this.rows = rows;
+            this.sendFrom = sendFrom;
+        }
+    }
+
+    /**
+     * Spaces calls evenly at a fixed rate across all worker threads.
+     */
+    static final class Pacer {
+        private final long intervalNanos;
+        private long nextSlot = System.nanoTime();
+
+        Pacer(double perSecond) {
+            this.intervalNanos = perSecond > 0 ? (long) (1_000_000_000L / perSecond) : 0;
+        }
+
+        /**
+         * How long the given number of calls take at this rate.
+         */
+        long windowNanos(long calls) {
+            return calls * intervalNanos;
+        }
+
+        /**
+         * Makes the next call wait for the given System.nanoTime(), the start of a reserved window.
+         */
+        synchronized void startAt(long nanoTime) {
+            nextSlot = nanoTime;
+        }
+
+        void acquire() {
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                nextSlot = Math.max(nextSlot, now) + intervalNanos;
+                wait = nextSlot - intervalNanos - now;
+            }
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.LoanDTO;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Entity.Repayment.RepaymentStatus;
+import com.example.loanapp.Exception.ResourceNotFoundException;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves a loan's installments for both schedule modes.
+ * STORED loans keep one repayment row per installment, written at approval.
+ * VIRTUAL loans derive installments from amount, rate, term and disbursement date;
+ * an installment only becomes a row once it is paid, partially paid or overdue.
+ */
+@Slf4j
+@Service
+public class RepaymentScheduleService {
+
+    public enum ScheduleMode {
+        STORED, VIRTUAL
+    }
+
+    // Virtual installment ids look like "V:<loanId>:<installmentNumber>"
+    private static final String VIRTUAL_PREFIX = "V:";
+
+    private static final Set<RepaymentStatus> UNPAID =
+            EnumSet.of(RepaymentStatus.PENDING, RepaymentStatus.OVERDUE, RepaymentStatus.PARTIALLY_PAID);
+
+    private final RepaymentRepository repaymentRepository;
+    private final LoanRepository loanRepository;
+    private final UserLoanSummaryService userLoanSummaryService;
+    private final AmortizationEngine amortizationEngine;
+    private final ScheduleMode mode;
+
+    public RepaymentScheduleService(RepaymentRepository repaymentRepository,
+                                    LoanRepository loanRepository,
+                                    UserLoanSummaryService userLoanSummaryService,
+                                    AmortizationEngine amortizationEngine,
+                                    @Value("${app.repayment.schedule-mode:STORED}") ScheduleMode mode) {
+        this.repaymentRepository = repaymentRepository;
+        this.loanRepository = loanRepository;
+        this.userLoanSummaryService = userLoanSummaryService;
+        this.amortizationEngine = amortizationEngine;
+        this.mode = mode;
+    }
+
+    /**
+     * Whether loans approved from now on should get a virtual schedule.
+     */
+    public boolean useVirtualSchedules() {
+        return mode == ScheduleMode.VIRTUAL;
+    }
+
+    public static boolean isVirtual(Loan loan) {
+        return Boolean.TRUE.equals(loan.getVirtualSchedule());
+    }
+
+    public static boolean isVirtualId(String repaymentId) {
+        return repaymentId != null && repaymentId.startsWith(VIRTUAL_PREFIX);
+    }
+
+    /**
+     * Merges stored rows with derived installments, ordered by due date.
+     * For STORED loans the stored rows are returned unchanged.
+     */
+    public List<Repayment> installmentsOf(Loan loan, List<Repayment> stored) {
+        if (!isVirtual(loan)) {
+            return stored;
+        }
+
+        Map<Integer, Repayment> byNumber = new HashMap<>();
+        List<Repayment> merged = new ArrayList<>();
+        for (Repayment r : stored) {
+            if (r.getInstallmentNumber() != null && r.getInstallmentNumber() > 0) {
+                byNumber.put(r.getInstallmentNumber(), r);
+            } else {
+                // Ad-hoc (flexible) payments are always stored
+                merged.add(r);
+            }
+        }
+
+        for (AmortizationEngine.Installment i : amortize(loan)) {
+            Repayment materialized = byNumber.get(i.getNumber());
+            merged.add(materialized != null ? materialized : toRepayment(loan, i));
+        }
+
+        merged.sort(Comparator.comparing(Repayment::getDueDate));
+        return merged;
+    }
+
+    /**
+     * Builds the in-memory installment n of a virtual schedule.
+     */
+    public Repayment derive(Loan loan, int installmentNumber) {
+        return toRepayment(loan, amortize(loan).get(installmentNumber - 1));
+    }
+
+    private List<AmortizationEngine.Installment> amortize(Loan loan) {
+        return amortizationEngine.schedule(loan.getAmount(), loan.getInterestRate(), loan.getTermMonths(),
+                scheduleStart(loan.getDisbursedDate(), loan.getReviewedDate()));
+    }
+
+    private Repayment toRepayment(Loan loan, AmortizationEngine.Installment i) {
+        return Repayment.builder()
+                .id(VIRTUAL_PREFIX + loan.getId() + ":" + i.getNumber())
+                .loan(loan)
+                .installmentNumber(i.getNumber())
+                .amount(i.getPayment())
+                .principalAmount(i.getPrincipal())
+                .interestAmount(i.getInterest())
+                .balanceAfter(i.getBalance())
+                .dueDate(i.getDueDate())
+                .status(RepaymentStatus.PENDING)
+                .lateFee(BigDecimal.ZERO)
+                .build();
+    }
+
+    /**
+     * Lower bound for every due date of a loan, used to prune repayment partitions.
+     * Schedules start at approval and ad-hoc payments fall due on the day they are made.
+     */
+    static LocalDate earliestDueDate(LocalDate appliedDate) {
+        return appliedDate != null ? appliedDate : LocalDate.EPOCH;
+    }
+
+    /**
+     * Looks up an installment for payment, materializing it first when it is virtual.
+     */
+    @Transactional
+    public Repayment resolveForPayment(String repaymentId) {
+        if (!isVirtualId(repaymentId)) {
+            return repaymentRepository.findById(repaymentId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Repayment installment not found."));
+        }
+
+        String[] parts = repaymentId.substring(VIRTUAL_PREFIX.length()).split(":");
+        if (parts.length != 2) {
+            throw new ResourceNotFoundException("Repayment installment not found.");
+        }
+        String loanId = parts[0];
+        int installmentNumber;
+        try {
+            installmentNumber = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new ResourceNotFoundException("Repayment installment not found.");
+        }
+
+        Loan loan = loanRepository.findById(loanId)
+                .orElseThrow(() -> new ResourceNotFoundException("Loan not found: " + loanId));
+        if (!isVirtual(loan) || installmentNumber < 1 || installmentNumber > loan.getTermMonths()) {
+            throw new ResourceNotFoundException("Repayment installment not found.");
+        }
+
+        // Serializes concurrent payments of the same virtual installment
+        userLoanSummaryService.lockUser(loan.getUser().getId());
+
+        return repaymentRepository.findFirstByLoanIdAndInstallmentNumber(loanId, installmentNumber)
+                .orElseGet(() -> {
+                    Repayment derived = derive(loan, installmentNumber);
+                    derived.setId(null);
+                    log.info("Materializing virtual installment {} of Loan ID {}", installmentNumber, loanId);
+                    return repaymentRepository.save(derived);
+                });
+    }
+
+    /**
+     * Fills in the next due date of virtual-schedule rows in a list page.
+     * Their derived installments are not visible to the JPQL subquery.
+     */
+    public Page<LoanDTO.ListItem> withVirtualNextDueDates(Page<LoanDTO.ListItem> page) {
+        List<String> virtualIds = page.getContent().stream()
+                .filter(i -> Boolean.TRUE.equals(i.getVirtualSchedule()))
+                .map(LoanDTO.ListItem::getId)
+                .collect(Collectors.toList());
+        if (virtualIds.isEmpty()) {
+            return page;
+        }
+
+        LocalDate dueFrom = page.getContent().stream()
+                .filter(i -> Boolean.TRUE.equals(i.getVirtualSchedule()))
+                .map(i -> earliestDueDate(i.getAppliedDate()))
+                .min(Comparator.naturalOrder())
+                .get();
+
+        Map<String, List<Repayment>> storedByLoan = repaymentRepository.findByLoanIdInOrderByDueDateAsc(virtualIds, dueFrom).stream()
+                .collect(Collectors.groupingBy(r -> r.getLoan().getId()));
+
+        return page.map(item -> {
+            if (!Boolean.TRUE.equals(item.getVirtualSchedule()) || item.getScheduleStartDate() == null) {
+                return item;
+            }
+            LocalDate next = nextDueDate(item.getScheduleStartDate(), item.getTermMonths(),
+                    storedByLoan.getOrDefault(item.getId(), List.of()));
+            return new VirtualListItem(item, next);
+        });
+    }
+
+    private LocalDate nextDueDate(LocalDate start, int termMonths, List<Repayment> stored) {
+        Map<Integer, Repayment> byNumber = stored.stream()
+                .filter(r -> r.getInstallmentNumber() != null && r.getInstallmentNumber() > 0)
+                .collect(Collectors.toMap(Repayment::getInstallmentNumber, r -> r, (a, b) -> a));
+
+        for (int n = 1; n <= termMonths; n++) {
+            Repayment r = byNumber.get(n);
+            if (r == null) {
+                return start.plusMonths(n);
+            }
+            if (UNPAID.contains(r.getStatus())) {
+                return r.getDueDate();
+            }
+        }
+        return null;
+    }
+
+    private static LocalDate scheduleStart(LocalDate disbursedDate, LocalDate reviewedDate) {
+        if (disbursedDate != null) return disbursedDate;
+        if (reviewedDate != null) return reviewedDate;
+        return LocalDate.now();
+    }
+
+    /**
+     * ListItem with a next due date computed from the virtual schedule.
+     */
+    private static final class VirtualListItem implements LoanDTO.ListItem {
+        private final LoanDTO.ListItem delegate;
+        private final LocalDate nextDueDate;
+
+        private VirtualListItem(LoanDTO.ListItem delegate, LocalDate nextDueDate) {
+            this.delegate = delegate;
+            this.nextDueDate = nextDueDate;
+        }
+
+        @Override public String getId() { return delegate.getId(); }
+        @Override public BigDecimal getAmount() { return delegate.getAmount(); }
+        @Override public Integer getTermMonths() { return delegate.getTermMonths(); }
+        @Override public Loan.LoanPurpose getPurpose() { return delegate.getPurpose(); }
+        @Override public Loan.LoanStatus getStatus() { return delegate.getStatus(); }
+        @Override public BigDecimal getInterestRate() { return delegate.getInterestRate(); }
+        @Override public BigDecimal getMonthlyPayment() { return delegate.getMonthlyPayment(); }
+        @Override public Integer getCreditScore() { return delegate.getCreditScore(); }
+        @Override public LocalDate getAppliedDate() { return delegate.getAppliedDate(); }
+        @Override public LocalDate getDueDate() { return delegate.getDueDate(); }
+        @Override public String getUserId() { return delegate.getUserId(); }
+        @Override public String getUserName() { return delegate.getUserName(); }
+        @Override public BigDecimal getTotalRepaid() { return delegate.getTotalRepaid(); }
+        @Override public BigDecimal getRemainingBalance() { return delegate.getRemainingBalance(); }
+        @Override public LocalDate getNextDueDate() { return nextDueDate; }
+        @Override public Boolean getVirtualSchedule() { return delegate.getVirtualSchedule(); }
+        @Override public LocalDate getScheduleStartDate() { return delegate.getScheduleStartDate(); }
+    }
+}
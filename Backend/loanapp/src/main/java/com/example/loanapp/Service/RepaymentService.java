@@ -1,36 +1,85 @@
 package com.example.loanapp.Service;
 
+import com.example.loanapp.DTO.LoanDTO;
 import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.MpesaCallback;
+import com.example.loanapp.Entity.OutboxEvent;
 import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Entity.Repayment.MpesaPushStatus;
 import com.example.loanapp.Entity.Repayment.RepaymentStatus;
+import com.example.loanapp.Exception.PaymentInProgressException;
 import com.example.loanapp.Exception.ResourceNotFoundException;
 import com.example.loanapp.Repository.LoanRepository;
 import com.example.loanapp.Repository.RepaymentRepository;
-import jakarta.transaction.Transactional;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class RepaymentService {
 
     private final RepaymentRepository repaymentRepository;
     private final LoanRepository loanRepository;
     private final MpesaService mpesaService;
+    private final UserLoanSummaryService userLoanSummaryService;
+    private final RepaymentScheduleService repaymentScheduleService;
+    private final LoanStateMachine loanStateMachine;
+    private final OptimisticRetry optimisticRetry;
+    private final OutboxService outboxService;
+    private final TransactionTemplate pushTemplate;
+    private final Duration pushTimeout;
+
+    public RepaymentService(RepaymentRepository repaymentRepository,
+                            LoanRepository loanRepository,
+                            MpesaService mpesaService,
+                            UserLoanSummaryService userLoanSummaryService,
+                            RepaymentScheduleService repaymentScheduleService,
+                            LoanStateMachine loanStateMachine,
+                            OptimisticRetry optimisticRetry,
+                            OutboxService outboxService,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.mpesa.push.timeout-seconds:300}") long pushTimeoutSeconds) {
+        this.repaymentRepository = repaymentRepository;
+        this.loanRepository = loanRepository;
+        this.mpesaService = mpesaService;
+        this.userLoanSummaryService = userLoanSummaryService;
+        this.repaymentScheduleService = repaymentScheduleService;
+        this.loanStateMachine = loanStateMachine;
+        this.optimisticRetry = optimisticRetry;
+        this.outboxService = outboxService;
+        // Push results can be recorded from afterCommit, where the finished transaction is still bound
+        this.pushTemplate = new TransactionTemplate(transactionManager);
+        this.pushTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.pushTimeout = Duration.ofSeconds(pushTimeoutSeconds);
+    }
 
     /**
      * Processes a payment for a specific pre-existing installment.
+     * Re-run from scratch if a concurrent payment updated the loan first.
      */
-    @Transactional
     public Repayment processPayment(String repaymentId, String paymentMethod) {
-        Repayment repayment = repaymentRepository.findById(repaymentId)
-                .orElseThrow(() -> new ResourceNotFoundException("Repayment installment not found."));
+        return optimisticRetry.execute("Payment of " + repaymentId,
+                () -> doProcessPayment(repaymentId, paymentMethod));
+    }
+
+    private Repayment doProcessPayment(String repaymentId, String paymentMethod) {
+        // Virtual installments are materialized here before they can be paid
+        Repayment repayment = repaymentScheduleService.resolveForPayment(repaymentId);
 
         if (repayment.getStatus() == RepaymentStatus.PAID) {
             throw new IllegalStateException("This installment has already been paid.");
@@ -48,8 +97,12 @@ public class RepaymentService {
      * Processes a flexible (custom amount) payment for a loan.
      * Fixes the "not-null property references a null" error by providing an installmentNumber.
      */
-    @Transactional
     public Repayment processFlexiblePayment(String loanId, BigDecimal amount, String paymentMethod) {
+        return optimisticRetry.execute("Flexible payment on " + loanId,
+                () -> doProcessFlexiblePayment(loanId, amount, paymentMethod));
+    }
+
+    private Repayment doProcessFlexiblePayment(String loanId, BigDecimal amount, String paymentMethod) {
         Loan loan = loanRepository.findById(loanId)
                 .orElseThrow(() -> new ResourceNotFoundException("Loan not found"));
 
@@ -78,44 +131,137 @@ public class RepaymentService {
     }
 
     /**
-     * Internal helper to handle M-Pesa STK Push initiation for any repayment type.
+     * Marks the repayment PENDING_PUSH and sends the STK push once this transaction has
+     * committed, so neither the request thread nor a pooled connection waits on Daraja.
+     * The client polls GET /api/repayments/{id}/status for the outcome. A repeated request
+     * while a push is still unsent or unanswered gets a 409 instead of a second prompt.
      */
     private Repayment initiateMpesaFlow(Repayment repayment) {
-        try {
-            String rawPhone = repayment.getLoan().getUser().getPhone();
-            String formattedPhone = formatMpesaPhoneNumber(rawPhone);
+        String formattedPhone = formatMpesaPhoneNumber(repayment.getLoan().getUser().getPhone());
+        // Fails fast with 503 before anything is written when Daraja is saturated
+        DarajaDispatcher.Permit permit = mpesaService.reservePushSlot();
 
-            log.info("Initiating M-Pesa push for {} - Amount: {}", formattedPhone, repayment.getAmount());
+        Repayment saved;
+        try {
+            // A PUSHED prompt older than the push timeout was never answered and may be retried
+            if (repaymentRepository.claimPush(repayment.getId(), MpesaPushStatus.PENDING_PUSH,
+                    MpesaPushStatus.PUSHED, LocalDateTime.now().minus(pushTimeout)) == 0) {
+                throw new PaymentInProgressException("An M-Pesa payment request for this installment is already "
+                        + "in progress. Check your phone or wait for it to expire.");
+            }
+            // Keep the managed entity in step with the claim
+            repayment.setMpesaPushStatus(MpesaPushStatus.PENDING_PUSH);
+            repayment.setMpesaCheckoutId(null);
+            repayment.setMpesaPushMessage(null);
+            saved = repaymentRepository.save(repayment);
+        } catch (RuntimeException e) {
+            permit.release();
+            throw e;
+        }
 
-            String checkoutId = mpesaService.initiateStkPush(
-                    formattedPhone,
-                    repayment.getAmount(),
-                    repayment.getId()
-            );
+        String repaymentId = saved.getId();
+        BigDecimal amount = saved.getAmount();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dispatchStkPush(permit, repaymentId, formattedPhone, amount);
+            }
 
-            if (checkoutId == null) {
-                throw new RuntimeException("M-Pesa gateway failed to return a CheckoutID.");
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    permit.release();
+                }
             }
+        });
+        return saved;
+    }
+
+    private void dispatchStkPush(DarajaDispatcher.Permit permit, String repaymentId, String formattedPhone,
+                                 BigDecimal amount) {
+        log.info("Initiating M-Pesa push for {} - Amount: {}", formattedPhone, amount);
+        mpesaService.initiateStkPushAsync(permit, formattedPhone, amount, repaymentId)
+                .whenComplete((checkoutId, error) -> {
+                    if (error == null && checkoutId == null) {
+                        error = new IllegalStateException("M-Pesa gateway failed to return a CheckoutID.");
+                    }
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        log.error("M-Pesa Service Error for Repayment ID {}: {}", repaymentId, cause.getMessage());
+                        recordPushResult(repaymentId, MpesaPushStatus.PUSH_FAILED, null, cause.getMessage());
+                    } else {
+                        recordPushResult(repaymentId, MpesaPushStatus.PUSHED, checkoutId, null);
+                    }
+                });
+    }
 
-            repayment.setMpesaCheckoutId(checkoutId);
-            return repaymentRepository.save(repayment);
+    private void recordPushResult(String repaymentId, MpesaPushStatus status, String checkoutId, String message) {
+        try {
+            pushTemplate.execute(tx ->
+                    repaymentRepository.recordPushResult(repaymentId, MpesaPushStatus.PENDING_PUSH, status,
+                            checkoutId, truncate(message)));
         } catch (Exception e) {
-            log.error("M-Pesa Service Error: {}", e.getMessage());
-            throw new RuntimeException("Could not initiate M-Pesa payment: " + e.getMessage());
+            // The stale-push sweep fails the row eventually
+            log.error("Could not record STK push result for Repayment ID {}: {}", repaymentId, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.mpesa.push.sweep-interval-ms:60000}")
+    public void expireStalePushes() {
+        Integer expired = pushTemplate.execute(tx ->
+                repaymentRepository.expirePendingPushes(MpesaPushStatus.PENDING_PUSH, MpesaPushStatus.PUSH_FAILED,
+                        "Payment request was not sent", LocalDateTime.now().minus(pushTimeout)));
+        if (expired != null && expired > 0) {
+            log.warn("Marked {} stale STK pushes as failed", expired);
         }
     }
 
     /**
-     * Finalizes the payment after successful M-Pesa callback or internal deduction.
+     * Payment progress for the client to poll after a 202. Borrowers only see their own
+     * repayments; anyone else's is reported as not found. Staff (admins and loan officers) see
+     * every repayment.
+     * Stays on the primary: a replica could still show the state from before the callback.
      */
     @Transactional
-    public void completeMpesaPayment(String checkoutRequestId) {
-        Repayment repayment = repaymentRepository.findByMpesaCheckoutId(checkoutRequestId)
-                .orElseThrow(() -> new ResourceNotFoundException("No record found for CheckoutID: " + checkoutRequestId));
+    public LoanDTO.PaymentStatus getPaymentStatus(String repaymentId, String userEmail, boolean staff) {
+        Repayment repayment = repaymentRepository.findById(repaymentId)
+                .filter(r -> staff || r.getLoan().getUser().getEmail().equals(userEmail))
+                .orElseThrow(() -> new ResourceNotFoundException("Repayment not found: " + repaymentId));
+        return LoanDTO.PaymentStatus.builder()
+                .repaymentId(repayment.getId())
+                .status(repayment.getStatus().name())
+                .mpesaPushStatus(repayment.getMpesaPushStatus() != null ? repayment.getMpesaPushStatus().name() : null)
+                .checkoutRequestId(repayment.getMpesaCheckoutId())
+                .message(repayment.getMpesaPushMessage())
+                .paidDate(repayment.getPaidDate())
+                .build();
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > 255 ? message.substring(0, 255) : message;
+    }
 
-        if (repayment.getStatus() != RepaymentStatus.PAID) {
+    /**
+     * Applies one inbox callback to its repayment inside the caller's transaction
+     * (see MpesaCallbackConsumer). Callbacks for an already paid repayment are no-ops.
+     */
+    public void applyMpesaCallback(Repayment repayment, MpesaCallback callback) {
+        if (repayment.getStatus() == RepaymentStatus.PAID) {
+            return;
+        }
+        if (callback.isSuccess()) {
+            if (callback.getReceiptNumber() != null) {
+                repayment.setTransactionId(callback.getReceiptNumber());
+            }
             finalizePayment(repayment, "MPESA");
             log.info("M-Pesa payment CONFIRMED for Repayment ID: {}", repayment.getId());
+        } else {
+            repayment.setMpesaPushStatus(MpesaPushStatus.CANCELLED);
+            repayment.setMpesaPushMessage(truncate(callback.getResultDesc()));
+            repaymentRepository.save(repayment);
+            log.warn("STK Push Failed/Cancelled for Repayment ID {}. Code: {}, Message: {}",
+                    repayment.getId(), callback.getResultCode(), callback.getResultDesc());
         }
     }
 
@@ -126,9 +272,13 @@ public class RepaymentService {
         repayment.setStatus(RepaymentStatus.PAID);
         repayment.setPaidDate(LocalDate.now());
         repayment.setPaymentMethod(paymentMethod);
+        if (repayment.getMpesaPushStatus() != null) {
+            repayment.setMpesaPushStatus(MpesaPushStatus.CONFIRMED);
+        }
 
         Repayment savedRepayment = repaymentRepository.save(repayment);
         updateLoanProgress(repayment.getLoan(), repayment.getAmount());
+        outboxService.repaymentEvent(OutboxEvent.EventType.REPAYMENT_COMPLETED, savedRepayment);
 
         return savedRepayment;
     }
@@ -141,25 +291,33 @@ public class RepaymentService {
                 loan.getAmount().multiply(loan.getInterestRate().divide(BigDecimal.valueOf(100)))
         );
 
+        Loan.LoanStatus previousStatus = loan.getStatus();
         BigDecimal currentTotalRepaid = loan.getTotalRepaid() != null ? loan.getTotalRepaid() : BigDecimal.ZERO;
         BigDecimal newTotalRepaid = currentTotalRepaid.add(paymentAmount);
 
         loan.setTotalRepaid(newTotalRepaid);
 
         if (newTotalRepaid.compareTo(totalPayable) >= 0) {
-            loan.setStatus(Loan.LoanStatus.COMPLETED);
-            loan.setCompletedDate(LocalDate.now());
+            loanStateMachine.transition(loan, Loan.LoanStatus.COMPLETED);
+            if (loan.getCompletedDate() == null) {
+                loan.setCompletedDate(LocalDate.now());
+            }
         } else {
-            loan.setStatus(Loan.LoanStatus.REPAYING);
+            loanStateMachine.transition(loan, Loan.LoanStatus.REPAYING);
         }
 
+        // Version-checked; a concurrent payment makes the caller's OptimisticRetry run again
         loanRepository.save(loan);
+        userLoanSummaryService.recordTransition(loan, previousStatus, currentTotalRepaid);
     }
 
     /**
      * Validates if a flexible payment is allowed.
      */
     private void validateFlexiblePayment(Loan loan, BigDecimal amount) {
+        if (!loanStateMachine.acceptsPayment(loan.getStatus())) {
+            throw new IllegalArgumentException("Payments are not accepted on a " + loan.getStatus() + " loan.");
+        }
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Payment amount must be greater than zero.");
         }
@@ -0,0 +1,24 @@
+package com.example.loanapp.Service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Backfills user_loan_summary when the app is started with --rebuild-loan-summaries.
+ * The same rebuild is available at POST /api/admin/dashboard/loan-summaries/rebuild.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserLoanSummaryRebuildRunner implements ApplicationRunner {
+
+    private final UserLoanSummaryService userLoanSummaryService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (args.containsOption("rebuild-loan-summaries")) {
+            userLoanSummaryService.rebuildAll();
+        }
+    }
+}
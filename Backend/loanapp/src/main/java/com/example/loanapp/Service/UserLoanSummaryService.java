@@ -0,0 +1,108 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Loan.LoanStatus;
+import com.example.loanapp.Entity.UserLoanSummary;
+import com.example.loanapp.Repository.UserLoanSummaryRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Keeps the user_loan_summary read model in step with loan transitions.
+ * Callers report the state a loan was in before the change; the difference in its
+ * contribution is applied as an atomic delta inside the caller's transaction.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserLoanSummaryService {
+
+    static final Set<LoanStatus> ACTIVE_STATUSES =
+            EnumSet.of(LoanStatus.APPROVED, LoanStatus.DISBURSED, LoanStatus.REPAYING);
+
+    private final UserLoanSummaryRepository summaryRepository;
+
+    @Transactional
+    public UserLoanSummary getSummary(String userId) {
+        return summaryRepository.findById(userId).orElseGet(() -> {
+            // First read for a user that predates the read model
+            summaryRepository.createIfAbsent(userId);
+            return summaryRepository.findById(userId)
+                    .orElseGet(() -> UserLoanSummary.builder().userId(userId).build());
+        });
+    }
+
+    /**
+     * Locks the user's summary row until the current transaction ends.
+     * Concurrent applications and approvals for the same user queue up here,
+     * while other users are unaffected.
+     */
+    @Transactional
+    public void lockUser(String userId) {
+        if (!summaryRepository.existsById(userId)) {
+            // Racing first-time inserts wait on each other; the losers keep the winner's row,
+            // since recomputing it from their older snapshot would undo the winner's delta
+            summaryRepository.createIfAbsent(userId);
+        }
+        summaryRepository.findByIdForUpdate(userId);
+    }
+
+    /**
+     * Records a loan transition. The loan must already carry its new status and totalRepaid.
+     */
+    @Transactional
+    public void recordTransition(Loan loan, LoanStatus previousStatus, BigDecimal previousRepaid) {
+        boolean wasActive = ACTIVE_STATUSES.contains(previousStatus);
+        boolean isActive = ACTIVE_STATUSES.contains(loan.getStatus());
+        if (!wasActive && !isActive) {
+            return;
+        }
+
+        String userId = loan.getUser().getId();
+        if (!summaryRepository.existsById(userId)) {
+            // Rebuilding reads the flushed loan state, which already includes this transition
+            summaryRepository.rebuildForUser(userId);
+            return;
+        }
+
+        BigDecimal repaidNow = orZero(loan.getTotalRepaid());
+        BigDecimal borrowed = BigDecimal.ZERO;
+        BigDecimal repaid = BigDecimal.ZERO;
+        BigDecimal monthly = BigDecimal.ZERO;
+        int active = 0;
+
+        if (isActive) {
+            borrowed = borrowed.add(loan.getAmount());
+            repaid = repaid.add(repaidNow);
+            monthly = monthly.add(orZero(loan.getMonthlyPayment()));
+            active++;
+        }
+        if (wasActive) {
+            borrowed = borrowed.subtract(loan.getAmount());
+            repaid = repaid.subtract(orZero(previousRepaid));
+            monthly = monthly.subtract(orZero(loan.getMonthlyPayment()));
+            active--;
+        }
+
+        summaryRepository.applyDelta(userId, borrowed, repaid, monthly, active, LocalDateTime.now());
+        summaryRepository.refreshNextDueDate(userId);
+    }
+
+    @Transactional
+    public int rebuildAll() {
+        int rows = summaryRepository.rebuildAll();
+        log.info("Rebuilt user_loan_summary for {} users", rows);
+        return rows;
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+}
@@ -12,7 +12,6 @@ import com.example.loanapp.Repository.AuditLogRepository;
 import com.example.loanapp.Repository.LoanRepository;
 import com.example.loanapp.Repository.RepaymentRepository;
 import com.example.loanapp.Repository.UserRepository;
-import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
@@ -22,6 +21,7 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -135,8 +135,7 @@ public class UserService implements UserDetailsService {
     public UserDTO.ProfileResponse getUserProfile(String email) {
         User user = getUserEntityByEmail(email);
 
-        // FIX: Match method name in LoanService and use email instead of ID
-        LoanDTO.Summary loanSummary = loanService.getUserLoanSummary(user.getEmail());
+        LoanDTO.Summary loanSummary = loanService.getUserLoanSummaryById(user.getId());
 
         List<UserDTO.ActivityDTO> activities = auditLogRepository.findRecentByUserId(user.getId(), Pageable.ofSize(10))
                 .stream()
@@ -148,6 +147,7 @@ public class UserService implements UserDetailsService {
         return UserDTO.convertToProfileResponse(user, loanSummary, activities);
     }
 
+    @Transactional(readOnly = true)
     public UserDTO.PaginatedResponse getAllUsers(Pageable pageable) {
         Page<User> userPage = userRepository.findAll(pageable);
         List<UserDTO.Response> users = userPage.getContent().stream()
@@ -165,6 +165,7 @@ public class UserService implements UserDetailsService {
         return response;
     }
 
+    @Transactional(readOnly = true)
     public UserDTO.AdminResponse getUserForAdmin(String userId) {
         User user = getUserById(userId);
         UserDTO.UserStats stats = calculateUserStats(userId);
@@ -0,0 +1,54 @@
+package com.example.loanapp.configuration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends connections for read-only transactions to the replica and everything else to the
+ * primary. Falls back to the primary while the replica is unhealthy or lagging.
+ * Must sit behind a LazyConnectionDataSourceProxy, otherwise the connection is taken
+ * before the transaction's read-only flag is visible.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY, REPLICA
+    }
+
+    private final AtomicBoolean replicaAvailable = new AtomicBoolean(true);
+    private final Counter primaryRoutes;
+    private final Counter replicaRoutes;
+    private final Counter fallbackRoutes;
+
+    public ReadReplicaRoutingDataSource(MeterRegistry meterRegistry) {
+        this.primaryRoutes = meterRegistry.counter("datasource.routing", "target", "primary");
+        this.replicaRoutes = meterRegistry.counter("datasource.routing", "target", "replica");
+        this.fallbackRoutes = meterRegistry.counter("datasource.routing", "target", "fallback");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryRoutes.increment();
+            return Route.PRIMARY;
+        }
+        if (!replicaAvailable.get()) {
+            fallbackRoutes.increment();
+            return Route.PRIMARY;
+        }
+        replicaRoutes.increment();
+        return Route.REPLICA;
+    }
+
+    public void setReplicaAvailable(boolean available) {
+        replicaAvailable.set(available);
+    }
+
+    public boolean isReplicaAvailable() {
+        return replicaAvailable.get();
+    }
+}
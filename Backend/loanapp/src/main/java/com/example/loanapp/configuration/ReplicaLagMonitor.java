@@ -0,0 +1,68 @@
+package com.example.loanapp.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.StringUtils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Polls the replica's replay lag and takes it out of rotation while it is behind by more
+ * than the configured limit or unreachable. A blank lag query turns the check off.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final ReadReplicaRoutingDataSource routingDataSource;
+    private final String lagQuery;
+    private final double maxLagSeconds;
+
+    // Milliseconds, -1 while unknown or unreachable
+    private final AtomicLong lastLagMillis = new AtomicLong(-1);
+
+    public ReplicaLagMonitor(HikariDataSource replicaDataSource,
+                             ReadReplicaRoutingDataSource routingDataSource,
+                             MeterRegistry meterRegistry,
+                             String lagQuery,
+                             double maxLagSeconds) {
+        this.replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+        this.replicaJdbcTemplate.setQueryTimeout(2);
+        this.routingDataSource = routingDataSource;
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLagSeconds;
+        meterRegistry.gauge("datasource.replica.lag", lastLagMillis, l -> l.get() / 1000.0);
+        meterRegistry.gauge("datasource.replica.available", routingDataSource, r -> r.isReplicaAvailable() ? 1 : 0);
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.lag-check-interval-ms:5000}")
+    public void check() {
+        if (!StringUtils.hasText(lagQuery)) {
+            return;
+        }
+        boolean healthy;
+        try {
+            Double lag = replicaJdbcTemplate.queryForObject(lagQuery, Double.class);
+            double seconds = lag != null ? lag : 0;
+            lastLagMillis.set(Math.round(seconds * 1000));
+            healthy = seconds <= maxLagSeconds;
+        } catch (Exception e) {
+            lastLagMillis.set(-1);
+            healthy = false;
+            log.debug("Replica lag check failed: {}", e.getMessage());
+        }
+
+        if (routingDataSource.isReplicaAvailable() != healthy) {
+            if (healthy) {
+                log.info("Replica caught up, routing read-only transactions to it again");
+            } else {
+                log.warn("Replica lag {} ms exceeds {} s or replica unreachable, reads fall back to primary",
+                        lastLagMillis.get(), maxLagSeconds);
+            }
+            routingDataSource.setReplicaAvailable(healthy);
+        }
+    }
+}
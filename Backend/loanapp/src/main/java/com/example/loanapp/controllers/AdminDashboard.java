@@ -4,6 +4,7 @@ import com.example.loanapp.Entity.User;
 import com.example.loanapp.Entity.Loan.LoanStatus; // Import the Enum
 import com.example.loanapp.Repository.LoanRepository;
 import com.example.loanapp.Repository.UserRepository;
+import com.example.loanapp.Service.UserLoanSummaryService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -19,6 +20,7 @@ public class AdminDashboard {
 
     private final UserRepository userRepository;
     private final LoanRepository loanRepository;
+    private final UserLoanSummaryService userLoanSummaryService;
 
     /**
      * 📊 Dashboard statistics
@@ -54,6 +56,15 @@ public class AdminDashboard {
         );
     }
 
+    /**
+     * 🔁 Backfill the per-user loan summary read model
+     */
+    @PostMapping("/loan-summaries/rebuild")
+    public ResponseEntity<?> rebuildLoanSummaries() {
+        int rows = userLoanSummaryService.rebuildAll();
+        return ResponseEntity.ok(Map.of("message", "Loan summaries rebuilt", "users", rows));
+    }
+
     /**
      * 👥 View all users
      */
@@ -0,0 +1,74 @@
+package com.example.loanapp.controllers;
+
+import com.example.loanapp.DTO.ExportDTO;
+import com.example.loanapp.Service.ExportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Full-table exports for finance. The body is streamed while the rows are read,
+ * so nothing is buffered server-side. Add gzip=true for a .gz download.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/exports")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminExportController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv");
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    private final ExportService exportService;
+
+    @GetMapping("/loans")
+    public ResponseEntity<StreamingResponseBody> exportLoans(
+            @RequestParam(defaultValue = "NDJSON") ExportDTO.Format format,
+            @RequestParam(defaultValue = "false") boolean gzip
+    ) {
+        return stream("loans", format, gzip, exportService::exportLoans);
+    }
+
+    @GetMapping("/repayments")
+    public ResponseEntity<StreamingResponseBody> exportRepayments(
+            @RequestParam(defaultValue = "NDJSON") ExportDTO.Format format,
+            @RequestParam(defaultValue = "false") boolean gzip
+    ) {
+        return stream("repayments", format, gzip, exportService::exportRepayments);
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(String name, ExportDTO.Format format, boolean gzip,
+                                                         BiConsumer<ExportDTO.Format, OutputStream> writer) {
+        String filename = name + "-" + LocalDate.now() + (format == ExportDTO.Format.CSV ? ".csv" : ".ndjson")
+                + (gzip ? ".gz" : "");
+        log.info("Streaming export {}", filename);
+
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream zipped = new GZIPOutputStream(out, 64 * 1024);
+                writer.accept(format, zipped);
+                zipped.finish();
+            } else {
+                writer.accept(format, out);
+            }
+            out.flush();
+        };
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(gzip ? GZIP : format == ExportDTO.Format.CSV ? CSV : NDJSON)
+                .body(body);
+    }
+}
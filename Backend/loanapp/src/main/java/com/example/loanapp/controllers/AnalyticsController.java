@@ -2,24 +2,29 @@ package com.example.loanapp.controllers;
 
 import com.example.loanapp.DTO.AnalyticsDTO;
 import com.example.loanapp.Service.AnalyticsService;
+import com.example.loanapp.Service.PortfolioSnapshotService;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDate;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/analytics")
 public class AnalyticsController {
     private final AnalyticsService analyticsService;
+    private final PortfolioSnapshotService portfolioSnapshotService;
 
     // Manual constructor
-    public AnalyticsController(AnalyticsService analyticsService) {
+    public AnalyticsController(AnalyticsService analyticsService, PortfolioSnapshotService portfolioSnapshotService) {
         this.analyticsService = analyticsService;
+        this.portfolioSnapshotService = portfolioSnapshotService;
     }
 
     @GetMapping("/dashboard")
@@ -65,4 +70,28 @@ public class AnalyticsController {
         AnalyticsDTO.PurposeDistribution distribution = analyticsService.getPurposeDistribution();
         return ResponseEntity.ok(distribution);
     }
-}
\ No newline at end of file
+
+    // --- Portfolio snapshots (answered from the nightly files, not the live tables) ---
+
+    @GetMapping("/snapshots")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LOAN_OFFICER')")
+    public ResponseEntity<List<LocalDate>> listSnapshots() {
+        return ResponseEntity.ok(portfolioSnapshotService.listSnapshots());
+    }
+
+    /**
+     * Book as of a date, e.g. ?date=2024-03-31. Uses the latest snapshot on or before it.
+     */
+    @GetMapping("/snapshots/as-of")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LOAN_OFFICER')")
+    public ResponseEntity<AnalyticsDTO.PortfolioSnapshotSummary> getSnapshotAsOf(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return ResponseEntity.ok(portfolioSnapshotService.summarizeAsOf(date));
+    }
+
+    @PostMapping("/snapshots")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<LocalDate> takeSnapshot() {
+        return ResponseEntity.ok(portfolioSnapshotService.takeSnapshot(LocalDate.now()));
+    }
+}
@@ -1,7 +1,11 @@
 package com.example.loanapp.controllers;
 
 import com.example.loanapp.DTO.LoanDTO;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Service.LoanBulkService;
 import com.example.loanapp.Service.LoanService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -11,7 +15,9 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.math.BigDecimal;
 import java.util.Map;
 
 @Slf4j
@@ -20,7 +26,15 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class LoanController {
 
+    // ?view=summary returns LoanDTO.ListItem rows without the repayment schedule
+    private static final String VIEW_SUMMARY = "summary";
+
+    // Hit rate = hit / (hit + miss), see /actuator/metrics/loan.detail.etag
+    private static final String DETAIL_ETAG_METRIC = "loan.detail.etag";
+
     private final LoanService loanService;
+    private final LoanBulkService loanBulkService;
+    private final MeterRegistry meterRegistry;
 
     // --- 👤 User Endpoints ---
 
@@ -34,12 +48,30 @@ public class LoanController {
         return ResponseEntity.ok(loanService.createLoan(userDetails.getUsername(), request));
     }
 
+    /**
+     * Prices a loan without applying. creditScore defaults to the caller's own score.
+     */
+    @GetMapping("/quote")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<LoanDTO.Quote> quoteLoan(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam BigDecimal amount,
+            @RequestParam Integer termMonths,
+            @RequestParam(required = false) Integer creditScore
+    ) {
+        return ResponseEntity.ok(loanService.quoteLoan(userDetails.getUsername(), amount, termMonths, creditScore));
+    }
+
     @GetMapping("/my-loans")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<Page<LoanDTO.Response>> getMyLoans(
+    public ResponseEntity<Page<?>> getMyLoans(
             @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(defaultValue = "full") String view,
             Pageable pageable
     ) {
+        if (VIEW_SUMMARY.equalsIgnoreCase(view)) {
+            return ResponseEntity.ok(loanService.getUserLoanItems(userDetails.getUsername(), pageable));
+        }
         return ResponseEntity.ok(loanService.getUserLoans(userDetails.getUsername(), pageable));
     }
 
@@ -62,18 +94,59 @@ public class LoanController {
      */
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN', 'LOAN_OFFICER')")
-    public ResponseEntity<LoanDTO.Response> getLoanDetails(@PathVariable String id) {
-        return ResponseEntity.ok(loanService.getLoanById(id));
+    public ResponseEntity<LoanDTO.Response> getLoanDetails(@PathVariable String id, WebRequest request) {
+        // Dashboard polls send If-None-Match; unchanged loans get a 304 without building the DTO
+        String eTag = loanService.getLoanETag(id);
+        if (request.checkNotModified(eTag)) {
+            meterRegistry.counter(DETAIL_ETAG_METRIC, "result", "hit").increment();
+            return null;
+        }
+        meterRegistry.counter(DETAIL_ETAG_METRIC, "result", "miss").increment();
+        return ResponseEntity.ok().eTag(eTag).body(loanService.getLoanById(id));
     }
 
     // --- 🛠️ Admin/Officer Endpoints ---
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'LOAN_OFFICER')")
-    public ResponseEntity<Page<LoanDTO.Response>> getAllLoans(Pageable pageable) {
+    public ResponseEntity<Page<?>> getAllLoans(
+            @RequestParam(defaultValue = "full") String view,
+            Pageable pageable
+    ) {
+        if (VIEW_SUMMARY.equalsIgnoreCase(view)) {
+            return ResponseEntity.ok(loanService.getAllLoanItems(pageable));
+        }
         return ResponseEntity.ok(loanService.getAllLoans(pageable));
     }
 
+    /**
+     * Multi-criteria search, e.g. ?status=PENDING&minAmount=5000&appliedFrom=2024-01-01&borrower=jane
+     */
+    @GetMapping("/search")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LOAN_OFFICER')")
+    public ResponseEntity<Page<LoanDTO.Response>> searchLoans(
+            LoanDTO.SearchCriteria criteria,
+            Pageable pageable
+    ) {
+        return ResponseEntity.ok(loanService.searchLoans(criteria, pageable));
+    }
+
+    /**
+     * Keyset-paginated listing. Pass the returned nextCursor to fetch the following page.
+     * The total count is skipped unless includeTotal=true.
+     */
+    @GetMapping("/cursor")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LOAN_OFFICER')")
+    public ResponseEntity<LoanDTO.CursorPage> getLoansByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) Loan.LoanStatus status,
+            @RequestParam(required = false) Loan.LoanPurpose purpose,
+            @RequestParam(defaultValue = "false") boolean includeTotal
+    ) {
+        return ResponseEntity.ok(loanService.getLoansByCursor(cursor, size, status, purpose, includeTotal));
+    }
+
     @PutMapping("/{id}/approve")
     @PreAuthorize("hasAnyRole('ADMIN', 'LOAN_OFFICER')")
     public ResponseEntity<LoanDTO.Response> approveLoan(
@@ -102,6 +175,19 @@ public class LoanController {
         return ResponseEntity.ok(loanService.rejectLoan(id, adminId, reason));
     }
 
+    /**
+     * Applies approve / reject / disburse to many loans at once and reports a result per loan.
+     */
+    @PutMapping("/bulk")
+    @PreAuthorize("hasAnyRole('ADMIN', 'LOAN_OFFICER')")
+    public ResponseEntity<LoanDTO.BulkActionResponse> bulkAction(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @Valid @RequestBody LoanDTO.BulkActionRequest request
+    ) {
+        log.info("Admin {} requested bulk {}", userDetails.getUsername(), request.getAction());
+        return ResponseEntity.ok(loanBulkService.process(request, userDetails.getUsername()));
+    }
+
     @PutMapping("/{id}/disburse")
     @PreAuthorize("hasAnyRole('ADMIN', 'LOAN_OFFICER')")
     public ResponseEntity<LoanDTO.Response> disburseLoan(@PathVariable String id) {
@@ -1,14 +1,23 @@
 package com.example.loanapp.controllers;
 
+import com.example.loanapp.DTO.LoanDTO;
+import com.example.loanapp.DTO.MpesaDTO;
 import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Exception.PaymentGatewayBusyException;
+import com.example.loanapp.Exception.PaymentInProgressException;
+import com.example.loanapp.Service.MpesaCallbackConsumer;
 import com.example.loanapp.Service.RepaymentService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.net.URI;
 import java.util.Map;
 
 @Slf4j
@@ -18,6 +27,7 @@ import java.util.Map;
 public class RepaymentController {
 
     private final RepaymentService repaymentService;
+    private final MpesaCallbackConsumer mpesaCallbackConsumer;
 
     /**
      * Processes a payment for a specific installment.
@@ -31,10 +41,13 @@ public class RepaymentController {
 
             String method = request.getOrDefault("paymentMethod", "WALLET");
 
-            // This calls the service which should initiate the STK Push if method is MPESA
+            // M-Pesa payments come back PENDING_PUSH; the STK push is sent after commit
             Repayment updated = repaymentService.processPayment(id, method);
 
-            return ResponseEntity.ok(updated);
+            return paymentResponse(updated);
+        } catch (PaymentGatewayBusyException | PaymentInProgressException | OptimisticLockingFailureException e) {
+            // 503 + Retry-After, 409 PAYMENT_IN_PROGRESS and 409 CONCURRENT_UPDATE from GlobalExceptionHandler
+            throw e;
         } catch (Exception e) {
             log.error("PAYMENT ERROR: {}", e.getMessage());
             // Returning a 400 with the actual error message helps frontend debugging
@@ -55,7 +68,9 @@ public class RepaymentController {
             // Calls new service method for flexible repayment
             Repayment repayment = repaymentService.processFlexiblePayment(loanId, amount, method);
 
-            return ResponseEntity.ok(repayment);
+            return paymentResponse(repayment);
+        } catch (PaymentGatewayBusyException | PaymentInProgressException | OptimisticLockingFailureException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Flexible repayment error: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -63,37 +78,45 @@ public class RepaymentController {
         }
     }
 
+    /**
+     * Payment progress, polled by the client after a 202 from the pay endpoints.
+     * Borrowers can only poll their own repayments; admins and loan officers can poll any.
+     */
+    @GetMapping("/{id}/status")
+    public ResponseEntity<LoanDTO.PaymentStatus> getPaymentStatus(
+            @PathVariable String id,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        boolean staff = userDetails.getAuthorities().stream()
+                .anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()) || "ROLE_LOAN_OFFICER".equals(a.getAuthority()));
+        return ResponseEntity.ok(repaymentService.getPaymentStatus(id, userDetails.getUsername(), staff));
+    }
+
+    private static ResponseEntity<?> paymentResponse(Repayment repayment) {
+        if (repayment.getMpesaPushStatus() == Repayment.MpesaPushStatus.PENDING_PUSH) {
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/repayments/" + repayment.getId() + "/status"))
+                    .body(repayment);
+        }
+        return ResponseEntity.ok(repayment);
+    }
 
     /**
      * M-Pesa Callback Endpoint
      * SecurityConfig permits this for PUBLIC access so Safaricom can hit it.
+     * Only validates and records the callback; MpesaCallbackConsumer applies it.
      */
     @PostMapping("/mpesa-callback")
-    public ResponseEntity<?> handleMpesaCallback(@RequestBody Map<String, Object> payload) {
-        try {
-            log.info("M-Pesa Callback Received: {}", payload);
-
-            Map<String, Object> body = (Map<String, Object>) payload.get("Body");
-            Map<String, Object> stkCallback = (Map<String, Object>) body.get("stkCallback");
-
-            Integer resultCode = (Integer) stkCallback.get("ResultCode");
-            String checkoutRequestId = (String) stkCallback.get("CheckoutRequestID");
-
-            if (resultCode == 0) {
-                log.info("STK Push Confirmed! CheckoutID: {}", checkoutRequestId);
-
-                // IMPORTANT: You need a method in your service to find the repayment
-                // by checkoutRequestId and mark it as PAID.
-                repaymentService.completeMpesaPayment(checkoutRequestId);
-            } else {
-                log.warn("STK Push Failed/Cancelled. Code: {}, Message: {}",
-                        resultCode, stkCallback.get("ResultDesc"));
-            }
+    public ResponseEntity<?> handleMpesaCallback(@RequestBody MpesaDTO.Callback payload) {
+        MpesaDTO.StkCallback stkCallback = payload.stk();
+        if (stkCallback == null || stkCallback.getCheckoutRequestId() == null
+                || stkCallback.getCheckoutRequestId().isBlank() || stkCallback.getResultCode() == null) {
+            log.warn("Rejected malformed M-Pesa callback");
+            return ResponseEntity.badRequest().body(Map.of("ResultCode", 1, "ResultDesc", "Malformed callback"));
+        }
 
-            return ResponseEntity.ok("Callback Processed");
-        } catch (Exception e) {
-            log.error("Callback Processing Error: {}", e.getMessage());
-            return ResponseEntity.internalServerError().build();
+        if (!mpesaCallbackConsumer.accept(stkCallback)) {
+            log.info("Duplicate M-Pesa callback for CheckoutID: {}", stkCallback.getCheckoutRequestId());
         }
+        return ResponseEntity.ok(Map.of("ResultCode", 0, "ResultDesc", "Accepted"));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,18 @@
+-- Indexes JPA @Index cannot express. Runs after Hibernate's ddl-auto
+-- (spring.jpa.defer-datasource-initialization), so every statement must be idempotent.
+
+-- Borrower prefix search: lower(email|name) LIKE 'abc%'
+CREATE INDEX IF NOT EXISTS idx_users_lower_email_prefix ON users (lower(email) text_pattern_ops);
+CREATE INDEX IF NOT EXISTS idx_users_lower_name_prefix ON users (lower(name) text_pattern_ops);
+
+-- Officer review queue: the open applications are a small slice of the table
+CREATE INDEX IF NOT EXISTS idx_loans_open_applied_date ON loans (applied_date)
+    WHERE status IN ('PENDING', 'UNDER_REVIEW');
+
+-- Overdue job keyset walk: unpaid scheduled installments in (due_date, id) order
+CREATE INDEX IF NOT EXISTS idx_repayments_unpaid_due_date ON repayments (due_date, id)
+    WHERE status IN ('PENDING', 'OVERDUE') AND installment_number > 0;
+
+-- Stale STK push sweep: only rows still waiting for their push to be sent
+CREATE INDEX IF NOT EXISTS idx_repayments_pending_push ON repayments (updated_at)
+    WHERE mpesa_push_status = 'PENDING_PUSH';
@@ -0,0 +1,111 @@
+package com.example.loanapp;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Base for tests that need a real PostgreSQL: partial indexes, SKIP LOCKED claims, EXPLAIN
+ * plans and partitioning have no in-memory stand-in.
+ *
+ * Connects to LOANAPP_TEST_DB_URL (with LOANAPP_TEST_DB_USERNAME / LOANAPP_TEST_DB_PASSWORD)
+ * when set, otherwise starts one postgres container for the whole run. Without either the
+ * tests are skipped. Schedulers are pushed out of the way so tests drive the jobs directly,
+ * and every table is truncated before each test.
+ */
+@SpringBootTest(properties = {
+        "application.security.jwt.secret-key=dGVzdC1zZWNyZXQta2V5LWZvci1pbnRlZ3JhdGlvbi10ZXN0cy0wMTIzNDU2Nzg5",
+        "security.allowed-origins=http://localhost:5173",
+        "spring.mail.username=test",
+        "spring.mail.password=test",
+        "mpesa.consumer.key=test",
+        "mpesa.consumer.secret=test",
+        "mpesa.passkey=test",
+        "mpesa.callback.url=http://localhost/api/repayments/callback",
+        "app.snapshot.dir=target/test-snapshots",
+        "app.snapshot.cron=-",
+        "app.repayment.overdue.cron=-",
+        "app.repayment.partitions.cron=-",
+        "app.repayment.reminders.cron=-",
+        "app.outbox.purge-cron=-",
+        "app.mpesa.callbacks.purge-cron=-",
+        "app.outbox.poll-interval-ms=3600000",
+        "app.mpesa.callbacks.poll-interval-ms=3600000",
+        "app.mpesa.push.sweep-interval-ms=3600000",
+        "mpesa.token.check-interval-ms=3600000"
+})
+public abstract class PostgresIntegrationTest {
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void requirePostgres() {
+        assumeTrue(Database.available(), "No LOANAPP_TEST_DB_URL and no Docker; skipping PostgreSQL tests");
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", Database::url);
+        registry.add("spring.datasource.username", Database::username);
+        registry.add("spring.datasource.password", Database::password);
+    }
+
+    @BeforeEach
+    void truncateTables() {
+        String tables = jdbcTemplate.queryForObject(
+                "SELECT string_agg(quote_ident(c.relname), ', ') FROM pg_class c " +
+                        "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+                        "WHERE n.nspname = current_schema() AND c.relkind IN ('r', 'p') AND NOT c.relispartition",
+                String.class);
+        if (tables != null) {
+            jdbcTemplate.execute("TRUNCATE " + tables + " CASCADE");
+        }
+    }
+
+    /**
+     * One database per JVM, resolved on first use.
+     */
+    public static final class Database {
+
+        private static final String URL = System.getenv("LOANAPP_TEST_DB_URL");
+        private static PostgreSQLContainer<?> container;
+
+        private Database() {
+        }
+
+        public static synchronized boolean available() {
+            if (URL != null && !URL.isBlank()) {
+                return true;
+            }
+            if (container == null) {
+                if (!DockerClientFactory.instance().isDockerAvailable()) {
+                    return false;
+                }
+                container = new PostgreSQLContainer<>("postgres:16-alpine");
+                container.start();
+            }
+            return true;
+        }
+
+        public static String url() {
+            return container != null ? container.getJdbcUrl() : URL;
+        }
+
+        public static String username() {
+            return container != null ? container.getUsername() : System.getenv("LOANAPP_TEST_DB_USERNAME");
+        }
+
+        public static String password() {
+            return container != null ? container.getPassword() : System.getenv().getOrDefault("LOANAPP_TEST_DB_PASSWORD", "");
+        }
+    }
+}
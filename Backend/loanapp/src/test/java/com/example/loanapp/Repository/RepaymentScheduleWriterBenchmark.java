@@ -0,0 +1,91 @@
+package com.example.loanapp.Repository;
+
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Service.LoanService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Old vs new schedule insert path: JPA saveAll of Repayment entities against
+ * RepaymentScheduleWriter's single multi-row INSERT, one transaction per loan as in approveLoan.
+ *
+ * Not part of the default test run (the class name does not match surefire's includes).
+ * Run it explicitly against PostgreSQL:
+ * <pre>mvn test -Dtest=RepaymentScheduleWriterBenchmark</pre>
+ */
+class RepaymentScheduleWriterBenchmark extends PostgresIntegrationTest {
+
+    private static final int WARMUP_LOANS = 20;
+    private static final int MEASURED_LOANS = 100;
+
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RepaymentScheduleWriter scheduleWriter;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void multiRowInsertBeatsSaveAllForEveryTerm() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        User user = userRepository.save(User.builder()
+                .name("Bench Borrower").email("bench@example.com").password("x").phone("0700000002")
+                .role(User.Role.USER).build());
+
+        Consumer<Loan> saveAll = loan -> repaymentRepository.saveAll(loanService.buildRepaymentSchedule(loan));
+        Consumer<Loan> writer = loan -> scheduleWriter.writeAll(loanService.buildRepaymentSchedule(loan));
+
+        System.out.printf("%-6s %14s %14s %8s%n", "term", "saveAll ms", "writer ms", "speedup");
+        for (int term : new int[]{12, 36, 84}) {
+            run(tx, loans(user, term, WARMUP_LOANS), saveAll);
+            run(tx, loans(user, term, WARMUP_LOANS), writer);
+
+            double oldMs = run(tx, loans(user, term, MEASURED_LOANS), saveAll);
+            double newMs = run(tx, loans(user, term, MEASURED_LOANS), writer);
+            System.out.printf("%-6d %14.1f %14.1f %7.1fx%n", term, oldMs, newMs, oldMs / newMs);
+
+            assertThat(newMs).as("%d-month schedules", term).isLessThan(oldMs);
+        }
+        assertThat(repaymentRepository.count())
+                .isEqualTo(2L * (WARMUP_LOANS + MEASURED_LOANS) * (12 + 36 + 84));
+    }
+
+    private double run(TransactionTemplate tx, List<String> loanIds, Consumer<Loan> path) {
+        long start = System.nanoTime();
+        for (String id : loanIds) {
+            tx.executeWithoutResult(status -> path.accept(loanRepository.findById(id).orElseThrow()));
+        }
+        return (System.nanoTime() - start) / 1_000_000.0;
+    }
+
+    private List<String> loans(User user, int term, int count) {
+        List<Loan> loans = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            loans.add(Loan.builder()
+                    .user(user).amount(BigDecimal.valueOf(50_000)).termMonths(term)
+                    .purpose(Loan.LoanPurpose.PERSONAL).status(Loan.LoanStatus.APPROVED)
+                    .interestRate(BigDecimal.valueOf(12)).appliedDate(LocalDate.now())
+                    .totalRepaid(BigDecimal.ZERO).build());
+        }
+        return loanRepository.saveAll(loans).stream().map(Loan::getId).toList();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.Exception.LoanProcessingException;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.UserLoanSummaryRepository;
+import com.example.loanapp.Repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActiveLoanLimitTests extends PostgresIntegrationTest {
+
+    private static final int THREADS = 12;
+
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserLoanSummaryRepository summaryRepository;
+
+    @Test
+    void parallelApprovalsForOneUserStopAtTheActiveLoanLimit() throws Exception {
+        User user = userRepository.save(User.builder()
+                .name("Racing Borrower").email("race@example.com").password("x").phone("0700000001")
+                .role(User.Role.USER).build());
+        List<String> loanIds = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            loanIds.add(loanRepository.save(Loan.builder()
+                    .user(user).amount(BigDecimal.valueOf(5000)).termMonths(12)
+                    .purpose(Loan.LoanPurpose.PERSONAL).status(Loan.LoanStatus.PENDING)
+                    .interestRate(BigDecimal.valueOf(12)).monthlyPayment(new BigDecimal("444.24"))
+                    .appliedDate(LocalDate.now()).totalRepaid(BigDecimal.ZERO).build()).getId());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (String loanId : loanIds) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return loanService.approveLoan(loanId, "officer-1", null);
+                }));
+            }
+            start.countDown();
+
+            int approved = 0;
+            int rejectedByLimit = 0;
+            for (Future<?> result : results) {
+                try {
+                    result.get(60, TimeUnit.SECONDS);
+                    approved++;
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(LoanProcessingException.class)
+                            .hasMessageContaining("Maximum limit");
+                    rejectedByLimit++;
+                }
+            }
+
+            assertThat(approved).isEqualTo(3);
+            assertThat(rejectedByLimit).isEqualTo(THREADS - 3);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(loanRepository.countByUserIdAndStatusIn(user.getId(), UserLoanSummaryService.ACTIVE_STATUSES))
+                .isEqualTo(3);
+        assertThat(summaryRepository.findById(user.getId()).orElseThrow().getActiveLoans()).isEqualTo(3);
+    }
+}
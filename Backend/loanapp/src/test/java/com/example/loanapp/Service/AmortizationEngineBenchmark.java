@@ -0,0 +1,100 @@
+package com.example.loanapp.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Monthly-payment cost across the pricing grid: the pre-engine BigDecimal formula
+ * (pow + divide on every call) against the engine's cached BigDecimal and cents paths.
+ *
+ * Not part of the default test run (the class name does not match surefire's includes):
+ * <pre>mvn test -Dtest=AmortizationEngineBenchmark</pre>
+ */
+class AmortizationEngineBenchmark {
+
+    private static final int[] RATES = {8, 10, 12, 14};
+    private static final long[] PRINCIPALS = {1_000_00L, 12_345_67L, 100_000_00L, 999_999_99L, 5_000_000_00L};
+    private static final int ROUNDS = 100;
+
+    private final AmortizationEngine engine = new AmortizationEngine();
+
+    @Test
+    void cachedFactorsBeatTheLegacyFormula() {
+        // Warm-up fills the factor cache and lets the JIT settle
+        for (int i = 0; i < 5; i++) {
+            legacyGrid();
+            engineGrid();
+            centsGrid();
+        }
+
+        double legacyNs = time(this::legacyGrid);
+        double engineNs = time(this::engineGrid);
+        double centsNs = time(this::centsGrid);
+
+        System.out.printf("%-22s %10s%n", "path", "ns/op");
+        System.out.printf("%-22s %10.0f%n", "legacy BigDecimal", legacyNs);
+        System.out.printf("%-22s %10.0f%n", "engine BigDecimal", engineNs);
+        System.out.printf("%-22s %10.0f%n", "engine cents", centsNs);
+
+        assertThat(engineNs).isLessThan(legacyNs);
+        assertThat(centsNs).isLessThan(engineNs);
+    }
+
+    private double time(Runnable grid) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            grid.run();
+        }
+        return (System.nanoTime() - start) / (double) (ROUNDS * RATES.length * 73 * PRINCIPALS.length);
+    }
+
+    private long legacyGrid() {
+        long sink = 0;
+        for (int rate : RATES) {
+            for (int months = 12; months <= 84; months++) {
+                for (long cents : PRINCIPALS) {
+                    sink += legacyMonthlyPayment(BigDecimal.valueOf(cents, 2), BigDecimal.valueOf(rate), months).unscaledValue().longValue();
+                }
+            }
+        }
+        return sink;
+    }
+
+    private long engineGrid() {
+        long sink = 0;
+        for (int rate : RATES) {
+            BigDecimal annualRate = BigDecimal.valueOf(rate);
+            for (int months = 12; months <= 84; months++) {
+                for (long cents : PRINCIPALS) {
+                    sink += engine.monthlyPayment(BigDecimal.valueOf(cents, 2), annualRate, months).unscaledValue().longValue();
+                }
+            }
+        }
+        return sink;
+    }
+
+    private long centsGrid() {
+        long sink = 0;
+        for (int rate : RATES) {
+            BigDecimal annualRate = BigDecimal.valueOf(rate);
+            for (int months = 12; months <= 84; months++) {
+                for (long cents : PRINCIPALS) {
+                    sink += engine.monthlyPaymentCents(cents, annualRate, months);
+                }
+            }
+        }
+        return sink;
+    }
+
+    // Same reference formula as AmortizationEngineTests
+    private static BigDecimal legacyMonthlyPayment(BigDecimal principal, BigDecimal annualRate, int months) {
+        BigDecimal monthlyRate = annualRate.divide(BigDecimal.valueOf(1200), 10, RoundingMode.HALF_UP);
+        BigDecimal factor = BigDecimal.ONE.add(monthlyRate).pow(months);
+        return principal.multiply(monthlyRate.multiply(factor))
+                .divide(factor.subtract(BigDecimal.ONE), 2, RoundingMode.HALF_UP);
+    }
+}
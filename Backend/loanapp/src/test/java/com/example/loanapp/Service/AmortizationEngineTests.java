@@ -0,0 +1,68 @@
+package com.example.loanapp.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AmortizationEngineTests {
+
+    private static final int[] RATES = {8, 10, 12, 14};
+    private static final long[] PRINCIPALS = {1_000_00L, 12_345_67L, 100_000_00L, 999_999_99L, 5_000_000_00L};
+
+    private final AmortizationEngine engine = new AmortizationEngine();
+
+    @Test
+    void monthlyPaymentMatchesLegacyFormulaAcrossRateGrid() {
+        for (int rate : RATES) {
+            for (int months = 12; months <= 84; months++) {
+                for (long cents : PRINCIPALS) {
+                    BigDecimal principal = BigDecimal.valueOf(cents, 2);
+                    BigDecimal annualRate = BigDecimal.valueOf(rate);
+                    BigDecimal expected = legacyMonthlyPayment(principal, annualRate, months);
+
+                    assertThat(engine.monthlyPayment(principal, annualRate, months))
+                            .as("%s @ %s%% over %d months", principal, rate, months)
+                            .isEqualByComparingTo(expected);
+                    assertThat(engine.monthlyPaymentCents(cents, annualRate, months))
+                            .as("%s cents @ %s%% over %d months", cents, rate, months)
+                            .isEqualTo(expected.movePointRight(2).longValueExact());
+                }
+            }
+        }
+    }
+
+    @Test
+    void scheduleSplitsPrincipalAndInterestAndEndsAtZero() {
+        BigDecimal principal = new BigDecimal("250000.00");
+        List<AmortizationEngine.Installment> schedule =
+                engine.schedule(principal, BigDecimal.valueOf(12), 36, LocalDate.of(2024, 1, 31));
+
+        assertThat(schedule).hasSize(36);
+        assertThat(schedule.get(0).getDueDate()).isEqualTo(LocalDate.of(2024, 2, 29));
+        assertThat(schedule.get(35).getBalance()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(schedule.stream().map(AmortizationEngine.Installment::getPrincipal)
+                .reduce(BigDecimal.ZERO, BigDecimal::add)).isEqualByComparingTo(principal);
+
+        BigDecimal payment = engine.monthlyPayment(principal, BigDecimal.valueOf(12), 36);
+        for (AmortizationEngine.Installment i : schedule.subList(0, 35)) {
+            assertThat(i.getPayment()).isEqualByComparingTo(payment);
+            assertThat(i.getPrincipal().add(i.getInterest())).isEqualByComparingTo(i.getPayment());
+        }
+        // Rounding drift is absorbed by the final installment
+        assertThat(schedule.get(35).getPayment().subtract(payment).abs())
+                .isLessThanOrEqualTo(new BigDecimal("0.36"));
+    }
+
+    // The pre-engine implementation from LoanService, kept as the reference
+    private static BigDecimal legacyMonthlyPayment(BigDecimal principal, BigDecimal annualRate, int months) {
+        BigDecimal monthlyRate = annualRate.divide(BigDecimal.valueOf(1200), 10, RoundingMode.HALF_UP);
+        BigDecimal factor = BigDecimal.ONE.add(monthlyRate).pow(months);
+        return principal.multiply(monthlyRate.multiply(factor))
+                .divide(factor.subtract(BigDecimal.ONE), 2, RoundingMode.HALF_UP);
+    }
+}
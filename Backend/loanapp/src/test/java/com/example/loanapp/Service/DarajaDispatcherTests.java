@@ -0,0 +1,109 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Exception.PaymentGatewayBusyException;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Request;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Admission control against a local HTTP server: one call in flight plus one queued.
+ */
+class DarajaDispatcherTests {
+
+    private SimpleMeterRegistry meterRegistry;
+    private DarajaDispatcher dispatcher;
+    private HttpServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new DarajaDispatcher(meterRegistry, 1, 1, 1000, 1000, 2000, 7);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void reserveFailsFastOnceInFlightPlusQueuedIsFull() {
+        dispatcher.reserve();
+        dispatcher.reserve();
+
+        assertThatThrownBy(dispatcher::reserve)
+                .isInstanceOf(PaymentGatewayBusyException.class)
+                .satisfies(e -> assertThat(((PaymentGatewayBusyException) e).getRetryAfterSeconds()).isEqualTo(7));
+        assertThat(meterRegistry.get("daraja.rejected").counter().count()).isEqualTo(1);
+        assertThat(reserved()).isEqualTo(2);
+    }
+
+    @Test
+    void releasingTwiceFreesOneSlot() {
+        DarajaDispatcher.Permit first = dispatcher.reserve();
+        dispatcher.reserve();
+
+        first.release();
+        first.release();
+
+        assertThat(reserved()).isEqualTo(1);
+        dispatcher.reserve();
+        assertThatThrownBy(dispatcher::reserve).isInstanceOf(PaymentGatewayBusyException.class);
+    }
+
+    @Test
+    void finishedCallReleasesItsPermit() throws Exception {
+        CompletableFuture<String> call = dispatcher.enqueue(dispatcher.reserve(), request("/"),
+                response -> Objects.requireNonNull(response.body()).string());
+
+        assertThat(call.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+        assertThat(reserved()).isZero();
+    }
+
+    @Test
+    void failedCallAndFailingHandlerReleaseTheirPermits() {
+        CompletableFuture<String> rejected = dispatcher.enqueue(dispatcher.reserve(), request("/"), response -> {
+            throw new IllegalStateException("Invalid Access Token");
+        });
+        assertThatThrownBy(() -> rejected.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(reserved()).isZero();
+
+        server.stop(0);
+        CompletableFuture<String> unreachable = dispatcher.enqueue(dispatcher.reserve(), request("/"),
+                response -> "unexpected");
+
+        assertThatThrownBy(() -> unreachable.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IOException.class);
+        assertThat(reserved()).isZero();
+    }
+
+    private Request request(String path) {
+        return new Request.Builder().url("http://127.0.0.1:" + server.getAddress().getPort() + path).build();
+    }
+
+    private double reserved() {
+        return meterRegistry.get("daraja.reserved").gauge().value();
+    }
+}
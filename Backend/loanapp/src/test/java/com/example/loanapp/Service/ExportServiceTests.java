@@ -0,0 +1,91 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.ExportDTO;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExportServiceTests {
+
+    private final LoanRepository loanRepository = mock(LoanRepository.class);
+    private final ExportService exportService = new ExportService(loanRepository, mock(RepaymentRepository.class),
+            new ObjectMapper(), mock(PlatformTransactionManager.class));
+
+    @Test
+    void csvQuotesOnlyTheFieldsThatNeedIt() {
+        when(loanRepository.streamExportRows()).thenAnswer(inv -> Stream.of(
+                loan("loan-1", "Plain Name", new BigDecimal("1E+3")),
+                loan("loan-2", "Doe, \"JJ\"\r\nJunior", new BigDecimal("250.50"))));
+
+        String csv = export(ExportDTO.Format.CSV);
+
+        List<String> lines = List.of(csv.split("\r\n", -1));
+        assertThat(lines.get(0)).isEqualTo("id,userId,userEmail,userName,amount,termMonths,purpose,status,"
+                + "interestRate,monthlyPayment,totalRepaid,creditScore,appliedDate,reviewedDate,disbursedDate,"
+                + "dueDate,completedDate");
+        // Plain decimals, enum names and empty fields for nulls
+        assertThat(lines.get(1)).isEqualTo("loan-1,user-1,a@example.com,Plain Name,1000,12,PERSONAL,REPAYING,"
+                + "12,,0,,2024-01-05,,,,");
+        // Commas, quotes and line breaks are quoted, with embedded quotes doubled
+        assertThat(csv).contains(",\"Doe, \"\"JJ\"\"\r\nJunior\",250.50,");
+        assertThat(csv).endsWith("\r\n");
+    }
+
+    @Test
+    void ndjsonWritesOneTypedObjectPerLine() throws Exception {
+        when(loanRepository.streamExportRows()).thenAnswer(inv -> Stream.of(
+                loan("loan-1", "Line\nBreak", new BigDecimal("1000.00")),
+                loan("loan-2", "Second", new BigDecimal("250.50"))));
+
+        String ndjson = export(ExportDTO.Format.NDJSON);
+
+        String[] lines = ndjson.split("\n");
+        assertThat(lines).hasSize(2);
+        JsonNode first = new ObjectMapper().readTree(lines[0]);
+        assertThat(first.get("userName").asText()).isEqualTo("Line\nBreak");
+        assertThat(first.get("amount").isNumber()).isTrue();
+        assertThat(first.get("amount").decimalValue()).isEqualByComparingTo("1000.00");
+        assertThat(first.get("status").asText()).isEqualTo("REPAYING");
+        assertThat(first.get("appliedDate").asText()).isEqualTo("2024-01-05");
+        assertThat(first.get("creditScore").isNull()).isTrue();
+        assertThat(new ObjectMapper().readTree(lines[1]).get("id").asText()).isEqualTo("loan-2");
+    }
+
+    private String export(ExportDTO.Format format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(exportService.exportLoans(format, out)).isEqualTo(2);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static ExportDTO.LoanRow loan(String id, String userName, BigDecimal amount) {
+        ExportDTO.LoanRow row = mock(ExportDTO.LoanRow.class);
+        when(row.getId()).thenReturn(id);
+        when(row.getUserId()).thenReturn("user-1");
+        when(row.getUserEmail()).thenReturn("a@example.com");
+        when(row.getUserName()).thenReturn(userName);
+        when(row.getAmount()).thenReturn(amount);
+        when(row.getTermMonths()).thenReturn(12);
+        when(row.getPurpose()).thenReturn(Loan.LoanPurpose.PERSONAL);
+        when(row.getStatus()).thenReturn(Loan.LoanStatus.REPAYING);
+        when(row.getInterestRate()).thenReturn(BigDecimal.valueOf(12));
+        when(row.getTotalRepaid()).thenReturn(BigDecimal.ZERO);
+        when(row.getCreditScore()).thenReturn(null);
+        when(row.getAppliedDate()).thenReturn(LocalDate.of(2024, 1, 5));
+        return row;
+    }
+}
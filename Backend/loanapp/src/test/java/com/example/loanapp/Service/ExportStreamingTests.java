@@ -0,0 +1,110 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.ExportDTO;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import com.example.loanapp.Repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exports on PostgreSQL with more rows than one fetch. The output stream looks at
+ * pg_cursors on the export's own connection the first time rows reach it, which is only
+ * non-empty while the driver is reading through a server-side cursor.
+ */
+class ExportStreamingTests extends PostgresIntegrationTest {
+
+    private static final int ROWS = 2500;
+
+    @Autowired
+    private ExportService exportService;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void loansStreamThroughACursorInBothFormats() {
+        loans();
+
+        for (ExportDTO.Format format : ExportDTO.Format.values()) {
+            CursorWatchingStream out = new CursorWatchingStream();
+
+            assertThat(exportService.exportLoans(format, out)).as("%s", format).isEqualTo(ROWS);
+
+            assertThat(out.cursors).as("%s", format).singleElement().asString().containsIgnoringCase("from loans");
+            assertThat(lines(out, format)).as("%s", format).isEqualTo(ROWS);
+        }
+    }
+
+    @Test
+    void repaymentsStreamThroughACursorInBothFormats() {
+        Loan loan = loans().get(0);
+        List<Repayment> repayments = IntStream.rangeClosed(1, ROWS)
+                .mapToObj(n -> Repayment.builder()
+                        .loan(loan).installmentNumber(n).amount(new BigDecimal("10.00"))
+                        .dueDate(LocalDate.now().plusDays(n)).status(Repayment.RepaymentStatus.PENDING).build())
+                .toList();
+        repaymentRepository.saveAll(repayments);
+
+        for (ExportDTO.Format format : ExportDTO.Format.values()) {
+            CursorWatchingStream out = new CursorWatchingStream();
+
+            assertThat(exportService.exportRepayments(format, out)).as("%s", format).isEqualTo(ROWS);
+
+            assertThat(out.cursors).as("%s", format).singleElement().asString().containsIgnoringCase("from repayments");
+            assertThat(lines(out, format)).as("%s", format).isEqualTo(ROWS);
+        }
+    }
+
+    private static long lines(ByteArrayOutputStream out, ExportDTO.Format format) {
+        long lines = out.toString(StandardCharsets.UTF_8).lines().count();
+        // CSV has a header row
+        return format == ExportDTO.Format.CSV ? lines - 1 : lines;
+    }
+
+    private List<Loan> loans() {
+        User user = userRepository.save(User.builder()
+                .name("Export Borrower").email("export@example.com").password("x").phone("0700000011")
+                .role(User.Role.USER).build());
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            loans.add(Loan.builder()
+                    .user(user).amount(BigDecimal.valueOf(1000 + i)).termMonths(12)
+                    .purpose(Loan.LoanPurpose.PERSONAL).status(Loan.LoanStatus.PENDING)
+                    .interestRate(BigDecimal.valueOf(12)).appliedDate(LocalDate.now())
+                    .totalRepaid(BigDecimal.ZERO).build());
+        }
+        return loanRepository.saveAll(loans);
+    }
+
+    // Runs in the export's transaction, so the query shares its connection and session
+    private final class CursorWatchingStream extends ByteArrayOutputStream {
+        private List<String> cursors;
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (cursors == null) {
+                cursors = jdbcTemplate.queryForList("SELECT statement FROM pg_cursors "
+                        + "WHERE statement NOT LIKE '%pg_cursors%'", String.class);
+            }
+            super.write(b, off, len);
+        }
+    }
+}
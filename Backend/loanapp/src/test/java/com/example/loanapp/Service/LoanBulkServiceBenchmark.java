@@ -0,0 +1,90 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.LoanDTO;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Morning-queue throughput: approving pending loans one approveLoan call at a time
+ * against one PUT /api/loans/bulk pass through LoanBulkService. Only correctness is asserted;
+ * the gap depends mostly on commit cost versus per-statement round trips.
+ *
+ * Not part of the default test run (the class name does not match surefire's includes).
+ * Run it explicitly against PostgreSQL:
+ * <pre>mvn test -Dtest=LoanBulkServiceBenchmark</pre>
+ */
+class LoanBulkServiceBenchmark extends PostgresIntegrationTest {
+
+    private static final int WARMUP_LOANS = 50;
+    private static final int MEASURED_LOANS = 300;
+
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private LoanBulkService loanBulkService;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void bulkApprovalThroughputAgainstSingleCalls() {
+        approveOneByOne(pendingLoans("warm-single", WARMUP_LOANS));
+        approveInBulk(pendingLoans("warm-bulk", WARMUP_LOANS));
+
+        double singleMs = approveOneByOne(pendingLoans("single", MEASURED_LOANS));
+        double bulkMs = approveInBulk(pendingLoans("bulk", MEASURED_LOANS));
+
+        System.out.printf("%-8s %10s %10s%n", "path", "ms", "loans/s");
+        System.out.printf("%-8s %10.1f %10.0f%n", "single", singleMs, MEASURED_LOANS * 1000 / singleMs);
+        System.out.printf("%-8s %10.1f %10.0f%n", "bulk", bulkMs, MEASURED_LOANS * 1000 / bulkMs);
+
+        assertThat(loanRepository.countByStatus(Loan.LoanStatus.APPROVED))
+                .isEqualTo(2L * (WARMUP_LOANS + MEASURED_LOANS));
+    }
+
+    private double approveOneByOne(List<String> loanIds) {
+        long start = System.nanoTime();
+        for (String id : loanIds) {
+            loanService.approveLoan(id, "officer-1", null);
+        }
+        return (System.nanoTime() - start) / 1_000_000.0;
+    }
+
+    private double approveInBulk(List<String> loanIds) {
+        long start = System.nanoTime();
+        LoanDTO.BulkActionResponse response = loanBulkService.process(LoanDTO.BulkActionRequest.builder()
+                .loanIds(loanIds).action(LoanDTO.BulkAction.APPROVE).build(), "officer-1");
+        double elapsed = (System.nanoTime() - start) / 1_000_000.0;
+        assertThat(response.getFailed()).isZero();
+        return elapsed;
+    }
+
+    // One borrower per loan so the active-loan limit never interferes
+    private List<String> pendingLoans(String prefix, int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = userRepository.save(User.builder()
+                    .name("Borrower " + i).email(prefix + "-" + i + "@example.com").password("x")
+                    .phone("0700000000").role(User.Role.USER).build());
+            ids.add(loanRepository.save(Loan.builder()
+                    .user(user).amount(BigDecimal.valueOf(20_000)).termMonths(24)
+                    .purpose(Loan.LoanPurpose.PERSONAL).status(Loan.LoanStatus.PENDING)
+                    .interestRate(BigDecimal.valueOf(12)).monthlyPayment(new BigDecimal("941.47"))
+                    .appliedDate(LocalDate.now()).totalRepaid(BigDecimal.ZERO).build()).getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.Exception.GlobalExceptionHandler;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import com.example.loanapp.Repository.UserLoanSummaryRepository;
+import com.example.loanapp.Repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Optimistic locking on Loan under real concurrency. Payments commute and are retried until
+ * they all land; officer actions do not, so the loser gets a 409 CONCURRENT_UPDATE.
+ */
+class LoanConcurrencyTests extends PostgresIntegrationTest {
+
+    private static final int PAYERS = 8;
+
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserLoanSummaryRepository summaryRepository;
+    @Autowired
+    private UserLoanSummaryService userLoanSummaryService;
+    @Autowired
+    private RepaymentScheduleService repaymentScheduleService;
+    @Autowired
+    private LoanStateMachine loanStateMachine;
+    @Autowired
+    private OutboxService outboxService;
+    @Autowired
+    private MpesaService mpesaService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void concurrentPaymentsOnOneLoanAllLandWithAnExactTotal() throws Exception {
+        Loan loan = loan(Loan.LoanStatus.DISBURSED);
+        userLoanSummaryService.getSummary(loan.getUser().getId());
+        // Enough attempts that eight payers on one row never run out
+        RepaymentService repaymentService = new RepaymentService(repaymentRepository, loanRepository, mpesaService,
+                userLoanSummaryService, repaymentScheduleService, loanStateMachine,
+                new OptimisticRetry(transactionManager, 50, 5), outboxService, transactionManager, 300);
+
+        List<Outcome> outcomes = race(PAYERS,
+                () -> repaymentService.processFlexiblePayment(loan.getId(), new BigDecimal("100.00"), "WALLET"));
+
+        assertThat(outcomes).allSatisfy(o -> assertThat(o.error()).isNull());
+        Loan paid = loanRepository.findById(loan.getId()).orElseThrow();
+        assertThat(paid.getTotalRepaid()).isEqualByComparingTo("800.00");
+        assertThat(paid.getStatus()).isEqualTo(Loan.LoanStatus.REPAYING);
+        assertThat(repaymentRepository.findAll()).hasSize(PAYERS)
+                .allSatisfy(r -> assertThat(r.getStatus()).isEqualTo(Repayment.RepaymentStatus.PAID));
+        assertThat(summaryRepository.findById(loan.getUser().getId()).orElseThrow().getTotalRepaid())
+                .isEqualByComparingTo("800.00");
+    }
+
+    @Test
+    void concurrentApprovalsLetOneWinAndAnswerTheOther409() throws Exception {
+        Loan loan = loan(Loan.LoanStatus.PENDING);
+
+        List<Outcome> outcomes = raceWhileRowIsLocked(loan.getId(),
+                () -> loanService.approveLoan(loan.getId(), "officer-1", null));
+
+        assertOneWinnerAndOneConflict(outcomes);
+        assertThat(loanRepository.findById(loan.getId()).orElseThrow().getStatus())
+                .isEqualTo(Loan.LoanStatus.APPROVED);
+        // The loser's schedule rolled back with it
+        assertThat(repaymentRepository.count()).isEqualTo(12);
+        assertThat(summaryRepository.findById(loan.getUser().getId()).orElseThrow().getActiveLoans()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentDisbursementsLetOneWinAndAnswerTheOther409() throws Exception {
+        Loan loan = loan(Loan.LoanStatus.PENDING);
+        loanService.approveLoan(loan.getId(), "officer-1", null);
+
+        List<Outcome> outcomes = raceWhileRowIsLocked(loan.getId(), () -> loanService.disburseLoan(loan.getId()));
+
+        assertOneWinnerAndOneConflict(outcomes);
+        assertThat(loanRepository.findById(loan.getId()).orElseThrow().getStatus())
+                .isEqualTo(Loan.LoanStatus.DISBURSED);
+        assertThat(summaryRepository.findById(loan.getUser().getId()).orElseThrow().getActiveLoans()).isEqualTo(1);
+    }
+
+    private void assertOneWinnerAndOneConflict(List<Outcome> outcomes) {
+        assertThat(outcomes).filteredOn(o -> o.error() == null).hasSize(1);
+        Throwable loser = outcomes.stream().map(Outcome::error).filter(e -> e != null).findFirst().orElseThrow();
+        assertThat(loser).isInstanceOf(OptimisticLockingFailureException.class);
+
+        ResponseEntity<GlobalExceptionHandler.ErrorResponse> response =
+                new GlobalExceptionHandler().handleConcurrentUpdate((OptimisticLockingFailureException) loser);
+        assertThat(response.getStatusCode().value()).isEqualTo(409);
+        assertThat(response.getBody().getErrorCode()).isEqualTo("CONCURRENT_UPDATE");
+    }
+
+    /**
+     * Both calls read the loan, then queue behind a lock the test holds on its row, so neither
+     * can commit before the other has loaded the version it is about to write over.
+     */
+    private List<Outcome> raceWhileRowIsLocked(String loanId, Callable<?> action) throws Exception {
+        try (Connection holder = dataSource.getConnection()) {
+            holder.setAutoCommit(false);
+            try (PreparedStatement lock = holder.prepareStatement("SELECT 1 FROM loans WHERE id = ? FOR UPDATE")) {
+                lock.setString(1, loanId);
+                lock.executeQuery();
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(2);
+            try {
+                List<Future<Outcome>> results = List.of(pool.submit(outcomeOf(action)), pool.submit(outcomeOf(action)));
+                waitForLockWaits(2);
+                holder.commit();
+                List<Outcome> outcomes = new ArrayList<>();
+                for (Future<Outcome> result : results) {
+                    outcomes.add(result.get(30, TimeUnit.SECONDS));
+                }
+                return outcomes;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private List<Outcome> race(int threads, Callable<?> action) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Outcome>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return outcomeOf(action).call();
+                }));
+            }
+            start.countDown();
+            List<Outcome> outcomes = new ArrayList<>();
+            for (Future<Outcome> result : results) {
+                outcomes.add(result.get(60, TimeUnit.SECONDS));
+            }
+            return outcomes;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Callable<Outcome> outcomeOf(Callable<?> action) {
+        return () -> {
+            try {
+                action.call();
+                return new Outcome(null);
+            } catch (Exception e) {
+                return new Outcome(e instanceof ExecutionException ? e.getCause() : e);
+            }
+        };
+    }
+
+    private void waitForLockWaits(int expected) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            Integer waiting = jdbcTemplate.queryForObject("SELECT count(*) FROM pg_stat_activity " +
+                    "WHERE datname = current_database() AND wait_event_type = 'Lock'", Integer.class);
+            if (waiting != null && waiting >= expected) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Expected " + expected + " transactions waiting on a row lock");
+    }
+
+    private Loan loan(Loan.LoanStatus status) {
+        User user = userRepository.save(User.builder()
+                .name("Contended Borrower").email("contended-" + System.nanoTime() + "@example.com").password("x")
+                .phone("0700000009").role(User.Role.USER).build());
+        return loanRepository.save(Loan.builder()
+                .user(user).amount(BigDecimal.valueOf(12_000)).termMonths(12)
+                .purpose(Loan.LoanPurpose.PERSONAL).status(status)
+                .interestRate(BigDecimal.valueOf(12)).monthlyPayment(new BigDecimal("1066.19"))
+                .appliedDate(LocalDate.now()).totalRepaid(BigDecimal.ZERO).build());
+    }
+
+    private record Outcome(Throwable error) {
+    }
+}
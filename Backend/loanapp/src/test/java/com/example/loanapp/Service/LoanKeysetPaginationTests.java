@@ -0,0 +1,80 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.LoanDTO;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.Exception.InvalidRequestException;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoanKeysetPaginationTests extends PostgresIntegrationTest {
+
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void cursorPagesWalkEachFilterCombinationWithoutGapsOrRepeats() {
+        User user = userRepository.save(User.builder()
+                .name("Keyset Borrower").email("keyset@example.com").password("x").phone("0700000000")
+                .role(User.Role.USER).build());
+        Loan.LoanStatus[] statuses = {Loan.LoanStatus.PENDING, Loan.LoanStatus.APPROVED, Loan.LoanStatus.REJECTED};
+        Loan.LoanPurpose[] purposes = {Loan.LoanPurpose.PERSONAL, Loan.LoanPurpose.EDUCATION};
+        for (int i = 0; i < 30; i++) {
+            loanRepository.save(Loan.builder()
+                    .user(user).amount(BigDecimal.valueOf(1000 + i)).termMonths(12)
+                    .purpose(purposes[i % purposes.length]).status(statuses[i % statuses.length])
+                    .appliedDate(LocalDate.now()).totalRepaid(BigDecimal.ZERO).build());
+        }
+
+        for (Loan.LoanStatus status : new Loan.LoanStatus[]{null, Loan.LoanStatus.PENDING}) {
+            for (Loan.LoanPurpose purpose : new Loan.LoanPurpose[]{null, Loan.LoanPurpose.EDUCATION}) {
+                List<String> expected = loanRepository.findAll().stream()
+                        .filter(l -> status == null || l.getStatus() == status)
+                        .filter(l -> purpose == null || l.getPurpose() == purpose)
+                        .sorted(Comparator.comparing(Loan::getCreatedAt).thenComparing(Loan::getId).reversed())
+                        .map(Loan::getId)
+                        .toList();
+
+                List<String> walked = new ArrayList<>();
+                String cursor = null;
+                do {
+                    LoanDTO.CursorPage page = loanService.getLoansByCursor(cursor, 4, status, purpose, true);
+                    assertThat(page.getTotalElements()).isEqualTo(expected.size());
+                    page.getContent().forEach(r -> walked.add(r.getId()));
+                    cursor = page.getNextCursor();
+                } while (cursor != null);
+
+                assertThat(walked).as("status=%s purpose=%s", status, purpose).isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void malformedCursorIsRejectedAsBadInput() {
+        String badDate = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("yesterday|loan-1".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> loanService.getLoansByCursor(badDate, 10, null, null, false))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> loanService.getLoansByCursor("%%%", 10, null, null, false))
+                .isInstanceOf(InvalidRequestException.class);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.LoanDTO;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import com.example.loanapp.Repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LoanResponseAssemblerTests {
+
+    private final RepaymentRepository repaymentRepository = mock(RepaymentRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final RepaymentScheduleService scheduleService = new RepaymentScheduleService(
+            repaymentRepository, mock(LoanRepository.class), mock(UserLoanSummaryService.class),
+            new AmortizationEngine(),
+            RepaymentScheduleService.ScheduleMode.STORED);
+    private final LoanResponseAssembler assembler =
+            new LoanResponseAssembler(repaymentRepository, userRepository, scheduleService);
+
+    @Test
+    void pageOfFiftyLoansCostsOneRepaymentAndOneUserQuery() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(User.builder().id("user-" + i).name("Borrower " + i).build());
+        }
+
+        List<Loan> loans = new ArrayList<>();
+        List<Repayment> repayments = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Loan loan = Loan.builder()
+                    .id("loan-" + i)
+                    .user(users.get(i % users.size()))
+                    .amount(BigDecimal.valueOf(10000))
+                    .termMonths(12)
+                    .purpose(Loan.LoanPurpose.PERSONAL)
+                    .build();
+            loans.add(loan);
+            for (int n = 1; n <= 12; n++) {
+                repayments.add(Repayment.builder()
+                        .id(loan.getId() + "-" + n)
+                        .loan(loan)
+                        .installmentNumber(n)
+                        .amount(BigDecimal.valueOf(900))
+                        .dueDate(LocalDate.now().plusMonths(n))
+                        .build());
+            }
+        }
+
+        when(repaymentRepository.findByLoanIdInOrderByDueDateAsc(anyCollection(), any(LocalDate.class))).thenReturn(repayments);
+        when(userRepository.findAllById(any())).thenReturn(users);
+
+        Page<Loan> page = new PageImpl<>(loans, PageRequest.of(0, 50), 500);
+        Page<LoanDTO.Response> responses = assembler.toResponsePage(page);
+
+        verify(repaymentRepository, times(1)).findByLoanIdInOrderByDueDateAsc(anyCollection(), any(LocalDate.class));
+        verify(repaymentRepository, never()).findByLoanIdOrderByDueDateAsc(anyString());
+        verify(userRepository, times(1)).findAllById(any());
+
+        assertThat(responses.getTotalElements()).isEqualTo(500);
+        assertThat(responses.getContent()).hasSize(50);
+        assertThat(responses.getContent().get(7).getUserName()).isEqualTo("Borrower 2");
+        assertThat(responses.getContent().get(7).getRepayments()).hasSize(12)
+                .allMatch(r -> r.getLoanId().equals("loan-7"));
+    }
+}
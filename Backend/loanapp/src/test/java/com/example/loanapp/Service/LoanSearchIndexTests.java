@@ -0,0 +1,152 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.LoanDTO;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.PostgresIntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Proves the officer search is index-served on PostgreSQL.
+ *
+ * Each search runs through LoanService inside one transaction, and the transaction's own
+ * pg_stat_xact_* counters show which scans the page and count queries actually used. Every
+ * combination runs under both forced custom and forced generic plans, since pgjdbc
+ * switches repeated statements to server-side prepares and PostgreSQL may then keep a
+ * generic plan that cannot see the bound values.
+ *
+ * The per-transaction counters only exist per table, so the partial index check reads the
+ * cumulative per-index counter instead.
+ */
+class LoanSearchIndexTests extends PostgresIntegrationTest {
+
+    private static final int USERS = 20_000;
+    private static final int LOANS = 60_000;
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 30);
+
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void seedBook() {
+        jdbcTemplate.update("INSERT INTO users (id, name, email, password, phone, role, enabled, account_non_locked, " +
+                "credentials_non_expired, account_non_expired) " +
+                "SELECT 'u' || g, 'Borrower ' || lpad(g::text, 5, '0'), 'borrower' || lpad(g::text, 5, '0') || '@example.com', " +
+                "'x', '0700000000', 'USER', true, true, true, true FROM generate_series(1, ?) g", USERS);
+        // 2% PENDING and 1% UNDER_REVIEW, like a real book where most loans are past review
+        jdbcTemplate.update("INSERT INTO loans (id, user_id, amount, term_months, purpose, status, interest_rate, " +
+                "monthly_payment, credit_score, applied_date, due_date, created_at, updated_at, version, total_repaid, virtual_schedule) " +
+                "SELECT 'l' || g, 'u' || (1 + g % ?), 1000 + (g * 7919) % 99000, 12 + g % 73, " +
+                "(ARRAY['HOME_RENOVATION','DEBT_CONSOLIDATION','BUSINESS_EXPANSION','MEDICAL_EXPENSES','EDUCATION'," +
+                "       'VEHICLE_PURCHASE','WEDDING','TRAVEL','PERSONAL','OTHER'])[1 + g % 10], " +
+                "CASE WHEN g % 100 < 2 THEN 'PENDING' WHEN g % 100 < 3 THEN 'UNDER_REVIEW' " +
+                "     ELSE (ARRAY['APPROVED','DISBURSED','REPAYING','COMPLETED','REJECTED'])[1 + g % 5] END, " +
+                "12, 500, 300 + (g * 31) % 551, ?::date - (g % 1460), ?::date - (g % 1460) + 365 * (1 + g % 7), " +
+                "?::timestamp - make_interval(mins => g), ?::timestamp, 0, 0, false " +
+                "FROM generate_series(1, ?) g",
+                USERS, TODAY, TODAY, TODAY.atStartOfDay(), TODAY.atStartOfDay(), LOANS);
+        jdbcTemplate.execute("VACUUM ANALYZE users");
+        jdbcTemplate.execute("VACUUM ANALYZE loans");
+    }
+
+    @Test
+    void everyFilterIsIndexServedUnderCustomAndGenericPlans() {
+        Map<String, LoanDTO.SearchCriteria> cases = new LinkedHashMap<>();
+        cases.put("status", LoanDTO.SearchCriteria.builder().status(Loan.LoanStatus.PENDING).build());
+        cases.put("purpose", LoanDTO.SearchCriteria.builder().purpose(Loan.LoanPurpose.WEDDING).build());
+        cases.put("amount", LoanDTO.SearchCriteria.builder()
+                .minAmount(BigDecimal.valueOf(50_000)).maxAmount(BigDecimal.valueOf(50_500)).build());
+        cases.put("creditScore", LoanDTO.SearchCriteria.builder().minCreditScore(840).maxCreditScore(850).build());
+        cases.put("applied", LoanDTO.SearchCriteria.builder()
+                .appliedFrom(TODAY.minusDays(10)).appliedTo(TODAY).build());
+        cases.put("due", LoanDTO.SearchCriteria.builder()
+                .dueFrom(TODAY.plusDays(100)).dueTo(TODAY.plusDays(105)).build());
+        cases.put("borrower", LoanDTO.SearchCriteria.builder().borrower("borrower0004").build());
+        cases.put("status+applied", LoanDTO.SearchCriteria.builder().status(Loan.LoanStatus.UNDER_REVIEW)
+                .appliedFrom(TODAY.minusDays(30)).appliedTo(TODAY).build());
+        cases.put("status+purpose", LoanDTO.SearchCriteria.builder()
+                .status(Loan.LoanStatus.PENDING).purpose(Loan.LoanPurpose.TRAVEL).build());
+        cases.put("purpose+amount", LoanDTO.SearchCriteria.builder().purpose(Loan.LoanPurpose.EDUCATION)
+                .minAmount(BigDecimal.valueOf(20_000)).maxAmount(BigDecimal.valueOf(21_000)).build());
+        cases.put("creditScore+due", LoanDTO.SearchCriteria.builder().minCreditScore(800)
+                .dueFrom(TODAY.plusYears(2)).dueTo(TODAY.plusYears(2).plusDays(20)).build());
+        cases.put("borrower+status", LoanDTO.SearchCriteria.builder()
+                .borrower("Borrower 0012").status(Loan.LoanStatus.COMPLETED).build());
+
+        for (String planMode : List.of("force_custom_plan", "force_generic_plan")) {
+            cases.forEach((name, criteria) -> {
+                Map<String, Long> scans = search(criteria, planMode);
+                assertThat(scans.get("loans.seq")).as("%s / %s: seq scans on loans", planMode, name).isZero();
+                assertThat(scans.get("loans.idx")).as("%s / %s: index scans on loans", planMode, name).isPositive();
+                assertThat(scans.getOrDefault("users.seq", 0L)).as("%s / %s: seq scans on users", planMode, name).isZero();
+            });
+        }
+    }
+
+    @Test
+    void openReviewQueueUsesThePartialIndex() throws InterruptedException {
+        LoanDTO.SearchCriteria queue = LoanDTO.SearchCriteria.builder().status(Loan.LoanStatus.PENDING)
+                .appliedFrom(TODAY.minusDays(90)).appliedTo(TODAY).build();
+        long before = indexScans("idx_loans_open_applied_date");
+
+        Map<String, Long> scans = search(queue, "force_custom_plan");
+
+        assertThat(scans.get("loans.seq")).isZero();
+        // Per-index counters have no per-transaction view; wait for the cumulative one to flush
+        long after = before;
+        for (int i = 0; i < 50 && after == before; i++) {
+            Thread.sleep(100);
+            after = indexScans("idx_loans_open_applied_date");
+        }
+        assertThat(after).isGreaterThan(before);
+    }
+
+    @Test
+    void inlinedBorrowerPrefixIsEscaped() {
+        assertThat(loanService.searchLoans(LoanDTO.SearchCriteria.builder().borrower("x' OR '1'='1").build(),
+                PageRequest.of(0, 20)).getTotalElements()).isZero();
+        assertThat(loanService.searchLoans(LoanDTO.SearchCriteria.builder().borrower("Borrower 0000_").build(),
+                PageRequest.of(0, 20)).getTotalElements()).isZero();
+        assertThat(loanService.searchLoans(LoanDTO.SearchCriteria.builder().borrower("BORROWER00042@").build(),
+                PageRequest.of(0, 20)).getTotalElements()).isEqualTo(LOANS / USERS);
+    }
+
+    private Map<String, Long> search(LoanDTO.SearchCriteria criteria, String planMode) {
+        return new TransactionTemplate(transactionManager).execute(tx -> {
+            jdbcTemplate.execute("SET LOCAL plan_cache_mode = " + planMode);
+            // Repeat so pgjdbc's prepareThreshold (5) is crossed and server-side statements are used too
+            for (int i = 0; i < 6; i++) {
+                loanService.searchLoans(criteria, PageRequest.of(0, 20));
+            }
+            Map<String, Long> scans = new LinkedHashMap<>();
+            jdbcTemplate.query("SELECT relname, seq_scan, idx_scan FROM pg_stat_xact_user_tables " +
+                            "WHERE relname IN ('loans', 'users')",
+                    rs -> {
+                        scans.put(rs.getString(1) + ".seq", rs.getLong(2));
+                        scans.put(rs.getString(1) + ".idx", rs.getLong(3));
+                    });
+            return scans;
+        });
+    }
+
+    private long indexScans(String index) {
+        jdbcTemplate.execute("SELECT pg_stat_clear_snapshot()");
+        Long scans = jdbcTemplate.queryForObject(
+                "SELECT idx_scan FROM pg_stat_user_indexes WHERE indexrelname = ?", Long.class, index);
+        return scans != null ? scans : 0;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Loan.LoanStatus;
+import com.example.loanapp.Exception.LoanProcessingException;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoanStateMachineTests {
+
+    // Every allowed move; anything not listed must be refused
+    private static final Map<LoanStatus, Set<LoanStatus>> ALLOWED = Map.of(
+            LoanStatus.PENDING, EnumSet.of(LoanStatus.UNDER_REVIEW, LoanStatus.APPROVED, LoanStatus.REJECTED),
+            LoanStatus.UNDER_REVIEW, EnumSet.of(LoanStatus.APPROVED, LoanStatus.REJECTED),
+            LoanStatus.APPROVED, EnumSet.of(LoanStatus.DISBURSED, LoanStatus.REPAYING, LoanStatus.COMPLETED),
+            LoanStatus.DISBURSED, EnumSet.of(LoanStatus.REPAYING, LoanStatus.COMPLETED, LoanStatus.DEFAULTED),
+            LoanStatus.REPAYING, EnumSet.of(LoanStatus.REPAYING, LoanStatus.COMPLETED, LoanStatus.DEFAULTED),
+            LoanStatus.DEFAULTED, EnumSet.of(LoanStatus.REPAYING, LoanStatus.COMPLETED),
+            LoanStatus.COMPLETED, EnumSet.of(LoanStatus.COMPLETED),
+            LoanStatus.REJECTED, EnumSet.noneOf(LoanStatus.class));
+
+    private final LoanStateMachine stateMachine = new LoanStateMachine();
+
+    @Test
+    void transitionTableAllowsExactlyTheListedMoves() {
+        assertThat(ALLOWED.keySet()).containsExactlyInAnyOrder(LoanStatus.values());
+        for (LoanStatus from : LoanStatus.values()) {
+            for (LoanStatus to : LoanStatus.values()) {
+                assertThat(stateMachine.canTransition(from, to))
+                        .as("%s -> %s", from, to)
+                        .isEqualTo(ALLOWED.get(from).contains(to));
+            }
+        }
+    }
+
+    @Test
+    void refusedTransitionLeavesTheLoanUntouched() {
+        Loan loan = Loan.builder().status(LoanStatus.REJECTED).build();
+
+        assertThatThrownBy(() -> stateMachine.transition(loan, LoanStatus.APPROVED))
+                .isInstanceOf(LoanProcessingException.class)
+                .hasMessageContaining("REJECTED to APPROVED");
+        assertThat(loan.getStatus()).isEqualTo(LoanStatus.REJECTED);
+
+        Loan approved = Loan.builder().status(LoanStatus.APPROVED).build();
+        stateMachine.transition(approved, LoanStatus.DISBURSED);
+        assertThat(approved.getStatus()).isEqualTo(LoanStatus.DISBURSED);
+    }
+
+    @Test
+    void paymentsAreAcceptedWhereTheLoanCanMoveToRepayingOrCompleted() {
+        assertThat(EnumSet.allOf(LoanStatus.class)).filteredOn(stateMachine::acceptsPayment)
+                .containsExactlyInAnyOrder(LoanStatus.APPROVED, LoanStatus.DISBURSED, LoanStatus.REPAYING,
+                        LoanStatus.DEFAULTED, LoanStatus.COMPLETED);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.MpesaDTO;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.MpesaCallback;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Entity.Repayment.MpesaPushStatus;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.MpesaCallbackRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import com.example.loanapp.Repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Callback inbox on PostgreSQL. A trigger makes one repayment's update fail, which is a real
+ * database error inside that callback's transaction, not a mocked one.
+ */
+class MpesaCallbackConsumerTests extends PostgresIntegrationTest {
+
+    @Autowired
+    private MpesaCallbackConsumer mpesaCallbackConsumer;
+    @Autowired
+    private MpesaCallbackRepository callbackRepository;
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RepaymentService repaymentService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void dropTrigger() {
+        jdbcTemplate.execute("DROP TRIGGER IF EXISTS fail_repayment ON repayments");
+        jdbcTemplate.execute("DROP FUNCTION IF EXISTS fail_repayment()");
+    }
+
+    @Test
+    void duplicateCallbackIsRecordedAndAppliedOnce() {
+        String id = pushedInstallment("ws_CO_dup");
+
+        assertThat(mpesaCallbackConsumer.accept(callback("ws_CO_dup", 0))).isTrue();
+        assertThat(mpesaCallbackConsumer.accept(callback("ws_CO_dup", 0))).isFalse();
+        mpesaCallbackConsumer.poll();
+        mpesaCallbackConsumer.poll();
+
+        MpesaCallback applied = callbackRepository.findById("ws_CO_dup").orElseThrow();
+        assertThat(applied.getStatus()).isEqualTo(MpesaCallback.Status.APPLIED);
+        assertThat(applied.getAttempts()).isEqualTo(1);
+        assertPaid(id, "RCPT-ws_CO_dup");
+        assertThat(totalRepaid(id)).isEqualByComparingTo("444.24");
+    }
+
+    @Test
+    void callbackThatBeatsThePushResultWaitsForIt() {
+        String id = pushedInstallment(null);
+        mpesaCallbackConsumer.accept(callback("ws_CO_late", 0));
+
+        mpesaCallbackConsumer.poll();
+
+        MpesaCallback waiting = callbackRepository.findById("ws_CO_late").orElseThrow();
+        assertThat(waiting.getStatus()).isEqualTo(MpesaCallback.Status.RECEIVED);
+        assertThat(waiting.getAttempts()).isEqualTo(1);
+        assertThat(waiting.getLastError()).isNotBlank();
+        assertThat(waiting.getNextAttemptAt()).isAfter(LocalDateTime.now());
+
+        // The push result lands; the callback is not retried before its backoff is up
+        jdbcTemplate.update("UPDATE repayments SET mpesa_push_status = 'PUSHED', mpesa_checkout_id = ? WHERE id = ?",
+                "ws_CO_late", id);
+        mpesaCallbackConsumer.poll();
+        assertThat(callbackRepository.findById("ws_CO_late").orElseThrow().getAttempts()).isEqualTo(1);
+
+        makeDue("ws_CO_late");
+        mpesaCallbackConsumer.poll();
+
+        assertThat(callbackRepository.findById("ws_CO_late").orElseThrow().getStatus())
+                .isEqualTo(MpesaCallback.Status.APPLIED);
+        assertPaid(id, "RCPT-ws_CO_late");
+    }
+
+    @Test
+    void backlogIsAttemptedOncePerPollNotBurnedThrough() {
+        MpesaCallbackConsumer consumer = new MpesaCallbackConsumer(callbackRepository, repaymentRepository,
+                repaymentService, transactionManager, 10, 1000, 60);
+        for (int i = 0; i < 35; i++) {
+            consumer.accept(callback("ws_CO_unknown_" + i, 0));
+        }
+
+        consumer.poll();
+
+        assertThat(callbackRepository.findAll()).hasSize(35).allSatisfy(c -> {
+            assertThat(c.getStatus()).isEqualTo(MpesaCallback.Status.RECEIVED);
+            assertThat(c.getAttempts()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void poisonCallbackFailsAloneAndIsParkedOnceTooOld() {
+        String good = pushedInstallment("ws_CO_good");
+        String poison = pushedInstallment("ws_CO_poison");
+        failUpdatesOf(poison);
+        mpesaCallbackConsumer.accept(callback("ws_CO_poison", 0));
+        mpesaCallbackConsumer.accept(callback("ws_CO_good", 0));
+
+        mpesaCallbackConsumer.poll();
+
+        assertPaid(good, "RCPT-ws_CO_good");
+        MpesaCallback failed = callbackRepository.findById("ws_CO_poison").orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(MpesaCallback.Status.RECEIVED);
+        assertThat(failed.getAttempts()).isEqualTo(1);
+        assertThat(failed.getLastError()).contains("ledger locked");
+        assertThat(failed.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        // The failed callback's loan update rolled back with it
+        assertThat(repaymentRepository.findById(poison).orElseThrow().getStatus())
+                .isEqualTo(Repayment.RepaymentStatus.PENDING);
+        assertThat(totalRepaid(poison)).isZero();
+
+        jdbcTemplate.update("UPDATE mpesa_callback_inbox SET received_at = now() - interval '2 hours' " +
+                "WHERE checkout_request_id = 'ws_CO_poison'");
+        makeDue("ws_CO_poison");
+        mpesaCallbackConsumer.poll();
+
+        MpesaCallback parked = callbackRepository.findById("ws_CO_poison").orElseThrow();
+        assertThat(parked.getStatus()).isEqualTo(MpesaCallback.Status.FAILED);
+        assertThat(parked.getAttempts()).isEqualTo(2);
+    }
+
+    @Test
+    void cancelledPromptIsRecordedOnTheRepayment() {
+        String id = pushedInstallment("ws_CO_cancel");
+        mpesaCallbackConsumer.accept(callback("ws_CO_cancel", 1032));
+
+        mpesaCallbackConsumer.poll();
+
+        Repayment repayment = repaymentRepository.findById(id).orElseThrow();
+        assertThat(repayment.getStatus()).isEqualTo(Repayment.RepaymentStatus.PENDING);
+        assertThat(repayment.getMpesaPushStatus()).isEqualTo(MpesaPushStatus.CANCELLED);
+        assertThat(callbackRepository.findById("ws_CO_cancel").orElseThrow().getStatus())
+                .isEqualTo(MpesaCallback.Status.APPLIED);
+    }
+
+    private void makeDue(String checkoutId) {
+        jdbcTemplate.update("UPDATE mpesa_callback_inbox SET next_attempt_at = now() - interval '1 second' " +
+                "WHERE checkout_request_id = ?", checkoutId);
+    }
+
+    private void failUpdatesOf(String repaymentId) {
+        jdbcTemplate.execute("CREATE FUNCTION fail_repayment() RETURNS trigger AS $$ BEGIN " +
+                "IF NEW.id = '" + repaymentId + "' THEN RAISE EXCEPTION 'ledger locked'; END IF; " +
+                "RETURN NEW; END $$ LANGUAGE plpgsql");
+        jdbcTemplate.execute("CREATE TRIGGER fail_repayment BEFORE UPDATE ON repayments " +
+                "FOR EACH ROW EXECUTE FUNCTION fail_repayment()");
+    }
+
+    private void assertPaid(String repaymentId, String receipt) {
+        Repayment repayment = repaymentRepository.findById(repaymentId).orElseThrow();
+        assertThat(repayment.getStatus()).isEqualTo(Repayment.RepaymentStatus.PAID);
+        assertThat(repayment.getMpesaPushStatus()).isEqualTo(MpesaPushStatus.CONFIRMED);
+        assertThat(repayment.getTransactionId()).isEqualTo(receipt);
+    }
+
+    private BigDecimal totalRepaid(String repaymentId) {
+        return jdbcTemplate.queryForObject("SELECT l.total_repaid FROM loans l JOIN repayments r ON r.loan_id = l.id " +
+                "WHERE r.id = ?", BigDecimal.class, repaymentId);
+    }
+
+    private static MpesaDTO.StkCallback callback(String checkoutId, int resultCode) {
+        MpesaDTO.MetadataItem receipt = new MpesaDTO.MetadataItem();
+        receipt.setName("MpesaReceiptNumber");
+        receipt.setValue("RCPT-" + checkoutId);
+        MpesaDTO.CallbackMetadata metadata = new MpesaDTO.CallbackMetadata();
+        metadata.setItems(List.of(receipt));
+        MpesaDTO.StkCallback callback = new MpesaDTO.StkCallback();
+        callback.setCheckoutRequestId(checkoutId);
+        callback.setResultCode(resultCode);
+        callback.setResultDesc(resultCode == 0 ? "The service request is processed successfully." : "Request cancelled by user");
+        callback.setCallbackMetadata(resultCode == 0 ? metadata : null);
+        return callback;
+    }
+
+    // A PENDING installment whose STK push went out under checkoutId, or is still being sent when null
+    private String pushedInstallment(String checkoutId) {
+        User user = userRepository.save(User.builder()
+                .name("Callback Borrower").email("callback-" + System.nanoTime() + "@example.com").password("x")
+                .phone("0700000008").role(User.Role.USER).build());
+        Loan loan = loanRepository.save(Loan.builder()
+                .user(user).amount(BigDecimal.valueOf(5000)).termMonths(12)
+                .purpose(Loan.LoanPurpose.PERSONAL).status(Loan.LoanStatus.DISBURSED)
+                .interestRate(BigDecimal.valueOf(12)).monthlyPayment(new BigDecimal("444.24"))
+                .appliedDate(LocalDate.now().minusMonths(1)).disbursedDate(LocalDate.now())
+                .totalRepaid(BigDecimal.ZERO).build());
+        return repaymentRepository.save(Repayment.builder()
+                .loan(loan).installmentNumber(1).amount(new BigDecimal("444.24"))
+                .dueDate(LocalDate.now().plusMonths(1)).status(Repayment.RepaymentStatus.PENDING)
+                .mpesaPushStatus(checkoutId != null ? MpesaPushStatus.PUSHED : MpesaPushStatus.PENDING_PUSH)
+                .mpesaCheckoutId(checkoutId).build()).getId();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.loanapp.Service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The STK push gives its dispatcher permit back however it fails, including before the
+ * HTTP call is ever queued. The shortcode and passkey are left unset, so building the
+ * request fails unless the push stops earlier.
+ */
+class MpesaServiceTests {
+
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor();
+    private SimpleMeterRegistry meterRegistry;
+    private DarajaDispatcher dispatcher;
+    private MpesaService mpesaService;
+
+    @BeforeEach
+    void start() {
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new DarajaDispatcher(meterRegistry, 1, 1, 1000, 1000, 2000, 5);
+        mpesaService = new MpesaService(meterRegistry, dispatcher, 300);
+    }
+
+    @AfterEach
+    void stop() {
+        mpesaService.shutdown();
+        dispatcher.shutdown();
+        refresher.shutdownNow();
+    }
+
+    @Test
+    void permitIsReleasedWhenTheRequestCannotBeBuilt() {
+        useToken(() -> new MpesaTokenCache.Token("token-1", System.currentTimeMillis() + 3_599_000));
+
+        assertThatThrownBy(() -> push().get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(NullPointerException.class);
+        assertThat(reserved()).isZero();
+    }
+
+    @Test
+    void permitIsReleasedWhenNoTokenCanBeFetched() {
+        useToken(() -> {
+            throw new IOException("Mpesa Auth Failed");
+        });
+
+        assertThatThrownBy(() -> push().get(5, TimeUnit.SECONDS)).hasRootCauseMessage("Mpesa Auth Failed");
+        assertThat(reserved()).isZero();
+    }
+
+    @Test
+    void permitIsReleasedWhenThePushCannotEvenStart() {
+        // The token refresher is gone, so fetching a token is rejected on the caller's thread
+        mpesaService.shutdown();
+
+        CompletableFuture<String> push = push();
+
+        assertThat(push).isCompletedExceptionally();
+        assertThat(reserved()).isZero();
+    }
+
+    private CompletableFuture<String> push() {
+        DarajaDispatcher.Permit permit = mpesaService.reservePushSlot();
+        assertThat(reserved()).isEqualTo(1);
+        return mpesaService.initiateStkPushAsync(permit, "0712345678", new BigDecimal("444.24"), "repayment-1");
+    }
+
+    private void useToken(MpesaTokenCache.Fetcher fetcher) {
+        ReflectionTestUtils.setField(mpesaService, "tokenCache", new MpesaTokenCache(fetcher, refresher,
+                Clock.systemUTC(), Duration.ofMinutes(5), meterRegistry));
+    }
+
+    private double reserved() {
+        return meterRegistry.get("daraja.reserved").gauge().value();
+    }
+}
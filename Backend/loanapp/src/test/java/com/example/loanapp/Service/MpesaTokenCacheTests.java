@@ -0,0 +1,109 @@
+package com.example.loanapp.Service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MpesaTokenCacheTests {
+
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor();
+    private final ExecutorService callers = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void shutdown() {
+        refresher.shutdownNow();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void concurrentColdMissesShareOneFetch() throws Exception {
+        Clock clock = Clock.fixed(Instant.parse("2024-01-01T00:00:00Z"), ZoneOffset.UTC);
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        MpesaTokenCache cache = new MpesaTokenCache(() -> {
+            fetches.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return new MpesaTokenCache.Token("token-1", clock.millis() + 3_599_000);
+        }, refresher, clock, Duration.ofMinutes(5), new SimpleMeterRegistry());
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(callers.submit(cache::get));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("token-1");
+        }
+        assertThat(fetches).hasValue(1);
+        assertThat(cache.get()).isEqualTo("token-1");
+        assertThat(fetches).hasValue(1);
+    }
+
+    @Test
+    void tokenNearExpiryIsServedWhileRefreshedInBackground() throws Exception {
+        MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+        AtomicInteger fetches = new AtomicInteger();
+        MpesaTokenCache cache = new MpesaTokenCache(
+                () -> new MpesaTokenCache.Token("token-" + fetches.incrementAndGet(), clock.millis() + 3_599_000),
+                refresher, clock, Duration.ofMinutes(5), new SimpleMeterRegistry());
+
+        assertThat(cache.get()).isEqualTo("token-1");
+
+        // Inside the refresh-ahead window: still the old token, new one fetched behind it
+        clock.advance(Duration.ofMinutes(56));
+        assertThat(cache.get()).isEqualTo("token-1");
+        refresher.submit(() -> { }).get(5, TimeUnit.SECONDS);
+        assertThat(cache.get()).isEqualTo("token-2");
+        assertThat(fetches).hasValue(2);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.OutboxEvent;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.OutboxEventRepository;
+import com.example.loanapp.Repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Delivery failures on PostgreSQL. A trigger makes the audit insert for one loan fail, which
+ * is a real repository exception inside the delivery transaction, not a mocked one.
+ */
+class OutboxDispatcherTests extends PostgresIntegrationTest {
+
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void dropTrigger() {
+        jdbcTemplate.execute("DROP TRIGGER IF EXISTS fail_audit ON audit_logs");
+        jdbcTemplate.execute("DROP FUNCTION IF EXISTS fail_audit()");
+    }
+
+    @Test
+    void failedDeliveryIsRetriedWithoutRedeliveringTheOthers() {
+        List<String> loans = approvedLoans(3);
+        List<Long> events = loans.stream().map(this::approvedEvent).toList();
+        failAuditFor(loans.get(1));
+
+        outboxDispatcher.poll();
+
+        OutboxEvent failed = outboxEventRepository.findById(events.get(1)).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(OutboxEvent.Status.PENDING);
+        assertThat(failed.getAttempts()).isEqualTo(1);
+        assertThat(failed.getLastError()).isNotBlank();
+        assertThat(failed.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        for (int i : new int[]{0, 2}) {
+            OutboxEvent sent = outboxEventRepository.findById(events.get(i)).orElseThrow();
+            assertThat(sent.getStatus()).isEqualTo(OutboxEvent.Status.DISPATCHED);
+            assertThat(deliveries(loans.get(i))).isEqualTo(1);
+        }
+        assertThat(deliveries(loans.get(1))).isZero();
+
+        dropTrigger();
+        jdbcTemplate.update("UPDATE outbox_events SET next_attempt_at = now() - interval '1 second' WHERE id = ?",
+                events.get(1));
+        outboxDispatcher.poll();
+
+        assertThat(outboxEventRepository.findById(events.get(1)).orElseThrow().getStatus())
+                .isEqualTo(OutboxEvent.Status.DISPATCHED);
+        for (String loan : loans) {
+            assertThat(deliveries(loan)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void deliveryIsParkedAsFailedAtTheAttemptLimit() {
+        String loan = approvedLoans(1).get(0);
+        Long event = approvedEvent(loan);
+        jdbcTemplate.update("UPDATE outbox_events SET attempts = 7 WHERE id = ?", event);
+        failAuditFor(loan);
+
+        outboxDispatcher.poll();
+
+        OutboxEvent parked = outboxEventRepository.findById(event).orElseThrow();
+        assertThat(parked.getStatus()).isEqualTo(OutboxEvent.Status.FAILED);
+        assertThat(parked.getAttempts()).isEqualTo(8);
+    }
+
+    private void failAuditFor(String loanId) {
+        jdbcTemplate.execute("CREATE FUNCTION fail_audit() RETURNS trigger AS $$ BEGIN " +
+                "IF NEW.entity_id = '" + loanId + "' THEN RAISE EXCEPTION 'mail relay down'; END IF; " +
+                "RETURN NEW; END $$ LANGUAGE plpgsql");
+        jdbcTemplate.execute("CREATE TRIGGER fail_audit BEFORE INSERT ON audit_logs " +
+                "FOR EACH ROW EXECUTE FUNCTION fail_audit()");
+    }
+
+    private int deliveries(String loanId) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM audit_logs WHERE entity_id = ? AND details LIKE 'LOAN_APPROVAL_SENT%'",
+                Integer.class, loanId);
+        return count != null ? count : 0;
+    }
+
+    private Long approvedEvent(String loanId) {
+        return outboxEventRepository.save(OutboxEvent.builder()
+                .eventType(OutboxEvent.EventType.LOAN_APPROVED).aggregateType("Loan").aggregateId(loanId)
+                .nextAttemptAt(LocalDateTime.now().minusSeconds(1)).build()).getId();
+    }
+
+    private List<String> approvedLoans(int count) {
+        User user = userRepository.save(User.builder()
+                .name("Outbox Borrower").email("outbox@example.com").password("x").phone("0700000003")
+                .role(User.Role.USER).build());
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(loanRepository.save(Loan.builder()
+                    .user(user).amount(BigDecimal.valueOf(5000)).termMonths(12)
+                    .purpose(Loan.LoanPurpose.PERSONAL).status(Loan.LoanStatus.APPROVED)
+                    .interestRate(BigDecimal.valueOf(12)).monthlyPayment(new BigDecimal("444.24"))
+                    .appliedDate(LocalDate.now()).totalRepaid(BigDecimal.ZERO).build()).getId());
+        }
+        return ids;
+    }
+}
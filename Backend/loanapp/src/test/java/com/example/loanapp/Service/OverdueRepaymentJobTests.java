@@ -0,0 +1,254 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Entity.JobCheckpoint;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Repository.JobCheckpointRepository;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.OverdueRepaymentWriter;
+import com.example.loanapp.Repository.RepaymentRepository;
+import com.example.loanapp.Repository.RepaymentScheduleWriter;
+import com.example.loanapp.Repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Arrears job on PostgreSQL with the default fee settings: 0.1% per day overdue, capped at
+ * 10% of the installment.
+ */
+class OverdueRepaymentJobTests extends PostgresIntegrationTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 30);
+
+    @Autowired
+    private OverdueRepaymentJob overdueRepaymentJob;
+    @Autowired
+    private JobCheckpointRepository checkpointRepository;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private OverdueRepaymentWriter overdueRepaymentWriter;
+    @Autowired
+    private RepaymentScheduleWriter repaymentScheduleWriter;
+    @Autowired
+    private RepaymentScheduleService repaymentScheduleService;
+    @Autowired
+    private UserLoanSummaryService userLoanSummaryService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private RepaymentService repaymentService;
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void marksArrearsAndCapsTheLateFee() {
+        Loan loan = loan(false, null);
+        String recent = installment(loan, 1, TODAY.minusDays(5), Repayment.RepaymentStatus.PENDING);
+        String old = installment(loan, 2, TODAY.minusDays(200), Repayment.RepaymentStatus.PENDING);
+        String dueToday = installment(loan, 3, TODAY, Repayment.RepaymentStatus.PENDING);
+        String paid = installment(loan, 4, TODAY.minusDays(10), Repayment.RepaymentStatus.PAID);
+        String adHoc = installment(loan, 0, TODAY.minusDays(10), Repayment.RepaymentStatus.PENDING);
+
+        overdueRepaymentJob.run(TODAY);
+
+        assertRow(recent, Repayment.RepaymentStatus.OVERDUE, "5.00");
+        assertRow(old, Repayment.RepaymentStatus.OVERDUE, "100.00");
+        assertRow(dueToday, Repayment.RepaymentStatus.PENDING, "0.00");
+        assertRow(paid, Repayment.RepaymentStatus.PAID, "0.00");
+        assertRow(adHoc, Repayment.RepaymentStatus.PENDING, "0.00");
+    }
+
+    @Test
+    void rerunsAreIdempotentAndLaterDaysKeepAccruing() {
+        Loan loan = loan(false, null);
+        String recent = installment(loan, 1, TODAY.minusDays(5), Repayment.RepaymentStatus.PENDING);
+        String old = installment(loan, 2, TODAY.minusDays(200), Repayment.RepaymentStatus.PENDING);
+
+        overdueRepaymentJob.run(TODAY);
+        assertThat(checkpoint(OverdueRepaymentJob.ACCRUAL_JOB).getProcessed()).isEqualTo(2);
+
+        // A finished run is not repeated; a lost checkpoint re-scans but rewrites nothing
+        overdueRepaymentJob.run(TODAY);
+        assertThat(checkpoint(OverdueRepaymentJob.ACCRUAL_JOB).getProcessed()).isEqualTo(2);
+        checkpointRepository.deleteAll();
+        overdueRepaymentJob.run(TODAY);
+        assertThat(checkpoint(OverdueRepaymentJob.ACCRUAL_JOB).getProcessed()).isZero();
+        assertRow(recent, Repayment.RepaymentStatus.OVERDUE, "5.00");
+        assertRow(old, Repayment.RepaymentStatus.OVERDUE, "100.00");
+
+        overdueRepaymentJob.run(TODAY.plusDays(1));
+        assertThat(checkpoint(OverdueRepaymentJob.ACCRUAL_JOB).getProcessed()).isEqualTo(1);
+        assertRow(recent, Repayment.RepaymentStatus.OVERDUE, "6.00");
+        assertRow(old, Repayment.RepaymentStatus.OVERDUE, "100.00");
+    }
+
+    @Test
+    void resumesAfterTheLastCommittedChunk() {
+        Loan loan = loan(false, null);
+        List<String> ids = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            ids.add(installment(loan, i, TODAY.minusDays(60 - i), Repayment.RepaymentStatus.PENDING));
+        }
+        // As if a run crashed after committing its first chunk of two
+        checkpointRepository.save(JobCheckpoint.builder().jobName(OverdueRepaymentJob.ACCRUAL_JOB).runDate(TODAY)
+                .lastDueDate(TODAY.minusDays(58)).lastId(ids.get(1)).processed(2).build());
+
+        job(2).run(TODAY);
+
+        assertRow(ids.get(0), Repayment.RepaymentStatus.PENDING, "0.00");
+        assertRow(ids.get(1), Repayment.RepaymentStatus.PENDING, "0.00");
+        for (String id : ids.subList(2, 5)) {
+            assertThat(repaymentRepository.findById(id).orElseThrow().getStatus())
+                    .isEqualTo(Repayment.RepaymentStatus.OVERDUE);
+        }
+        JobCheckpoint checkpoint = checkpoint(OverdueRepaymentJob.ACCRUAL_JOB);
+        assertThat(checkpoint.isCompleted()).isTrue();
+        assertThat(checkpoint.getProcessed()).isEqualTo(5);
+    }
+
+    @Test
+    void virtualScheduleArrearsAreMaterializedAndAccrued() {
+        // 12000 over 12 months at 12%: installments 1-3 are past due, 4-12 are not
+        Loan loan = loan(true, TODAY.minusMonths(3).minusDays(3));
+
+        overdueRepaymentJob.run(TODAY);
+
+        List<Repayment> stored = repaymentRepository.findAll().stream()
+                .filter(r -> r.getLoan().getId().equals(loan.getId()))
+                .sorted((a, b) -> a.getInstallmentNumber() - b.getInstallmentNumber())
+                .toList();
+        assertThat(stored).extracting(Repayment::getInstallmentNumber).containsExactly(1, 2, 3);
+        assertThat(stored).allSatisfy(r -> assertThat(r.getStatus()).isEqualTo(Repayment.RepaymentStatus.OVERDUE));
+        // 1066.19 * 0.001 * 3 days
+        assertThat(stored.get(2).getLateFee()).isEqualByComparingTo("3.20");
+        assertThat(checkpoint(OverdueRepaymentJob.MATERIALIZE_JOB).getProcessed()).isEqualTo(3);
+
+        overdueRepaymentJob.run(TODAY.plusDays(1));
+        assertThat(repaymentRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    void undisbursedLoansAccrueNothing() {
+        // Approved but not yet disbursed: the schedule is re-anchored once the money goes out
+        Loan approved = loan(Loan.LoanStatus.APPROVED, false, null);
+        String id = installment(approved, 1, TODAY.minusDays(5), Repayment.RepaymentStatus.PENDING);
+
+        overdueRepaymentJob.run(TODAY);
+
+        assertRow(id, Repayment.RepaymentStatus.PENDING, "0.00");
+        assertThat(checkpoint(OverdueRepaymentJob.ACCRUAL_JOB).getProcessed()).isZero();
+    }
+
+    @Test
+    void loanCompletedByFlexiblePaymentsAccruesNothing() {
+        Loan loan = loan(false, null);
+        String id = installment(loan, 1, TODAY.minusDays(5), Repayment.RepaymentStatus.PENDING);
+        // 12000 at 12% flat: one payment of 13440 completes the loan without settling the installment
+        repaymentService.processFlexiblePayment(loan.getId(), new BigDecimal("13440.00"), "WALLET");
+        assertThat(loanRepository.findById(loan.getId()).orElseThrow().getStatus())
+                .isEqualTo(Loan.LoanStatus.COMPLETED);
+
+        overdueRepaymentJob.run(TODAY);
+
+        assertRow(id, Repayment.RepaymentStatus.PENDING, "0.00");
+        assertThat(checkpoint(OverdueRepaymentJob.ACCRUAL_JOB).getProcessed()).isZero();
+    }
+
+    @Test
+    void paymentCommittedDuringTheChunkIsNotFlippedBack() throws Exception {
+        Loan loan = loan(false, null);
+        String id = installment(loan, 1, TODAY.minusDays(5), Repayment.RepaymentStatus.PENDING);
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try (Connection payment = dataSource.getConnection()) {
+            payment.setAutoCommit(false);
+            try (PreparedStatement pay = payment.prepareStatement(
+                    "UPDATE repayments SET status = 'PAID', paid_date = ? WHERE id = ?")) {
+                pay.setObject(1, TODAY);
+                pay.setString(2, id);
+                pay.executeUpdate();
+            }
+            // The job reads the chunk, then blocks on the row the payment holds
+            Future<?> run = pool.submit(() -> overdueRepaymentJob.run(TODAY));
+            waitForLockWait();
+            payment.commit();
+            run.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertRow(id, Repayment.RepaymentStatus.PAID, "0.00");
+    }
+
+    private void waitForLockWait() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            Integer waiting = jdbcTemplate.queryForObject("SELECT count(*) FROM pg_stat_activity " +
+                    "WHERE wait_event_type = 'Lock' AND query LIKE 'WITH chunk%'", Integer.class);
+            if (waiting != null && waiting > 0) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Overdue job never waited on the payment's row lock");
+    }
+
+    private OverdueRepaymentJob job(int chunkSize) {
+        return new OverdueRepaymentJob(checkpointRepository, loanRepository, repaymentRepository,
+                overdueRepaymentWriter, repaymentScheduleWriter, repaymentScheduleService, userLoanSummaryService,
+                transactionManager, chunkSize, 0, 365, new BigDecimal("0.1"), BigDecimal.TEN);
+    }
+
+    private JobCheckpoint checkpoint(String jobName) {
+        return checkpointRepository.findById(jobName).orElseThrow();
+    }
+
+    private void assertRow(String id, Repayment.RepaymentStatus status, String lateFee) {
+        Repayment repayment = repaymentRepository.findById(id).orElseThrow();
+        assertThat(repayment.getStatus()).as(id).isEqualTo(status);
+        assertThat(repayment.getLateFee()).as(id).isEqualByComparingTo(lateFee);
+    }
+
+    private String installment(Loan loan, int number, LocalDate dueDate, Repayment.RepaymentStatus status) {
+        return repaymentRepository.save(Repayment.builder()
+                .loan(loan).installmentNumber(number).amount(new BigDecimal("1000.00"))
+                .dueDate(dueDate).status(status).build()).getId();
+    }
+
+    private Loan loan(boolean virtual, LocalDate disbursed) {
+        return loan(Loan.LoanStatus.DISBURSED, virtual, disbursed);
+    }
+
+    private Loan loan(Loan.LoanStatus status, boolean virtual, LocalDate disbursed) {
+        User user = userRepository.save(User.builder()
+                .name("Arrears Borrower").email("arrears-" + System.nanoTime() + "@example.com").password("x")
+                .phone("0700000006").role(User.Role.USER).build());
+        return loanRepository.save(Loan.builder()
+                .user(user).amount(BigDecimal.valueOf(12_000)).termMonths(12)
+                .purpose(Loan.LoanPurpose.PERSONAL).status(status)
+                .interestRate(BigDecimal.valueOf(12)).monthlyPayment(new BigDecimal("1066.19"))
+                .appliedDate(TODAY.minusYears(1)).disbursedDate(disbursed)
+                .virtualSchedule(virtual).totalRepaid(BigDecimal.ZERO).build());
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.AnalyticsDTO;
+import com.example.loanapp.DTO.ExportDTO;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Exception.ResourceNotFoundException;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PortfolioSnapshotTests {
+
+    @Test
+    void columnsSurviveEncodeDecodeRoundTrip() throws Exception {
+        LocalDate asOf = LocalDate.of(2024, 3, 31);
+        PortfolioSnapshot.Builder builder = PortfolioSnapshot.builder(asOf);
+
+        for (int i = 0; i < 5000; i++) {
+            builder.addLoan(loan(i));
+            builder.addRepayment(repayment(i));
+        }
+        PortfolioSnapshot original = builder.build();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        original.writeTo(bytes);
+        PortfolioSnapshot decoded = PortfolioSnapshot.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertThat(decoded.getAsOf()).isEqualTo(asOf);
+        PortfolioSnapshot.Loans a = original.getLoans(), b = decoded.getLoans();
+        assertThat(b.rows).isEqualTo(5000);
+        assertThat(b.statusDict).containsExactly(a.statusDict);
+        assertThat(b.status).containsExactly(a.status);
+        assertThat(b.purpose).containsExactly(a.purpose);
+        assertThat(b.amountCents).containsExactly(a.amountCents);
+        assertThat(b.rateBps).containsExactly(a.rateBps);
+        assertThat(b.creditScore).containsExactly(a.creditScore);
+        assertThat(b.appliedDay).containsExactly(a.appliedDay);
+        assertThat(b.disbursedDay).containsExactly(a.disbursedDay);
+        assertThat(b.dueDay).containsExactly(a.dueDay);
+
+        PortfolioSnapshot.Repayments ra = original.getRepayments(), rb = decoded.getRepayments();
+        assertThat(rb.status).containsExactly(ra.status);
+        assertThat(rb.amountCents).containsExactly(ra.amountCents);
+        assertThat(rb.dueDay).containsExactly(ra.dueDay);
+        assertThat(rb.paidDay).containsExactly(ra.paidDay);
+
+        assertThat(b.disbursedDay[3]).isEqualTo(PortfolioSnapshot.NULL);
+        assertThat(b.amountCents[7]).isEqualTo(1_000_700L);
+        // Dictionary + varint + gzip should land well under 10 bytes per loan and repayment
+        assertThat(bytes.size()).isLessThan(10 * 2 * 5000);
+    }
+
+    @Test
+    void summaryAggregatesTheBookAsOfTheSnapshotDate(@TempDir Path dir) {
+        LocalDate asOf = LocalDate.of(2024, 3, 31);
+        PortfolioSnapshotService service = service(dir,
+                List.of(loan(Loan.LoanStatus.APPROVED, Loan.LoanPurpose.PERSONAL, "1000.00", 12, "0.00", 700, null),
+                        loan(Loan.LoanStatus.REPAYING, Loan.LoanPurpose.EDUCATION, "2000.00", 10, "500.00", null,
+                                asOf.minusMonths(3)),
+                        loan(Loan.LoanStatus.COMPLETED, Loan.LoanPurpose.PERSONAL, "500.00", 8, "540.00", 800,
+                                asOf.minusYears(1))),
+                List.of(repayment(Repayment.RepaymentStatus.PAID, "100.00", "0.00", asOf.minusDays(30)),
+                        repayment(Repayment.RepaymentStatus.OVERDUE, "200.00", "10.00", asOf.minusDays(16)),
+                        repayment(Repayment.RepaymentStatus.PENDING, "50.00", "0.00", asOf.minusDays(1)),
+                        // Due on the snapshot day itself is not overdue yet
+                        repayment(Repayment.RepaymentStatus.PENDING, "300.00", "0.00", asOf),
+                        repayment(Repayment.RepaymentStatus.PENDING, "400.00", "0.00", asOf.plusDays(30)),
+                        repayment(Repayment.RepaymentStatus.PENDING, "500.00", "0.00", asOf.plusDays(31))));
+        service.takeSnapshot(asOf);
+
+        AnalyticsDTO.PortfolioSnapshotSummary summary = service.summarizeAsOf(asOf.plusDays(5));
+
+        assertThat(summary.getRequestedDate()).isEqualTo(asOf.plusDays(5));
+        assertThat(summary.getSnapshotDate()).isEqualTo(asOf);
+        assertThat(summary.getTotalLoans()).isEqualTo(3);
+        assertThat(summary.getLoansByStatus()).isEqualTo(Map.of("APPROVED", 1L, "REPAYING", 1L, "COMPLETED", 1L));
+        assertThat(summary.getLoansByPurpose()).isEqualTo(Map.of("PERSONAL", 2L, "EDUCATION", 1L));
+        assertThat(summary.getAmountByStatus().get("REPAYING")).isEqualByComparingTo("2000.00");
+        assertThat(summary.getActiveLoans()).isEqualTo(2);
+        // 1000 * 1.12 + (2000 * 1.10 - 500)
+        assertThat(summary.getOutstandingBalance()).isEqualByComparingTo("2820.00");
+        assertThat(summary.getTotalDisbursed()).isEqualByComparingTo("2500.00");
+        assertThat(summary.getTotalRepaid()).isEqualByComparingTo("1040.00");
+        assertThat(summary.getAverageCreditScore()).isEqualTo(750.0);
+        assertThat(summary.getPaidInstallments()).isEqualTo(1);
+        assertThat(summary.getPaidAmount()).isEqualByComparingTo("100.00");
+        assertThat(summary.getOverdueInstallments()).isEqualTo(2);
+        assertThat(summary.getOverdueAmount()).isEqualByComparingTo("260.00");
+        assertThat(summary.getDueNext30Days()).isEqualByComparingTo("700.00");
+    }
+
+    @Test
+    void unmaterializedVirtualInstallmentsAreDerivedIntoTheSnapshot(@TempDir Path dir) {
+        LocalDate asOf = LocalDate.of(2024, 3, 31);
+        Loan loan = Loan.builder()
+                .id("virtual-loan").amount(BigDecimal.valueOf(12_000)).termMonths(12)
+                .interestRate(BigDecimal.valueOf(12)).status(Loan.LoanStatus.DISBURSED)
+                .appliedDate(LocalDate.of(2024, 1, 10)).disbursedDate(LocalDate.of(2024, 1, 15))
+                .virtualSchedule(true).totalRepaid(BigDecimal.ZERO).build();
+        RepaymentScheduleService schedules = scheduleService();
+        Repayment first = schedules.derive(loan, 1);
+        first.setId("stored-1");
+        first.setStatus(Repayment.RepaymentStatus.PAID);
+        first.setPaidDate(first.getDueDate());
+        Repayment second = schedules.derive(loan, 2);
+        Repayment third = schedules.derive(loan, 3);
+
+        LoanRepository loanRepository = mock(LoanRepository.class);
+        RepaymentRepository repaymentRepository = mock(RepaymentRepository.class);
+        when(loanRepository.streamExportRows()).thenAnswer(inv -> Stream.empty());
+        // Only the paid first installment is stored, and the stream sees it as a plain row
+        when(repaymentRepository.streamExportRows()).thenAnswer(inv -> Stream.of(
+                repayment(Repayment.RepaymentStatus.PAID, first.getAmount().toPlainString(), "0.00", first.getDueDate())));
+        when(loanRepository.findVirtualScheduleChunk(anyCollection(), eq(""), any())).thenReturn(List.of(loan));
+        when(repaymentRepository.findByLoanIdInOrderByDueDateAsc(anyCollection(), any())).thenReturn(List.of(first));
+        PortfolioSnapshotService service = new PortfolioSnapshotService(loanRepository, repaymentRepository,
+                schedules, mock(PlatformTransactionManager.class), dir.toString(), 400);
+        service.takeSnapshot(asOf);
+
+        AnalyticsDTO.PortfolioSnapshotSummary summary = service.summarizeAsOf(asOf);
+
+        assertThat(second.getDueDate()).isBefore(asOf);
+        assertThat(third.getDueDate()).isAfter(asOf).isBefore(asOf.plusDays(30));
+        assertThat(summary.getPaidInstallments()).isEqualTo(1);
+        // Installment 2 fell due before the overdue job could materialize it
+        assertThat(summary.getOverdueInstallments()).isEqualTo(1);
+        assertThat(summary.getOverdueAmount()).isEqualByComparingTo(second.getAmount());
+        assertThat(summary.getDueNext30Days()).isEqualByComparingTo(third.getAmount());
+    }
+
+    @Test
+    void asOfPicksTheLatestSnapshotOnOrBeforeTheDate(@TempDir Path dir) {
+        PortfolioSnapshotService service = service(dir, List.of(), List.of());
+        LocalDate first = LocalDate.of(2024, 3, 1);
+        LocalDate second = LocalDate.of(2024, 3, 10);
+        service.takeSnapshot(second);
+        service.takeSnapshot(first);
+
+        assertThat(service.summarizeAsOf(first).getSnapshotDate()).isEqualTo(first);
+        assertThat(service.summarizeAsOf(second.minusDays(1)).getSnapshotDate()).isEqualTo(first);
+        assertThat(service.summarizeAsOf(second).getSnapshotDate()).isEqualTo(second);
+        assertThat(service.summarizeAsOf(second.plusYears(1)).getSnapshotDate()).isEqualTo(second);
+        assertThatThrownBy(() -> service.summarizeAsOf(first.minusDays(1)))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void nightlySnapshotIsLabelledWithTheDayThatJustEnded(@TempDir Path dir) {
+        PortfolioSnapshotService service = service(dir, List.of(), List.of());
+
+        service.takeNightlySnapshot();
+
+        assertThat(service.listSnapshots()).containsExactly(LocalDate.now().minusDays(1));
+    }
+
+    private static PortfolioSnapshotService service(Path dir, List<ExportDTO.LoanRow> loans,
+                                                    List<ExportDTO.RepaymentRow> repayments) {
+        LoanRepository loanRepository = mock(LoanRepository.class);
+        RepaymentRepository repaymentRepository = mock(RepaymentRepository.class);
+        when(loanRepository.streamExportRows()).thenAnswer(inv -> loans.stream());
+        when(repaymentRepository.streamExportRows()).thenAnswer(inv -> repayments.stream());
+        return new PortfolioSnapshotService(loanRepository, repaymentRepository, scheduleService(),
+                mock(PlatformTransactionManager.class), dir.toString(), 400);
+    }
+
+    private static RepaymentScheduleService scheduleService() {
+        return new RepaymentScheduleService(mock(RepaymentRepository.class), mock(LoanRepository.class),
+                mock(UserLoanSummaryService.class), new AmortizationEngine(), RepaymentScheduleService.ScheduleMode.STORED);
+    }
+
+    private static ExportDTO.LoanRow loan(Loan.LoanStatus status, Loan.LoanPurpose purpose, String amount,
+                                          int rate, String repaid, Integer score, LocalDate disbursed) {
+        ExportDTO.LoanRow row = mock(ExportDTO.LoanRow.class);
+        when(row.getStatus()).thenReturn(status);
+        when(row.getPurpose()).thenReturn(purpose);
+        when(row.getAmount()).thenReturn(new BigDecimal(amount));
+        when(row.getTermMonths()).thenReturn(12);
+        when(row.getInterestRate()).thenReturn(BigDecimal.valueOf(rate));
+        when(row.getTotalRepaid()).thenReturn(new BigDecimal(repaid));
+        when(row.getCreditScore()).thenReturn(score);
+        when(row.getAppliedDate()).thenReturn(LocalDate.of(2023, 1, 1));
+        when(row.getDisbursedDate()).thenReturn(disbursed);
+        when(row.getDueDate()).thenReturn(LocalDate.of(2025, 1, 1));
+        return row;
+    }
+
+    private static ExportDTO.RepaymentRow repayment(Repayment.RepaymentStatus status, String amount,
+                                                    String lateFee, LocalDate due) {
+        ExportDTO.RepaymentRow row = mock(ExportDTO.RepaymentRow.class);
+        when(row.getStatus()).thenReturn(status);
+        when(row.getInstallmentNumber()).thenReturn(1);
+        when(row.getAmount()).thenReturn(new BigDecimal(amount));
+        when(row.getLateFee()).thenReturn(new BigDecimal(lateFee));
+        when(row.getDueDate()).thenReturn(due);
+        when(row.getPaidDate()).thenReturn(status == Repayment.RepaymentStatus.PAID ? due : null);
+        return row;
+    }
+
+    private static ExportDTO.LoanRow loan(int i) {
+        ExportDTO.LoanRow row = mock(ExportDTO.LoanRow.class);
+        LocalDate applied = LocalDate.of(2023, 1, 1).plusDays(i / 20);
+        when(row.getStatus()).thenReturn(Loan.LoanStatus.values()[i % 4]);
+        when(row.getPurpose()).thenReturn(Loan.LoanPurpose.values()[i % Loan.LoanPurpose.values().length]);
+        when(row.getAmount()).thenReturn(BigDecimal.valueOf((10_000L + i) * 100, 2));
+        when(row.getTermMonths()).thenReturn(12 + i % 72);
+        when(row.getInterestRate()).thenReturn(BigDecimal.valueOf(8 + 2 * (i % 4)));
+        when(row.getTotalRepaid()).thenReturn(BigDecimal.valueOf(i % 100, 2));
+        when(row.getCreditScore()).thenReturn(i % 10 == 0 ? null : 300 + i % 550);
+        when(row.getAppliedDate()).thenReturn(applied);
+        when(row.getDisbursedDate()).thenReturn(i % 4 == 3 ? null : applied.plusDays(2));
+        when(row.getDueDate()).thenReturn(applied.plusMonths(12));
+        return row;
+    }
+
+    private static ExportDTO.RepaymentRow repayment(int i) {
+        ExportDTO.RepaymentRow row = mock(ExportDTO.RepaymentRow.class);
+        LocalDate due = LocalDate.of(2023, 2, 1).plusMonths(i % 24);
+        when(row.getStatus()).thenReturn(i % 3 == 0 ? Repayment.RepaymentStatus.PAID : Repayment.RepaymentStatus.PENDING);
+        when(row.getInstallmentNumber()).thenReturn(1 + i % 24);
+        when(row.getAmount()).thenReturn(new BigDecimal("879.16"));
+        when(row.getLateFee()).thenReturn(BigDecimal.ZERO);
+        when(row.getDueDate()).thenReturn(due);
+        when(row.getPaidDate()).thenReturn(i % 3 == 0 ? due.minusDays(1) : null);
+        return row;
+    }
+}
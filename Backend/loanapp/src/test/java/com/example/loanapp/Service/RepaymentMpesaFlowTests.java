@@ -0,0 +1,257 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.LoanDTO;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Entity.Repayment.MpesaPushStatus;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.Exception.PaymentInProgressException;
+import com.example.loanapp.Exception.ResourceNotFoundException;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import com.example.loanapp.Repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The 202 + poll M-Pesa flow on PostgreSQL. Daraja is replaced by futures the test completes
+ * itself, so each push result arrives exactly when the test says.
+ */
+class RepaymentMpesaFlowTests extends PostgresIntegrationTest {
+
+    private static final String OWNER = "mpesa-owner@example.com";
+
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserLoanSummaryService userLoanSummaryService;
+    @Autowired
+    private RepaymentScheduleService repaymentScheduleService;
+    @Autowired
+    private LoanStateMachine loanStateMachine;
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+    @Autowired
+    private OutboxService outboxService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Queue<CompletableFuture<String>> pushes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean failNextPushSynchronously = new AtomicBoolean();
+    private SimpleMeterRegistry meterRegistry;
+    private DarajaDispatcher darajaDispatcher;
+    private RepaymentService repaymentService;
+
+    @BeforeEach
+    void stubDaraja() {
+        meterRegistry = new SimpleMeterRegistry();
+        darajaDispatcher = new DarajaDispatcher(meterRegistry, 4, 4, 1000, 1000, 1000, 5);
+        MpesaService mpesaService = mock(MpesaService.class);
+        when(mpesaService.reservePushSlot()).thenAnswer(inv -> darajaDispatcher.reserve());
+        when(mpesaService.initiateStkPushAsync(any(), anyString(), any(), anyString())).thenAnswer(inv -> {
+            CompletableFuture<String> push = new CompletableFuture<>();
+            DarajaDispatcher.Permit permit = inv.getArgument(0);
+            if (failNextPushSynchronously.getAndSet(false)) {
+                push.completeExceptionally(new IllegalStateException("Token refresh rejected"));
+            } else {
+                pushes.add(push);
+            }
+            return push.whenComplete((checkoutId, error) -> permit.release());
+        });
+        repaymentService = new RepaymentService(repaymentRepository, loanRepository, mpesaService,
+                userLoanSummaryService, repaymentScheduleService, loanStateMachine, optimisticRetry,
+                outboxService, transactionManager, 300);
+    }
+
+    @AfterEach
+    void stopDispatcher() {
+        darajaDispatcher.shutdown();
+    }
+
+    @Test
+    void pushIsSentAfterCommitAndItsResultIsPolled() {
+        String id = installment();
+
+        Repayment accepted = repaymentService.processPayment(id, "MPESA");
+
+        assertThat(accepted.getMpesaPushStatus()).isEqualTo(MpesaPushStatus.PENDING_PUSH);
+        assertThat(pushes).hasSize(1);
+        assertThat(status(id).getMpesaPushStatus()).isEqualTo("PENDING_PUSH");
+
+        pushes.poll().complete("ws_CO_1");
+
+        LoanDTO.PaymentStatus status = status(id);
+        assertThat(status.getMpesaPushStatus()).isEqualTo("PUSHED");
+        assertThat(status.getCheckoutRequestId()).isEqualTo("ws_CO_1");
+        assertThat(status.getStatus()).isEqualTo("PENDING");
+        assertThat(reserved()).isZero();
+    }
+
+    @Test
+    void repeatedPayWhileAPushIsUnderWayIsRejected() {
+        String id = installment();
+        repaymentService.processPayment(id, "MPESA");
+
+        assertThatThrownBy(() -> repaymentService.processPayment(id, "MPESA"))
+                .isInstanceOf(PaymentInProgressException.class);
+        // The rejected request gave its slot back; only the first push holds one
+        assertThat(reserved()).isEqualTo(1);
+
+        pushes.poll().complete("ws_CO_1");
+        assertThatThrownBy(() -> repaymentService.processPayment(id, "MPESA"))
+                .isInstanceOf(PaymentInProgressException.class);
+        assertThat(status(id).getCheckoutRequestId()).isEqualTo("ws_CO_1");
+        assertThat(pushes).isEmpty();
+
+        // An unanswered prompt older than the push timeout may be sent again
+        jdbcTemplate.update("UPDATE repayments SET updated_at = now() - interval '301 seconds' WHERE id = ?", id);
+        repaymentService.processPayment(id, "MPESA");
+        assertThat(pushes).hasSize(1);
+        assertThat(status(id).getCheckoutRequestId()).isNull();
+    }
+
+    @Test
+    void concurrentPayRequestsSendOnePush() throws Exception {
+        String id = installment();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        repaymentService.processPayment(id, "MPESA");
+                        return true;
+                    } catch (PaymentInProgressException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            int accepted = 0;
+            for (Future<Boolean> result : results) {
+                accepted += result.get(30, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertThat(accepted).isEqualTo(1);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(pushes).hasSize(1);
+        assertThat(reserved()).isEqualTo(1);
+    }
+
+    @Test
+    void failedPushIsRecordedAndMayBeRetried() {
+        String id = installment();
+        repaymentService.processPayment(id, "MPESA");
+
+        pushes.poll().completeExceptionally(new IllegalStateException("Invalid PhoneNumber"));
+
+        LoanDTO.PaymentStatus status = status(id);
+        assertThat(status.getMpesaPushStatus()).isEqualTo("PUSH_FAILED");
+        assertThat(status.getMessage()).isEqualTo("Invalid PhoneNumber");
+        assertThat(reserved()).isZero();
+
+        repaymentService.processPayment(id, "MPESA");
+        assertThat(status(id).getMpesaPushStatus()).isEqualTo("PENDING_PUSH");
+        assertThat(status(id).getMessage()).isNull();
+    }
+
+    @Test
+    void pushThatFailsBeforeLeavingIsRecordedFromAfterCommit() {
+        String id = installment();
+        failNextPushSynchronously.set(true);
+
+        repaymentService.processPayment(id, "MPESA");
+
+        // Recorded while the payment's finished transaction was still bound to the thread
+        assertThat(status(id).getMpesaPushStatus()).isEqualTo("PUSH_FAILED");
+        assertThat(status(id).getMessage()).isEqualTo("Token refresh rejected");
+        assertThat(reserved()).isZero();
+    }
+
+    @Test
+    void staleUnsentPushIsExpiredBySweep() {
+        String id = installment();
+        repaymentService.processPayment(id, "MPESA");
+        jdbcTemplate.update("UPDATE repayments SET updated_at = now() - interval '301 seconds' WHERE id = ?", id);
+
+        repaymentService.expireStalePushes();
+        // A push result arriving after the sweep does not resurrect the row
+        pushes.poll().complete("ws_CO_late");
+
+        assertThat(status(id).getMpesaPushStatus()).isEqualTo("PUSH_FAILED");
+        assertThat(status(id).getCheckoutRequestId()).isNull();
+    }
+
+    @Test
+    void borrowersCanOnlyPollTheirOwnRepayments() {
+        String id = installment();
+
+        assertThat(status(id, OWNER, false).getRepaymentId()).isEqualTo(id);
+        assertThat(status(id, "admin@example.com", true).getRepaymentId()).isEqualTo(id);
+        assertThatThrownBy(() -> status(id, "someone-else@example.com", false))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    private LoanDTO.PaymentStatus status(String id) {
+        return status(id, OWNER, false);
+    }
+
+    // The service is not a Spring proxy here, so the test supplies its transaction
+    private LoanDTO.PaymentStatus status(String id, String userEmail, boolean staff) {
+        return new TransactionTemplate(transactionManager)
+                .execute(tx -> repaymentService.getPaymentStatus(id, userEmail, staff));
+    }
+
+    private double reserved() {
+        return meterRegistry.get("daraja.reserved").gauge().value();
+    }
+
+    private String installment() {
+        User user = userRepository.save(User.builder()
+                .name("M-Pesa Borrower").email(OWNER).password("x").phone("0712345678")
+                .role(User.Role.USER).build());
+        Loan loan = loanRepository.save(Loan.builder()
+                .user(user).amount(BigDecimal.valueOf(5000)).termMonths(12)
+                .purpose(Loan.LoanPurpose.PERSONAL).status(Loan.LoanStatus.DISBURSED)
+                .interestRate(BigDecimal.valueOf(12)).monthlyPayment(new BigDecimal("444.24"))
+                .appliedDate(LocalDate.now().minusMonths(1)).disbursedDate(LocalDate.now())
+                .totalRepaid(BigDecimal.ZERO).build());
+        return repaymentRepository.save(Repayment.builder()
+                .loan(loan).installmentNumber(1).amount(new BigDecimal("444.24"))
+                .dueDate(LocalDate.now().plusMonths(1)).status(Repayment.RepaymentStatus.PENDING).build()).getId();
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The hot repayment reads before and after the conversion to monthly partitions: a batch
+ * schedule load bounded by the loans' earliest applied date, and the overdue job's one-day
+ * window. Rows are cloned from one approved loan in SQL, spread over 84 months of due dates,
+ * in a schema of their own so the other tests' table is never converted.
+ *
+ * The row count defaults to 240,000 and is set with -Dbenchmark.rows; the sizing question was
+ * 50,000,000, which needs tens of GB of disk.
+ *
+ * Not part of the default test run (the class name does not match surefire's includes).
+ * Run it explicitly against PostgreSQL:
+ * <pre>mvn test -Dtest=RepaymentPartitionBenchmark -Dbenchmark.rows=50000000</pre>
+ */
+class RepaymentPartitionBenchmark extends PostgresIntegrationTest {
+
+    private static final String SCHEMA = "partition_benchmark";
+    private static final long ROWS = Long.getLong("benchmark.rows", 240_000L);
+    private static final int TERM = 12;
+    private static final int SPREAD_MONTHS = 84;
+    private static final int LOANS_PER_BATCH = 50;
+    private static final int WARMUP_QUERIES = 20;
+    private static final int MEASURED_QUERIES = 200;
+
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private SingleConnectionDataSource dataSource;
+
+    @AfterEach
+    void dropSchema() {
+        if (dataSource != null) {
+            dataSource.destroy();
+        }
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+    }
+
+    @Test
+    void boundedReadsPruneToTheirMonths() {
+        String template = approvedLoan();
+        long loans = Math.max(1, ROWS / TERM);
+        long loadStart = System.nanoTime();
+        JdbcTemplate bench = load(template, loans);
+        double loadMs = (System.nanoTime() - loadStart) / 1_000_000.0;
+
+        Random random = new Random(42);
+        List<List<Long>> batches = IntStream.range(0, WARMUP_QUERIES + MEASURED_QUERIES)
+                .mapToObj(i -> IntStream.range(0, LOANS_PER_BATCH)
+                        .mapToObj(j -> 1 + (long) (random.nextDouble() * loans))
+                        .toList())
+                .toList();
+        List<LocalDate> days = IntStream.range(0, WARMUP_QUERIES + MEASURED_QUERIES)
+                .mapToObj(i -> LocalDate.now().minusDays(1 + random.nextInt(365)))
+                .toList();
+
+        double plainSchedule = time(batches, b -> scheduleBatches(bench, b));
+        double plainOverdue = time(days, d -> overdueWindows(bench, d));
+
+        long migrateStart = System.nanoTime();
+        new RepaymentPartitionService(bench, new DataSourceTransactionManager(dataSource), 0, SPREAD_MONTHS).migrate();
+        double migrateMs = (System.nanoTime() - migrateStart) / 1_000_000.0;
+
+        double partitionedSchedule = time(batches, b -> scheduleBatches(bench, b));
+        double partitionedOverdue = time(days, d -> overdueWindows(bench, d));
+
+        int partitions = bench.queryForObject("SELECT count(*) FROM pg_inherits WHERE inhparent = 'repayments'::regclass",
+                Integer.class);
+        int overdueScanned = scanned(bench, "EXPLAIN SELECT count(*) FROM repayments WHERE status IN ('PENDING', 'OVERDUE') "
+                + "AND installment_number > 0 AND due_date >= '" + days.get(0) + "' AND due_date < '" + days.get(0).plusDays(1) + "'");
+        // Two loans applied in the last year of the spread
+        long recent = SPREAD_MONTHS - 1;
+        int scheduleScanned = scanned(bench, "EXPLAIN SELECT * FROM repayments WHERE loan_id IN ('bench-" + recent
+                + "', 'bench-" + (recent - 1) + "') AND due_date >= '" + appliedDate(recent - 1) + "' ORDER BY due_date");
+
+        System.out.printf("%,d rows in %,d loans: loaded in %.0f ms, partitioned in %.0f ms into %d partitions%n",
+                loans * TERM, loans, loadMs, migrateMs, partitions);
+        System.out.printf("%-16s %14s %14s %10s%n", "query", "plain ms/q", "partitioned", "scanned");
+        System.out.printf("%-16s %14.2f %14.2f %5d/%-4d%n", "schedule batch",
+                plainSchedule / MEASURED_QUERIES, partitionedSchedule / MEASURED_QUERIES, scheduleScanned, partitions);
+        System.out.printf("%-16s %14.2f %14.2f %5d/%-4d%n", "overdue window",
+                plainOverdue / MEASURED_QUERIES, partitionedOverdue / MEASURED_QUERIES, overdueScanned, partitions);
+
+        assertThat(bench.queryForObject("SELECT count(*) FROM repayments", Long.class)).isEqualTo(loans * TERM);
+        // A one-day window is one month; the schedule load skips every month before dueFrom
+        assertThat(overdueScanned).isEqualTo(1);
+        assertThat(scheduleScanned).isLessThan(partitions);
+    }
+
+    // Batches of LOANS_PER_BATCH schedules, bounded by their earliest applied date as
+    // LoanResponseAssembler loads them for a page
+    private long scheduleBatches(JdbcTemplate bench, List<List<Long>> batches) {
+        long rows = 0;
+        for (List<Long> batch : batches) {
+            String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+            Object[] args = new Object[batch.size() + 1];
+            for (int i = 0; i < batch.size(); i++) {
+                args[i] = "bench-" + batch.get(i);
+            }
+            args[batch.size()] = batch.stream().map(RepaymentPartitionBenchmark::appliedDate)
+                    .min(LocalDate::compareTo).orElseThrow();
+            rows += bench.queryForList("SELECT id, due_date, status FROM repayments WHERE loan_id IN (" + placeholders
+                    + ") AND due_date >= ? ORDER BY due_date", args).size();
+        }
+        return rows;
+    }
+
+    // The overdue job's bounded scan, one day at a time
+    private long overdueWindows(JdbcTemplate bench, List<LocalDate> days) {
+        long rows = 0;
+        for (LocalDate day : days) {
+            rows += bench.queryForObject("SELECT count(*) FROM repayments WHERE status IN ('PENDING', 'OVERDUE') "
+                    + "AND installment_number > 0 AND due_date >= ? AND due_date < ?", Long.class, day, day.plusDays(1));
+        }
+        return rows;
+    }
+
+    // Warms caches and plans on the first WARMUP_QUERIES inputs, then times the rest
+    private static <T> double time(List<T> inputs, ToLongFunction<List<T>> queries) {
+        queries.applyAsLong(inputs.subList(0, WARMUP_QUERIES));
+        long start = System.nanoTime();
+        queries.applyAsLong(inputs.subList(WARMUP_QUERIES, inputs.size()));
+        return (System.nanoTime() - start) / 1_000_000.0;
+    }
+
+    // Applied date of clone g, matching the shift load() gives it
+    private static LocalDate appliedDate(long g) {
+        return LocalDate.now().plusMonths(g % SPREAD_MONTHS - (SPREAD_MONTHS - TERM));
+    }
+
+    private static int scanned(JdbcTemplate bench, String explain) {
+        return (int) bench.queryForList(explain, String.class).stream()
+                .filter(line -> line.matches(".*Scan.* on repayments_(y\\d{4}m\\d{2}|default)\\b.*"))
+                .count();
+    }
+
+    /**
+     * Copies the live tables' shape into SCHEMA and clones the template loan and its
+     * installments count times, each clone shifted by up to SPREAD_MONTHS months.
+     */
+    private JdbcTemplate load(String templateId, long count) {
+        String source = jdbcTemplate.queryForObject("SELECT current_schema()", String.class);
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA " + SCHEMA);
+        jdbcTemplate.execute("CREATE TABLE " + SCHEMA + ".loans (LIKE " + source + ".loans INCLUDING ALL)");
+        jdbcTemplate.execute("CREATE TABLE " + SCHEMA + ".repayments (LIKE " + source + ".repayments "
+                + "INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+
+        String shift = "make_interval(months => (g % " + SPREAD_MONTHS + ")::int - " + (SPREAD_MONTHS - TERM) + ")";
+        // In FROM, so each record is built once rather than once per column
+        jdbcTemplate.update("INSERT INTO " + SCHEMA + ".loans SELECT c.* FROM " + source + ".loans l, "
+                + "generate_series(1, ?) g, LATERAL jsonb_populate_record(NULL::" + SCHEMA + ".loans, "
+                + "to_jsonb(l) || jsonb_build_object('id', 'bench-' || g, "
+                + "'applied_date', (l.applied_date + " + shift + ")::date, "
+                + "'disbursed_date', (l.applied_date + " + shift + ")::date)) c WHERE l.id = ?", count, templateId);
+        jdbcTemplate.update("INSERT INTO " + SCHEMA + ".repayments SELECT c.* FROM " + source + ".repayments r, "
+                + "generate_series(1, ?) g, LATERAL (SELECT (r.due_date + " + shift + ")::date AS due) d, "
+                + "LATERAL jsonb_populate_record(NULL::" + SCHEMA + ".repayments, "
+                + "to_jsonb(r) || jsonb_build_object('id', r.id || '-' || g, 'loan_id', 'bench-' || g, "
+                + "'due_date', d.due, 'status', CASE WHEN d.due < current_date - 30 THEN 'PAID' ELSE r.status END)) c "
+                + "WHERE r.loan_id = ?", count, templateId);
+
+        // Keys and indexes only after the load, as a bulk import would build them
+        jdbcTemplate.execute("ALTER TABLE " + SCHEMA + ".repayments ADD CONSTRAINT repayments_pkey PRIMARY KEY (id)");
+        jdbcTemplate.execute("ALTER TABLE " + SCHEMA + ".repayments ADD FOREIGN KEY (loan_id) REFERENCES "
+                + SCHEMA + ".loans (id)");
+        jdbcTemplate.queryForList("SELECT indexdef FROM pg_indexes WHERE schemaname = ? AND tablename = 'repayments' "
+                + "AND indexname <> 'repayments_pkey'", String.class, source)
+                .forEach(def -> jdbcTemplate.execute(def.replace(" ON " + source + ".repayments ", " ON " + SCHEMA + ".repayments ")));
+        jdbcTemplate.execute("ANALYZE " + SCHEMA + ".loans");
+        jdbcTemplate.execute("ANALYZE " + SCHEMA + ".repayments");
+
+        // One connection, so the timings measure queries rather than connects
+        dataSource = new SingleConnectionDataSource(
+                Database.url() + (Database.url().contains("?") ? "&" : "?") + "currentSchema=" + SCHEMA,
+                Database.username(), Database.password(), true);
+        return new JdbcTemplate(dataSource);
+    }
+
+    private String approvedLoan() {
+        User user = userRepository.save(User.builder()
+                .name("Partition Bench Borrower").email("partition-bench@example.com").password("x").phone("0700000009")
+                .role(User.Role.USER).build());
+        String loanId = loanRepository.save(Loan.builder()
+                .user(user).amount(BigDecimal.valueOf(12_000)).termMonths(TERM)
+                .purpose(Loan.LoanPurpose.PERSONAL).status(Loan.LoanStatus.PENDING)
+                .interestRate(BigDecimal.valueOf(12)).monthlyPayment(new BigDecimal("1066.19"))
+                .appliedDate(LocalDate.now()).totalRepaid(BigDecimal.ZERO).build()).getId();
+        loanService.approveLoan(loanId, "officer-1", null);
+        return loanId;
+    }
+}
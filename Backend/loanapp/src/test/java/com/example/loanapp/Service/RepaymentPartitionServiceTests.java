@@ -0,0 +1,159 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The repayments partitioning on a copy of the live table in its own schema, so the
+ * conversion never touches the table the other tests use.
+ */
+class RepaymentPartitionServiceTests extends PostgresIntegrationTest {
+
+    private static final String SCHEMA = "partition_migration";
+
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private JdbcTemplate migrationJdbc;
+    private Map<String, String> originalIndexes;
+
+    @BeforeEach
+    void copyRepaymentsIntoOwnSchema() {
+        String loanId = approvedLoan();
+        String source = jdbcTemplate.queryForObject("SELECT current_schema()", String.class);
+
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        jdbcTemplate.execute("CREATE SCHEMA " + SCHEMA);
+        jdbcTemplate.execute("CREATE TABLE " + SCHEMA + ".loans (LIKE " + source + ".loans INCLUDING ALL)");
+        jdbcTemplate.execute("CREATE TABLE " + SCHEMA + ".repayments (LIKE " + source + ".repayments "
+                + "INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        jdbcTemplate.execute("ALTER TABLE " + SCHEMA + ".repayments ADD CONSTRAINT repayments_pkey PRIMARY KEY (id)");
+        jdbcTemplate.execute("ALTER TABLE " + SCHEMA + ".repayments ADD FOREIGN KEY (loan_id) REFERENCES "
+                + SCHEMA + ".loans (id)");
+        // Every secondary index the app creates, JPA and schema.sql alike, under its own name
+        jdbcTemplate.queryForList("SELECT indexdef FROM pg_indexes WHERE schemaname = ? AND tablename = 'repayments' "
+                + "AND indexname <> 'repayments_pkey'", String.class, source)
+                .forEach(def -> jdbcTemplate.execute(def.replace(" ON " + source + ".repayments ", " ON " + SCHEMA + ".repayments ")));
+
+        jdbcTemplate.execute("INSERT INTO " + SCHEMA + ".loans SELECT * FROM " + source + ".loans");
+        jdbcTemplate.execute("INSERT INTO " + SCHEMA + ".repayments SELECT * FROM " + source + ".repayments");
+        // One installment long past, one at the far end of an 84-month schedule
+        jdbcTemplate.update("CREATE TABLE " + SCHEMA + ".extra AS SELECT * FROM " + source + ".repayments "
+                + "WHERE loan_id = ? AND installment_number IN (1, 2)", loanId);
+        jdbcTemplate.update("UPDATE " + SCHEMA + ".extra SET id = id || '-old', due_date = DATE '2019-01-15' "
+                + "WHERE installment_number = 1");
+        jdbcTemplate.update("UPDATE " + SCHEMA + ".extra SET id = id || '-far', due_date = ? "
+                + "WHERE installment_number = 2", LocalDate.now().plusMonths(84));
+        jdbcTemplate.execute("INSERT INTO " + SCHEMA + ".repayments SELECT * FROM " + SCHEMA + ".extra");
+        jdbcTemplate.execute("DROP TABLE " + SCHEMA + ".extra");
+
+        originalIndexes = indexes("repayments");
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                Database.url() + (Database.url().contains("?") ? "&" : "?") + "currentSchema=" + SCHEMA,
+                Database.username(), Database.password());
+        migrationJdbc = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void dropSchema() {
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+    }
+
+    @Test
+    void migrationKeepsEveryIndexAndEveryRow() {
+        assertThat(originalIndexes).containsKeys("idx_repayments_loan_due_date", "idx_repayments_due_date_status",
+                "idx_repayments_mpesa_checkout_id", "idx_repayments_unpaid_due_date", "idx_repayments_pending_push");
+
+        service(84).migrate();
+
+        assertThat(migrationJdbc.queryForObject(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass('repayments')", String.class)).isEqualTo("p");
+        Map<String, String> migrated = indexes("repayments");
+        assertThat(migrated.keySet()).containsExactlyInAnyOrderElementsOf(originalIndexes.keySet());
+        originalIndexes.forEach((name, def) -> {
+            if (!name.equals("repayments_pkey")) {
+                assertThat(migrated.get(name)).as(name).isEqualTo(def);
+            }
+        });
+        assertThat(migrated.get("repayments_pkey")).endsWith("(id, due_date)");
+        assertThat(migrationJdbc.queryForObject("SELECT count(*) FROM pg_class WHERE relname LIKE '%_legacy' "
+                + "AND relnamespace = ?::regnamespace", Integer.class, SCHEMA)).isZero();
+
+        assertThat(migrationJdbc.queryForObject("SELECT count(*) FROM repayments", Integer.class)).isEqualTo(14);
+        assertThat(migrationJdbc.queryForObject("SELECT count(*) FROM repayments_default", Integer.class)).isZero();
+        // Monthly partitions carry the parent's indexes, partial ones included
+        assertThat(indexes(partition(YearMonth.now().plusMonths(84))))
+                .hasSameSizeAs(originalIndexes);
+    }
+
+    @Test
+    void futurePartitionTakesOverRowsThatFellIntoTheDefault() {
+        // A horizon too short for the 84-month installment sends it to the default partition
+        service(12).migrate();
+        assertThat(migrationJdbc.queryForObject("SELECT count(*) FROM repayments_default", Integer.class)).isEqualTo(1);
+
+        service(84).ensureFuturePartitions();
+
+        String month = partition(YearMonth.now().plusMonths(84));
+        assertThat(migrationJdbc.queryForObject("SELECT count(*) FROM repayments_default", Integer.class)).isZero();
+        assertThat(migrationJdbc.queryForObject("SELECT count(*) FROM " + month + " WHERE id LIKE '%-far'",
+                Integer.class)).isEqualTo(1);
+        assertThat(migrationJdbc.queryForObject("SELECT count(*) FROM repayments", Integer.class)).isEqualTo(14);
+        assertThat(indexes(month)).hasSameSizeAs(originalIndexes);
+    }
+
+    private RepaymentPartitionService service(int maxTermMonths) {
+        return new RepaymentPartitionService(migrationJdbc,
+                new DataSourceTransactionManager(migrationJdbc.getDataSource()), 0, maxTermMonths);
+    }
+
+    private static String partition(YearMonth month) {
+        return String.format("repayments_y%04dm%02d", month.getYear(), month.getMonthValue());
+    }
+
+    // Index name to definition, with the table name left out so parent and copy compare equal
+    private Map<String, String> indexes(String table) {
+        Map<String, String> indexes = new HashMap<>();
+        jdbcTemplate.query("SELECT indexname, indexdef FROM pg_indexes WHERE schemaname = ? AND tablename = ?",
+                rs -> {
+                    String def = rs.getString(2);
+                    indexes.put(rs.getString(1), def.substring(def.indexOf(" USING ")));
+                }, SCHEMA, table);
+        return indexes;
+    }
+
+    private String approvedLoan() {
+        User user = userRepository.save(User.builder()
+                .name("Partition Borrower").email("partition@example.com").password("x").phone("0700000005")
+                .role(User.Role.USER).build());
+        String loanId = loanRepository.save(Loan.builder()
+                .user(user).amount(BigDecimal.valueOf(5000)).termMonths(12)
+                .purpose(Loan.LoanPurpose.PERSONAL).status(Loan.LoanStatus.PENDING)
+                .interestRate(BigDecimal.valueOf(12)).monthlyPayment(new BigDecimal("444.24"))
+                .appliedDate(LocalDate.now()).totalRepaid(BigDecimal.ZERO).build()).getId();
+        loanService.approveLoan(loanId, "officer-1", null);
+        return loanId;
+    }
+}
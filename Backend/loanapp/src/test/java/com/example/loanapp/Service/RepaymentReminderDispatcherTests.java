@@ -0,0 +1,261 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Entity.JobCheckpoint;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Repository.JobCheckpointRepository;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import com.example.loanapp.Repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reminder runs on PostgreSQL with the default 7, 3 and 1 day buckets. Digests are captured
+ * from a mocked NotificationService along with the time each one went out.
+ */
+class RepaymentReminderDispatcherTests extends PostgresIntegrationTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 6, 12);
+
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RepaymentScheduleService repaymentScheduleService;
+    @Autowired
+    private JobCheckpointRepository checkpointRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Queue<Digest> digests = new ConcurrentLinkedQueue<>();
+    private final List<RepaymentReminderDispatcher> dispatchers = new ArrayList<>();
+    private NotificationService notificationService;
+
+    @BeforeEach
+    void captureDigests() {
+        notificationService = mock(NotificationService.class);
+        when(notificationService.sendRepaymentReminderDigest(any(), anyList())).thenAnswer(inv -> {
+            User user = inv.getArgument(0);
+            List<Repayment> rows = inv.getArgument(1);
+            digests.add(new Digest(user.getId(), rows.stream().map(Repayment::getDueDate).toList(), System.nanoTime()));
+            return true;
+        });
+    }
+
+    @AfterEach
+    void stopWorkers() {
+        dispatchers.forEach(RepaymentReminderDispatcher::shutdown);
+    }
+
+    @Test
+    void eachBorrowerGetsOneDigestForAllBuckets() {
+        User first = user();
+        Loan a = loan(first, false, null);
+        Loan b = loan(first, false, null);
+        installment(a, 1, TODAY.plusDays(7), Repayment.RepaymentStatus.PENDING);
+        installment(b, 1, TODAY.plusDays(1), Repayment.RepaymentStatus.PARTIALLY_PAID);
+        installment(b, 2, TODAY.plusDays(3), Repayment.RepaymentStatus.PAID);
+        installment(b, 3, TODAY.plusDays(2), Repayment.RepaymentStatus.PENDING);
+        User second = user();
+        installment(loan(second, false, null), 1, TODAY.plusDays(3), Repayment.RepaymentStatus.PENDING);
+
+        dispatcher(200, 0).run(TODAY);
+
+        assertThat(digestsByUser()).isEqualTo(Map.of(
+                first.getId(), List.of(TODAY.plusDays(1), TODAY.plusDays(7)),
+                second.getId(), List.of(TODAY.plusDays(3))));
+        JobCheckpoint checkpoint = checkpoint();
+        assertThat(checkpoint.isCompleted()).isTrue();
+        assertThat(checkpoint.getProcessed()).isEqualTo(2);
+    }
+
+    @Test
+    void virtualScheduleInstallmentsAreRemindedAlongsideStoredOnes() {
+        User borrower = user();
+        // Installment 2 of the virtual schedule falls due in three days
+        loan(borrower, true, TODAY.plusDays(3).minusMonths(2));
+        installment(loan(borrower, false, null), 1, TODAY.plusDays(7), Repayment.RepaymentStatus.PENDING);
+        User paidUp = user();
+        Loan paid = loan(paidUp, true, TODAY.plusDays(1).minusMonths(1));
+        // Once stored, the installment is no longer derived; this one is already paid
+        installment(paid, 1, TODAY.plusDays(1), Repayment.RepaymentStatus.PAID);
+
+        dispatcher(200, 0).run(TODAY);
+
+        assertThat(digestsByUser()).isEqualTo(Map.of(
+                borrower.getId(), List.of(TODAY.plusDays(3), TODAY.plusDays(7))));
+        assertThat(checkpoint().getProcessed()).isEqualTo(2);
+    }
+
+    @Test
+    void loansNoLongerBeingRepaidAreNotReminded() {
+        User repaying = user();
+        installment(loan(repaying, false, null), 1, TODAY.plusDays(3), Repayment.RepaymentStatus.PENDING);
+        // Completed through flexible payments: the stored installments stay PENDING but are not owed
+        User completed = user();
+        installment(loan(completed, Loan.LoanStatus.COMPLETED, false, null), 1, TODAY.plusDays(3),
+                Repayment.RepaymentStatus.PENDING);
+        // Approved but not disbursed yet: the schedule moves once the money goes out
+        User approved = user();
+        installment(loan(approved, Loan.LoanStatus.APPROVED, false, null), 1, TODAY.plusDays(7),
+                Repayment.RepaymentStatus.PENDING);
+
+        dispatcher(200, 0).run(TODAY);
+
+        assertThat(digestsByUser()).isEqualTo(Map.of(repaying.getId(), List.of(TODAY.plusDays(3))));
+        assertThat(checkpoint().getProcessed()).isEqualTo(1);
+    }
+
+    @Test
+    void resumesAfterTheClaimedUsersAndNeverRepeatsAFinishedRun() {
+        List<String> ids = users(5);
+        // As if a run crashed after claiming its first chunk of two
+        checkpointRepository.save(JobCheckpoint.builder().jobName(RepaymentReminderDispatcher.JOB_NAME).runDate(TODAY)
+                .lastId(ids.get(1)).processed(2).build());
+
+        RepaymentReminderDispatcher dispatcher = dispatcher(2, 0);
+        dispatcher.run(TODAY);
+        dispatcher.run(TODAY);
+
+        assertThat(digests).extracting(Digest::userId).containsExactlyInAnyOrderElementsOf(ids.subList(2, 5));
+        assertThat(checkpoint().getProcessed()).isEqualTo(5);
+    }
+
+    @Test
+    void instancesSplitTheRunAndShareOneRate() {
+        List<String> ids = users(10);
+        RepaymentReminderDispatcher one = dispatcher(2, 20);
+        RepaymentReminderDispatcher two = dispatcher(2, 20);
+
+        long start = System.nanoTime();
+        CompletableFuture.allOf(CompletableFuture.runAsync(() -> one.run(TODAY)),
+                CompletableFuture.runAsync(() -> two.run(TODAY))).join();
+
+        assertThat(digests).extracting(Digest::userId).containsExactlyInAnyOrderElementsOf(ids);
+        // 20 per second between both instances: ten digests span at least nine 50 ms slots
+        List<Long> sentAt = digests.stream().map(Digest::sentAt).sorted().toList();
+        assertThat(sentAt.get(sentAt.size() - 1) - sentAt.get(0)).isGreaterThanOrEqualTo(400_000_000L);
+        // Slots are never early, though a late wake-up can bunch two digests; the nth still waits
+        // n slots from the start, less a little for the wall-clock handoff between instances
+        for (int i = 0; i < sentAt.size(); i++) {
+            assertThat(sentAt.get(i) - start).as("digest %d", i).isGreaterThanOrEqualTo(i * 50_000_000L - 5_000_000L);
+        }
+        assertThat(checkpoint().getNextSlotAt()).isNotNull();
+    }
+
+    @Test
+    void pacerSpacesCallsAcrossThreads() {
+        RepaymentReminderDispatcher.Pacer pacer = new RepaymentReminderDispatcher.Pacer(50);
+        Queue<Long> calls = new ConcurrentLinkedQueue<>();
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 5; i++) {
+                    pacer.acquire();
+                    calls.add(System.nanoTime());
+                }
+            }));
+        }
+        CompletableFuture.allOf(threads.toArray(new CompletableFuture<?>[0])).join();
+
+        // 20 calls at 50 per second: the last one waits 19 intervals of 20 ms
+        assertThat(Collections.max(calls) - start).isGreaterThanOrEqualTo(19 * 20_000_000L - 5_000_000L);
+        assertThat(pacer.windowNanos(20)).isEqualTo(400_000_000L);
+    }
+
+    @Test
+    void pacerWaitsForTheStartOfAReservedWindow() {
+        RepaymentReminderDispatcher.Pacer pacer = new RepaymentReminderDispatcher.Pacer(1000);
+        long start = System.nanoTime();
+
+        pacer.startAt(start + 300_000_000L);
+        pacer.acquire();
+
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(300_000_000L);
+    }
+
+    private RepaymentReminderDispatcher dispatcher(int usersPerChunk, double perSecond) {
+        RepaymentReminderDispatcher dispatcher = new RepaymentReminderDispatcher(repaymentRepository, loanRepository,
+                repaymentScheduleService, checkpointRepository, notificationService, transactionManager,
+                new SimpleMeterRegistry(), List.of(7, 3, 1), usersPerChunk, 4, perSecond);
+        dispatchers.add(dispatcher);
+        return dispatcher;
+    }
+
+    private Map<String, List<LocalDate>> digestsByUser() {
+        assertThat(digests).extracting(Digest::userId).doesNotHaveDuplicates();
+        return digests.stream().collect(Collectors.toMap(Digest::userId, Digest::dueDates));
+    }
+
+    private JobCheckpoint checkpoint() {
+        return checkpointRepository.findById(RepaymentReminderDispatcher.JOB_NAME).orElseThrow();
+    }
+
+    // Borrowers with one installment due in seven days each, in user-id order
+    private List<String> users(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = user();
+            installment(loan(user, false, null), 1, TODAY.plusDays(7), Repayment.RepaymentStatus.PENDING);
+            ids.add(user.getId());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private void installment(Loan loan, int number, LocalDate dueDate, Repayment.RepaymentStatus status) {
+        repaymentRepository.save(Repayment.builder()
+                .loan(loan).installmentNumber(number).amount(new BigDecimal("1066.19"))
+                .dueDate(dueDate).status(status).build());
+    }
+
+    private User user() {
+        return userRepository.save(User.builder()
+                .name("Reminder Borrower").email("reminder-" + System.nanoTime() + "@example.com").password("x")
+                .phone("0700000007").role(User.Role.USER).build());
+    }
+
+    private Loan loan(User user, boolean virtual, LocalDate disbursed) {
+        return loan(user, Loan.LoanStatus.DISBURSED, virtual, disbursed);
+    }
+
+    private Loan loan(User user, Loan.LoanStatus status, boolean virtual, LocalDate disbursed) {
+        return loanRepository.save(Loan.builder()
+                .user(user).amount(BigDecimal.valueOf(12_000)).termMonths(12)
+                .purpose(Loan.LoanPurpose.PERSONAL).status(status)
+                .interestRate(BigDecimal.valueOf(12)).monthlyPayment(new BigDecimal("1066.19"))
+                .appliedDate(TODAY.minusYears(1)).disbursedDate(disbursed)
+                .virtualSchedule(virtual).totalRepaid(BigDecimal.ZERO).build());
+    }
+
+    private record Digest(String userId, List<LocalDate> dueDates, long sentAt) {
+    }
+}
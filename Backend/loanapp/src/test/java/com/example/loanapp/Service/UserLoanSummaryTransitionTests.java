@@ -0,0 +1,111 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import com.example.loanapp.Repository.UserLoanSummaryRepository;
+import com.example.loanapp.Repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The deltas recordTransition applies against a full rebuildForUser, step by step through a
+ * loan's life. The rebuild runs in a rolled-back transaction, so every step starts from the
+ * row the deltas left behind rather than a freshly rebuilt one.
+ */
+class UserLoanSummaryTransitionTests extends PostgresIntegrationTest {
+
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private RepaymentService repaymentService;
+    @Autowired
+    private UserLoanSummaryService userLoanSummaryService;
+    @Autowired
+    private UserLoanSummaryRepository summaryRepository;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void deltasMatchARebuildAfterEveryTransition() {
+        User user = userRepository.save(User.builder()
+                .name("Summary Borrower").email("summary@example.com").password("x").phone("0700000010")
+                .role(User.Role.USER).build());
+        // Another loan already being repaid, so the deltas land on non-zero totals
+        Loan other = loanRepository.save(loan(user, Loan.LoanStatus.REPAYING, "400.00"));
+        repaymentRepository.save(Repayment.builder()
+                .loan(other).installmentNumber(3).amount(new BigDecimal("1066.19"))
+                .dueDate(LocalDate.now().plusDays(90)).status(Repayment.RepaymentStatus.PENDING).build());
+        String loanId = loanRepository.save(loan(user, Loan.LoanStatus.PENDING, "0.00")).getId();
+        userLoanSummaryService.getSummary(user.getId());
+        assertMatchesRebuild(user, 1);
+
+        loanService.approveLoan(loanId, "officer-1", null);
+        assertMatchesRebuild(user, 2);
+
+        loanService.disburseLoan(loanId);
+        assertMatchesRebuild(user, 2);
+
+        Repayment first = repaymentRepository.findByLoanIdInOrderByDueDateAsc(List.of(loanId), LocalDate.EPOCH).get(0);
+        repaymentService.processPayment(first.getId(), "WALLET");
+        assertThat(status(loanId)).isEqualTo(Loan.LoanStatus.REPAYING);
+        assertMatchesRebuild(user, 2);
+
+        // 12000 at 12% flat is 13440 payable
+        BigDecimal remaining = new BigDecimal("13440.00").subtract(first.getAmount());
+        repaymentService.processFlexiblePayment(loanId, remaining, "WALLET");
+        assertThat(status(loanId)).isEqualTo(Loan.LoanStatus.COMPLETED);
+        assertMatchesRebuild(user, 1);
+    }
+
+    private void assertMatchesRebuild(User user, int activeLoans) {
+        Map<String, Object> maintained = summaryRow(user.getId());
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Map<String, Object> rebuilt = tx.execute(status -> {
+            summaryRepository.rebuildForUser(user.getId());
+            Map<String, Object> row = summaryRow(user.getId());
+            status.setRollbackOnly();
+            return row;
+        });
+
+        assertThat(maintained).isEqualTo(rebuilt);
+        assertThat(maintained.get("active_loans")).isEqualTo(activeLoans);
+        // The rollback kept the maintained row
+        assertThat(summaryRow(user.getId())).isEqualTo(maintained);
+    }
+
+    private Map<String, Object> summaryRow(String userId) {
+        return jdbcTemplate.queryForMap("SELECT total_borrowed, total_repaid, monthly_payment, active_loans, next_due_date "
+                + "FROM user_loan_summary WHERE user_id = ?", userId);
+    }
+
+    private Loan.LoanStatus status(String loanId) {
+        return loanRepository.findById(loanId).orElseThrow().getStatus();
+    }
+
+    private static Loan loan(User user, Loan.LoanStatus status, String repaid) {
+        return Loan.builder()
+                .user(user).amount(BigDecimal.valueOf(12_000)).termMonths(12)
+                .purpose(Loan.LoanPurpose.PERSONAL).status(status)
+                .interestRate(BigDecimal.valueOf(12)).monthlyPayment(new BigDecimal("1066.19"))
+                .appliedDate(LocalDate.now().minusDays(3)).totalRepaid(new BigDecimal(repaid)).build();
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.loanapp.Service;
+
+import com.example.loanapp.DTO.LoanDTO;
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.Repayment;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.RepaymentRepository;
+import com.example.loanapp.Repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Virtual-schedule loans on PostgreSQL: installments are paid by their "V:loanId:n" id,
+ * materialized on payment and merged back into the loan response.
+ */
+class VirtualScheduleTests extends PostgresIntegrationTest {
+
+    private static final LocalDate DISBURSED = LocalDate.of(2024, 1, 15);
+
+    @Autowired
+    private RepaymentService repaymentService;
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private RepaymentRepository repaymentRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void payingAVirtualInstallmentStoresItAsPaid() {
+        Loan loan = virtualLoan();
+
+        Repayment paid = repaymentService.processPayment("V:" + loan.getId() + ":2", "WALLET");
+
+        assertThat(paid.getId()).doesNotStartWith("V:");
+        Repayment stored = repaymentRepository.findById(paid.getId()).orElseThrow();
+        assertThat(stored.getInstallmentNumber()).isEqualTo(2);
+        assertThat(stored.getStatus()).isEqualTo(Repayment.RepaymentStatus.PAID);
+        // 12000 over 12 months at 12%
+        assertThat(stored.getAmount()).isEqualByComparingTo("1066.19");
+        assertThat(stored.getDueDate()).isEqualTo(DISBURSED.plusMonths(2));
+        assertThat(repaymentRepository.count()).isEqualTo(1);
+
+        Loan updated = loanRepository.findById(loan.getId()).orElseThrow();
+        assertThat(updated.getTotalRepaid()).isEqualByComparingTo("1066.19");
+        assertThat(updated.getStatus()).isEqualTo(Loan.LoanStatus.REPAYING);
+    }
+
+    @Test
+    void loanResponseMergesStoredAndDerivedInstallments() {
+        Loan loan = virtualLoan();
+        String paidId = repaymentService.processPayment("V:" + loan.getId() + ":2", "WALLET").getId();
+
+        LoanDTO.Response response = loanService.getLoanById(loan.getId());
+
+        List<LoanDTO.RepaymentDTO> installments = response.getRepayments();
+        assertThat(installments).hasSize(12);
+        assertThat(installments).extracting(LoanDTO.RepaymentDTO::getInstallmentNumber)
+                .containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+        assertThat(installments).extracting(LoanDTO.RepaymentDTO::getDueDate).isSorted();
+
+        LoanDTO.RepaymentDTO stored = installments.get(1);
+        assertThat(stored.getId()).isEqualTo(paidId);
+        assertThat(stored.getStatus()).isEqualTo("PAID");
+        for (LoanDTO.RepaymentDTO derived : installments) {
+            if (derived != stored) {
+                assertThat(derived.getId()).isEqualTo("V:" + loan.getId() + ":" + derived.getInstallmentNumber());
+                assertThat(derived.getStatus()).isEqualTo("PENDING");
+            }
+        }
+        assertThat(installments.get(11).getBalanceAfter()).isEqualByComparingTo(BigDecimal.ZERO);
+    }
+
+    @Test
+    void concurrentPaymentsOfOneVirtualInstallmentMaterializeItOnce() throws Exception {
+        Loan loan = virtualLoan();
+        String virtualId = "V:" + loan.getId() + ":1";
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        int paid = 0;
+        int alreadyPaid = 0;
+        try {
+            List<Future<Repayment>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return repaymentService.processPayment(virtualId, "WALLET");
+                }));
+            }
+            start.countDown();
+            for (Future<Repayment> result : results) {
+                try {
+                    result.get(30, TimeUnit.SECONDS);
+                    paid++;
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(IllegalStateException.class)
+                            .hasMessageContaining("already been paid");
+                    alreadyPaid++;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(paid).isEqualTo(1);
+        assertThat(alreadyPaid).isEqualTo(1);
+        assertThat(repaymentRepository.findAll()).singleElement()
+                .satisfies(r -> assertThat(r.getInstallmentNumber()).isEqualTo(1));
+        assertThat(loanRepository.findById(loan.getId()).orElseThrow().getTotalRepaid())
+                .isEqualByComparingTo("1066.19");
+    }
+
+    private Loan virtualLoan() {
+        User user = userRepository.save(User.builder()
+                .name("Virtual Borrower").email("virtual-" + System.nanoTime() + "@example.com").password("x")
+                .phone("0700000010").role(User.Role.USER).build());
+        return loanRepository.save(Loan.builder()
+                .user(user).amount(BigDecimal.valueOf(12_000)).termMonths(12)
+                .purpose(Loan.LoanPurpose.PERSONAL).status(Loan.LoanStatus.DISBURSED)
+                .interestRate(BigDecimal.valueOf(12)).monthlyPayment(new BigDecimal("1066.19"))
+                .appliedDate(DISBURSED.minusDays(7)).reviewedDate(DISBURSED.minusDays(1)).disbursedDate(DISBURSED)
+                .virtualSchedule(true).totalRepaid(BigDecimal.ZERO).build());
+    }
+}
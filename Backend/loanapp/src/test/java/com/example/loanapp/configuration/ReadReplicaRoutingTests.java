@@ -0,0 +1,118 @@
+package com.example.loanapp.configuration;
+
+import com.example.loanapp.Entity.Loan;
+import com.example.loanapp.Entity.User;
+import com.example.loanapp.PostgresIntegrationTest;
+import com.example.loanapp.Repository.LoanRepository;
+import com.example.loanapp.Repository.UserRepository;
+import com.example.loanapp.Service.LoanService;
+import com.example.loanapp.Service.RepaymentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Primary/replica routing with two datasource URLs. Both point at the test database; the
+ * replica URL carries its own ApplicationName, so each connection reports which pool it
+ * came from.
+ */
+@TestPropertySource(properties = "app.datasource.replica.lag-query=")
+class ReadReplicaRoutingTests extends PostgresIntegrationTest {
+
+    private static final String REPLICA_APP_NAME = "loanapp-replica";
+
+    @Autowired
+    private ReadReplicaRoutingDataSource routingDataSource;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private RepaymentService repaymentService;
+    @Autowired
+    private LoanRepository loanRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    @DynamicPropertySource
+    static void replica(DynamicPropertyRegistry registry) {
+        registry.add("app.datasource.replica.url", () -> {
+            String url = Database.url();
+            return url + (url.contains("?") ? "&" : "?") + "ApplicationName=" + REPLICA_APP_NAME;
+        });
+    }
+
+    @AfterEach
+    void restoreReplica() {
+        routingDataSource.setReplicaAvailable(true);
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheReplicaAndWritesThePrimary() {
+        assertThat(applicationName(true)).isEqualTo(REPLICA_APP_NAME);
+        assertThat(applicationName(false)).isNotEqualTo(REPLICA_APP_NAME);
+    }
+
+    @Test
+    void readOnlyTransactionsFallBackToThePrimaryWhileTheReplicaIsOut() {
+        double fallbacks = routes("fallback");
+        routingDataSource.setReplicaAvailable(false);
+
+        assertThat(applicationName(true)).isNotEqualTo(REPLICA_APP_NAME);
+        assertThat(routes("fallback")).isEqualTo(fallbacks + 1);
+
+        routingDataSource.setReplicaAvailable(true);
+        assertThat(applicationName(true)).isEqualTo(REPLICA_APP_NAME);
+    }
+
+    @Test
+    void readAfterWritePollsStayOnThePrimary() {
+        String loanId = approvedLoan();
+        String repaymentId = jdbcTemplate.queryForObject(
+                "SELECT id FROM repayments WHERE loan_id = ? ORDER BY installment_number LIMIT 1", String.class, loanId);
+        double replica = routes("replica");
+
+        loanService.getLoanETag(loanId);
+        loanService.getLoanById(loanId);
+        repaymentService.getPaymentStatus(repaymentId, null, true);
+
+        assertThat(routes("replica")).isEqualTo(replica);
+    }
+
+    private String applicationName(boolean readOnly) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(readOnly);
+        return tx.execute(status -> jdbcTemplate.queryForObject(
+                "SELECT current_setting('application_name')", String.class));
+    }
+
+    private double routes(String target) {
+        return meterRegistry.counter("datasource.routing", "target", target).count();
+    }
+
+    private String approvedLoan() {
+        User user = userRepository.save(User.builder()
+                .name("Routing Borrower").email("routing@example.com").password("x").phone("0700000004")
+                .role(User.Role.USER).build());
+        String loanId = loanRepository.save(Loan.builder()
+                .user(user).amount(BigDecimal.valueOf(5000)).termMonths(12)
+                .purpose(Loan.LoanPurpose.PERSONAL).status(Loan.LoanStatus.PENDING)
+                .interestRate(BigDecimal.valueOf(12)).monthlyPayment(new BigDecimal("444.24"))
+                .appliedDate(LocalDate.now()).totalRepaid(BigDecimal.ZERO).build()).getId();
+        loanService.approveLoan(loanId, "officer-1", null);
+        return loanId;
+    }
+}
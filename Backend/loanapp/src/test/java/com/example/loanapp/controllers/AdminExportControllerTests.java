@@ -0,0 +1,80 @@
+package com.example.loanapp.controllers;
+
+import com.example.loanapp.DTO.ExportDTO;
+import com.example.loanapp.Service.ExportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AdminExportControllerTests {
+
+    private static final String ROWS = "id,loanId\r\nr-1,loan-1\r\n";
+
+    private final ExportService exportService = mock(ExportService.class);
+    private final AdminExportController controller = new AdminExportController(exportService);
+
+    @BeforeEach
+    void stubExports() {
+        when(exportService.exportRepayments(any(), any())).thenAnswer(inv -> {
+            inv.getArgument(1, OutputStream.class).write(ROWS.getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+    }
+
+    @Test
+    void rowsAreWrittenOnlyWhenTheBodyIsStreamed() throws Exception {
+        ResponseEntity<StreamingResponseBody> response = controller.exportRepayments(ExportDTO.Format.CSV, false);
+
+        verify(exportService, never()).exportRepayments(any(), any());
+        assertThat(response.getHeaders().getContentType()).hasToString("text/csv");
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION))
+                .isEqualTo("attachment; filename=\"repayments-" + LocalDate.now() + ".csv\"");
+
+        assertThat(body(response).toString(StandardCharsets.UTF_8)).isEqualTo(ROWS);
+        verify(exportService).exportRepayments(eq(ExportDTO.Format.CSV), any());
+    }
+
+    @Test
+    void gzipWrapsTheSameRows() throws Exception {
+        ResponseEntity<StreamingResponseBody> response = controller.exportRepayments(ExportDTO.Format.NDJSON, true);
+
+        assertThat(response.getHeaders().getContentType()).hasToString("application/gzip");
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION))
+                .endsWith(".ndjson.gz\"");
+        try (GZIPInputStream unzipped = new GZIPInputStream(new ByteArrayInputStream(body(response).toByteArray()))) {
+            assertThat(new String(unzipped.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(ROWS);
+        }
+    }
+
+    @Test
+    void ndjsonLoansGetTheirOwnTypeAndFilename() {
+        ResponseEntity<StreamingResponseBody> response = controller.exportLoans(ExportDTO.Format.NDJSON, false);
+
+        assertThat(response.getHeaders().getContentType()).hasToString("application/x-ndjson");
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION))
+                .isEqualTo("attachment; filename=\"loans-" + LocalDate.now() + ".ndjson\"");
+    }
+
+    private static ByteArrayOutputStream body(ResponseEntity<StreamingResponseBody> response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.loanapp.controllers;
+
+import com.example.loanapp.DTO.LoanDTO;
+import com.example.loanapp.Service.LoanBulkService;
+import com.example.loanapp.Service.LoanService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LoanControllerETagTests {
+
+    private static final String LOAN_ID = "loan-1";
+    private static final String ETAG = "\"abc123\"";
+
+    private final LoanService loanService = mock(LoanService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LoanController controller = new LoanController(loanService, mock(LoanBulkService.class), meterRegistry);
+
+    @BeforeEach
+    void stubLoan() {
+        when(loanService.getLoanETag(LOAN_ID)).thenReturn(ETAG);
+        when(loanService.getLoanById(LOAN_ID)).thenReturn(LoanDTO.Response.builder().id(LOAN_ID).build());
+    }
+
+    @Test
+    void matchingIfNoneMatchAnswers304WithoutLoadingTheLoan() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        ResponseEntity<LoanDTO.Response> result = controller.getLoanDetails(LOAN_ID, request(ETAG, response));
+
+        assertThat(result).isNull();
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getHeader("ETag")).isEqualTo(ETAG);
+        verify(loanService, never()).getLoanById(LOAN_ID);
+        assertThat(count("hit")).isEqualTo(1);
+        assertThat(count("miss")).isZero();
+    }
+
+    @Test
+    void staleOrMissingTagReturnsTheLoanWithItsETag() {
+        ResponseEntity<LoanDTO.Response> stale = controller.getLoanDetails(LOAN_ID,
+                request("\"old\"", new MockHttpServletResponse()));
+        ResponseEntity<LoanDTO.Response> first = controller.getLoanDetails(LOAN_ID,
+                request(null, new MockHttpServletResponse()));
+
+        for (ResponseEntity<LoanDTO.Response> result : List.of(stale, first)) {
+            assertThat(result.getStatusCode().value()).isEqualTo(200);
+            assertThat(result.getHeaders().getETag()).isEqualTo(ETAG);
+            assertThat(result.getBody().getId()).isEqualTo(LOAN_ID);
+        }
+        assertThat(count("miss")).isEqualTo(2);
+        assertThat(count("hit")).isZero();
+    }
+
+    private ServletWebRequest request(String ifNoneMatch, MockHttpServletResponse response) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/loans/" + LOAN_ID);
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return new ServletWebRequest(request, response);
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter("loan.detail.etag", "result", result).count();
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.loanapp.controllers;
+
+import com.example.loanapp.Service.MpesaCallbackConsumer;
+import com.example.loanapp.Service.RepaymentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RepaymentControllerTests {
+
+    private final RepaymentService repaymentService = mock(RepaymentService.class);
+    private final RepaymentController controller =
+            new RepaymentController(repaymentService, mock(MpesaCallbackConsumer.class));
+
+    @Test
+    void exhaustedPaymentRetriesReachTheConcurrentUpdateHandler() {
+        when(repaymentService.processPayment(anyString(), anyString()))
+                .thenThrow(new ObjectOptimisticLockingFailureException("Loan", "loan-1"));
+        when(repaymentService.processFlexiblePayment(anyString(), any(), anyString()))
+                .thenThrow(new ObjectOptimisticLockingFailureException("Loan", "loan-1"));
+
+        // Left to GlobalExceptionHandler, which answers 409 CONCURRENT_UPDATE
+        assertThatThrownBy(() -> controller.payInstallment("repayment-1", Map.of("paymentMethod", "WALLET")))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThatThrownBy(() -> controller.repayLoan("loan-1", Map.of("amount", "100")))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+    }
+
+    @Test
+    void invalidPaymentsStillAnswer400WithTheMessage() {
+        when(repaymentService.processFlexiblePayment(anyString(), any(BigDecimal.class), anyString()))
+                .thenThrow(new IllegalArgumentException("Payment amount must be greater than zero."));
+
+        assertThat(controller.repayLoan("loan-1", Map.of("amount", "0")).getStatusCode().value()).isEqualTo(400);
+    }
+}